@@ -4,8 +4,10 @@
  *******************************************************************************/
 package nu.yona.server;
 
+import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
@@ -13,12 +15,25 @@ import org.springframework.boot.context.web.SpringBootServletInitializer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 
+import com.hazelcast.core.HazelcastInstance;
+
+import nu.yona.server.properties.AnalysisServiceProperties;
+import nu.yona.server.properties.YonaProperties;
+import nu.yona.server.util.HazelcastLockProvider;
+import nu.yona.server.util.LocalLockProvider;
 import nu.yona.server.util.LockPool;
+import nu.yona.server.util.LockProvider;
 
 @SpringBootApplication
 @EnableCaching
 public class AnalysisServiceApplication extends SpringBootServletInitializer
 {
+	@Autowired
+	private YonaProperties yonaProperties;
+
+	@Autowired
+	private HazelcastInstance hazelcastInstance;
+
 	public static void main(String[] args)
 	{
 		SpringApplication.run(AnalysisServiceApplication.class, args);
@@ -33,6 +48,9 @@ public class AnalysisServiceApplication extends SpringBootServletInitializer
 	@Bean
 	public LockPool<UUID> userAnonymizedSynchronizer()
 	{
-		return new LockPool<>();
+		AnalysisServiceProperties properties = yonaProperties.getAnalysisService();
+		LockProvider<UUID> lockProvider = properties.isDistributedLockingEnabled()
+				? new HazelcastLockProvider<>(hazelcastInstance, "userAnonymizedLocks") : new LocalLockProvider<>();
+		return new LockPool<>(lockProvider, Optional.of(properties.getUserAnonymizedLockTimeout()));
 	}
 }
@@ -20,8 +20,15 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import nu.yona.server.analysis.service.ActivityCacheService;
+import nu.yona.server.analysis.service.ActivityCacheStatisticsDTO;
+import nu.yona.server.analysis.service.ActivityQueueService;
+import nu.yona.server.analysis.service.ActivityQueueStatusDTO;
+import nu.yona.server.analysis.service.AnalysisEngineBatchService;
 import nu.yona.server.analysis.service.AnalysisEngineService;
 import nu.yona.server.analysis.service.AppActivityDTO;
+import nu.yona.server.analysis.service.NetworkActivityBatchDTO;
+import nu.yona.server.analysis.service.NetworkActivityBatchResultDTO;
 import nu.yona.server.analysis.service.NetworkActivityDTO;
 
 @Controller
@@ -31,14 +38,41 @@ public class AnalysisEngineController
 	@Autowired
 	private AnalysisEngineService analysisEngineService;
 
+	@Autowired
+	private AnalysisEngineBatchService analysisEngineBatchService;
+
+	@Autowired
+	private ActivityQueueService activityQueueService;
+
+	@Autowired
+	private ActivityCacheService activityCacheService;
+
 	@RequestMapping(value = "/userAnonymized/{userAnonymizedID}/networkActivity/", method = RequestMethod.POST)
 	@ResponseStatus(value = HttpStatus.OK)
 	public void analyzeNetworkActivity(@PathVariable UUID userAnonymizedID,
 			@RequestBody NetworkActivityDTO potentialConflictPayload)
 	{
+		if (activityQueueService.isEnabled())
+		{
+			activityQueueService.enqueue(userAnonymizedID, potentialConflictPayload);
+			return;
+		}
 		analysisEngineService.analyze(userAnonymizedID, potentialConflictPayload);
 	}
 
+	/**
+	 * Smoothwall can send the network activity of many users in one request through this method. The activities are processed
+	 * per user. The response contains a result for every network activity, in the order of the request.
+	 */
+	@RequestMapping(value = "/networkActivity/", method = RequestMethod.POST)
+	@ResponseBody
+	public HttpEntity<NetworkActivityBatchResultResource> analyzeNetworkActivityBatch(
+			@RequestBody NetworkActivityBatchDTO networkActivityBatch)
+	{
+		return new ResponseEntity<NetworkActivityBatchResultResource>(
+				new NetworkActivityBatchResultResource(analysisEngineBatchService.analyze(networkActivityBatch)), HttpStatus.OK);
+	}
+
 	/**
 	 * The app service receives the app activity monitored by the Yona app and sends that to the analysis engine through this
 	 * method.
@@ -47,9 +81,30 @@ public class AnalysisEngineController
 	@ResponseStatus(value = HttpStatus.OK)
 	public void analyzeAppActivity(@PathVariable UUID userAnonymizedID, @RequestBody AppActivityDTO appActivities)
 	{
+		if (activityQueueService.isEnabled())
+		{
+			activityQueueService.enqueue(userAnonymizedID, appActivities);
+			return;
+		}
 		analysisEngineService.analyze(userAnonymizedID, appActivities);
 	}
 
+	@RequestMapping(value = "/activityQueue/", method = RequestMethod.GET)
+	@ResponseBody
+	public HttpEntity<ActivityQueueStatusResource> getActivityQueueStatus()
+	{
+		return new ResponseEntity<ActivityQueueStatusResource>(
+				new ActivityQueueStatusResource(activityQueueService.getStatus()), HttpStatus.OK);
+	}
+
+	@RequestMapping(value = "/activityCache/", method = RequestMethod.GET)
+	@ResponseBody
+	public HttpEntity<ActivityCacheStatisticsResource> getActivityCacheStatistics()
+	{
+		return new ResponseEntity<ActivityCacheStatisticsResource>(
+				new ActivityCacheStatisticsResource(activityCacheService.getStatistics()), HttpStatus.OK);
+	}
+
 	@RequestMapping(value = "/relevantSmoothwallCategories/", method = RequestMethod.GET)
 	@ResponseBody
 	public HttpEntity<CategoriesResource> getRelevantSmoothwallCategories()
@@ -65,4 +120,28 @@ public class AnalysisEngineController
 			super(categories);
 		}
 	}
+
+	public static class NetworkActivityBatchResultResource extends Resource<NetworkActivityBatchResultDTO>
+	{
+		public NetworkActivityBatchResultResource(NetworkActivityBatchResultDTO networkActivityBatchResult)
+		{
+			super(networkActivityBatchResult);
+		}
+	}
+
+	public static class ActivityQueueStatusResource extends Resource<ActivityQueueStatusDTO>
+	{
+		public ActivityQueueStatusResource(ActivityQueueStatusDTO activityQueueStatus)
+		{
+			super(activityQueueStatus);
+		}
+	}
+
+	public static class ActivityCacheStatisticsResource extends Resource<ActivityCacheStatisticsDTO>
+	{
+		public ActivityCacheStatisticsResource(ActivityCacheStatisticsDTO activityCacheStatistics)
+		{
+			super(activityCacheStatistics);
+		}
+	}
 }
@@ -4,29 +4,119 @@
  *******************************************************************************/
 package nu.yona.server.analysis.service;
 
+import java.io.Serializable;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
-import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+
 import nu.yona.server.analysis.entities.Activity;
 import nu.yona.server.analysis.entities.DayActivity;
+import nu.yona.server.properties.AnalysisServiceProperties;
+import nu.yona.server.properties.YonaProperties;
 
+/*
+ * Caches the last activity per user and goal. The cache is two-tiered: a bounded near cache in this JVM, backed by a distributed
+ * map that is shared by all analysis engine service instances. Updates are written to both synchronously. With distributed
+ * locking, the user lock can move to another instance between two activities, and that instance must see the last update. The
+ * near cache of an instance cannot guarantee that, so in that case the last activity is always read from the distributed map.
+ */
 @Service
-// Day activities are only used in the analysis engine service, so a local cache suffices for as long as we do not
-// scale out the analysis engine service.
-@CacheConfig(cacheManager = "localCache", cacheNames = "lastActivity")
 public class ActivityCacheService
 {
-	@Cacheable(key = "{#userAnonymizedID,#goalID}")
+	private static final String LAST_ACTIVITY_MAP_NAME = "lastActivity";
+
+	@Autowired
+	private YonaProperties yonaProperties;
+
+	@Autowired
+	private HazelcastInstance hazelcastInstance;
+
+	private Cache<LastActivityKey, ActivityDTO> nearCache;
+	private IMap<LastActivityKey, ActivityDTO> clusterCache;
+
+	@PostConstruct
+	void initializeCache()
+	{
+		AnalysisServiceProperties properties = yonaProperties.getAnalysisService();
+		nearCache = CacheBuilder.newBuilder().maximumSize(properties.getLastActivityNearCacheSize())
+				.expireAfterWrite(properties.getLastActivityNearCacheTimeToLive().getSeconds(), TimeUnit.SECONDS).recordStats()
+				.build();
+		clusterCache = hazelcastInstance.getMap(LAST_ACTIVITY_MAP_NAME);
+	}
+
 	@Transactional
 	public ActivityDTO fetchLastActivityForUser(UUID userAnonymizedID, UUID goalID)
+	{
+		LastActivityKey key = new LastActivityKey(userAnonymizedID, goalID);
+		ActivityDTO activity = isNearCacheUsed() ? nearCache.getIfPresent(key) : null;
+		if (activity != null)
+		{
+			return activity;
+		}
+		activity = clusterCache.get(key);
+		if (activity == null)
+		{
+			activity = loadLastActivity(userAnonymizedID, goalID);
+			if (activity == null)
+			{
+				return null;
+			}
+			putInClusterCache(key, activity);
+		}
+		putInNearCache(key, activity);
+		return activity;
+	}
+
+	public ActivityDTO updateLastActivityForUser(UUID userAnonymizedID, UUID goalID, ActivityDTO activity)
+	{
+		LastActivityKey key = new LastActivityKey(userAnonymizedID, goalID);
+		putInClusterCache(key, activity);
+		putInNearCache(key, activity);
+		return activity;
+	}
+
+	public ActivityCacheStatisticsDTO getStatistics()
+	{
+		CacheStats stats = nearCache.stats();
+		return new ActivityCacheStatisticsDTO(nearCache.size(), stats.hitCount(), stats.missCount(), stats.evictionCount(),
+				clusterCache.getLocalMapStats().getOwnedEntryCount());
+	}
+
+	private boolean isNearCacheUsed()
+	{
+		return !yonaProperties.getAnalysisService().isDistributedLockingEnabled();
+	}
+
+	private void putInNearCache(LastActivityKey key, ActivityDTO activity)
+	{
+		if (isNearCacheUsed())
+		{
+			nearCache.put(key, activity);
+		}
+	}
+
+	private void putInClusterCache(LastActivityKey key, ActivityDTO activity)
+	{
+		// Synchronous, so the update is visible to the next holder of the user lock. Set does not return the previous value.
+		clusterCache.set(key, activity,
+				yonaProperties.getAnalysisService().getLastActivityClusterCacheTimeToLive().getSeconds(), TimeUnit.SECONDS);
+	}
+
+	private ActivityDTO loadLastActivity(UUID userAnonymizedID, UUID goalID)
 	{
 		List<DayActivity> lastDayActivityList = DayActivity.getRepository().findLast(userAnonymizedID, goalID, new PageRequest(0, 1))
 				.getContent();
@@ -39,10 +129,34 @@ public class ActivityCacheService
 		return lastActivity == null ? null : ActivityDTO.createInstance(lastActivity);
 	}
 
-	@CachePut(key = "{#userAnonymizedID,#goalID}")
-	public ActivityDTO updateLastActivityForUser(UUID userAnonymizedID, UUID goalID, ActivityDTO activity)
+	static class LastActivityKey implements Serializable
 	{
-		// Nothing else to do. Just let Spring cache this new value.
-		return activity;
+		private static final long serialVersionUID = 3153397618917460781L;
+
+		private final UUID userAnonymizedID;
+		private final UUID goalID;
+
+		LastActivityKey(UUID userAnonymizedID, UUID goalID)
+		{
+			this.userAnonymizedID = userAnonymizedID;
+			this.goalID = goalID;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(userAnonymizedID, goalID);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof LastActivityKey))
+			{
+				return false;
+			}
+			LastActivityKey other = (LastActivityKey) obj;
+			return userAnonymizedID.equals(other.userAnonymizedID) && goalID.equals(other.goalID);
+		}
 	}
 }
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import com.fasterxml.jackson.annotation.JsonRootName;
+
+/*
+ * Snapshot of the statistics of the last activity cache.
+ * @see ActivityCacheService
+ */
+@JsonRootName("activityCacheStatistics")
+public class ActivityCacheStatisticsDTO
+{
+	private final long nearCacheSize;
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long ownedClusterEntryCount;
+
+	ActivityCacheStatisticsDTO(long nearCacheSize, long hitCount, long missCount, long evictionCount, long ownedClusterEntryCount)
+	{
+		this.nearCacheSize = nearCacheSize;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.ownedClusterEntryCount = ownedClusterEntryCount;
+	}
+
+	public long getNearCacheSize()
+	{
+		return nearCacheSize;
+	}
+
+	/*
+	 * The number of lookups served by the near cache.
+	 */
+	public long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/*
+	 * The number of lookups that went to the distributed map or to the database.
+	 */
+	public long getMissCount()
+	{
+		return missCount;
+	}
+
+	/*
+	 * The number of near cache entries removed because of the size bound or expiry.
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/*
+	 * The number of distributed map entries stored on this cluster member.
+	 */
+	public long getOwnedClusterEntryCount()
+	{
+		return ownedClusterEntryCount;
+	}
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import nu.yona.server.properties.YonaProperties;
+import nu.yona.server.util.LockPool;
+
+/*
+ * Write-behind buffer for the end time of the last activity of a day activity. Streaming app activity extends the last activity
+ * every few seconds. Instead of saving the day activity every time, the analysis engine records the new end time here. Consecutive
+ * extensions of the same activity are merged, and the latest end time is written to the database periodically, before a new
+ * activity is added to the same day activity, and at shutdown.
+ * The buffered end times are only visible to the analysis engine, through the last activity cache. Other readers of the day
+ * activities see the end time of the last flush, so the flush interval bounds how far they lag behind.
+ * The buffer is in the memory of this instance, so a crash loses the end times of up to one flush interval, and another instance
+ * would not see them. Buffering is therefore disabled by default, and cannot be combined with distributed locking.
+ */
+@Service
+public class ActivityEndTimeBuffer
+{
+	private static final Logger logger = LoggerFactory.getLogger(ActivityEndTimeBuffer.class);
+
+	@Autowired
+	private YonaProperties yonaProperties;
+
+	@Autowired
+	private ActivityEndTimeFlushService flushService;
+
+	@Autowired
+	private LockPool<UUID> userAnonymizedSynchronizer;
+
+	private final ConcurrentMap<DayActivityKey, ZonedDateTime> bufferedEndTimes = new ConcurrentHashMap<>();
+	private ScheduledExecutorService flushScheduler;
+
+	@PostConstruct
+	public void start()
+	{
+		if (!isEnabled())
+		{
+			return;
+		}
+		if (yonaProperties.getAnalysisService().isDistributedLockingEnabled())
+		{
+			throw new IllegalStateException("Activity end time buffering cannot be combined with distributed locking, "
+					+ "as the buffer is local to this instance. Set yona.analysisservice.activityEndTimeFlushInterval to PT0S.");
+		}
+		long flushIntervalMillis = getFlushInterval().toMillis();
+		flushScheduler = Executors.newSingleThreadScheduledExecutor();
+		flushScheduler.scheduleWithFixedDelay(this::flushAll, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException
+	{
+		if (flushScheduler == null)
+		{
+			return;
+		}
+		flushScheduler.shutdown();
+		flushScheduler.awaitTermination(1, TimeUnit.MINUTES);
+		flushAll();
+	}
+
+	/**
+	 * Records a new end time for the last activity of the given day activity. The caller must hold the lock on the user.
+	 * 
+	 * @return false if buffering is disabled. In that case, the caller must update the day activity itself.
+	 */
+	public boolean bufferEndTime(UUID userAnonymizedID, UUID goalID, LocalDate date, ZonedDateTime endTime)
+	{
+		if (!isEnabled())
+		{
+			return false;
+		}
+		bufferedEndTimes.merge(new DayActivityKey(userAnonymizedID, goalID, date), endTime,
+				(t1, t2) -> t1.isAfter(t2) ? t1 : t2);
+		return true;
+	}
+
+	/**
+	 * Removes and returns the buffered end time for the last activity of the given day activity, so the caller can apply it before
+	 * it updates the day activity. The caller must hold the lock on the user.
+	 */
+	public Optional<ZonedDateTime> takeEndTime(UUID userAnonymizedID, UUID goalID, LocalDate date)
+	{
+		return Optional.ofNullable(bufferedEndTimes.remove(new DayActivityKey(userAnonymizedID, goalID, date)));
+	}
+
+	public int getBufferedCount()
+	{
+		return bufferedEndTimes.size();
+	}
+
+	void flushAll()
+	{
+		for (DayActivityKey key : new ArrayList<>(bufferedEndTimes.keySet()))
+		{
+			try
+			{
+				flush(key);
+			}
+			catch (RuntimeException e)
+			{
+				// The end time stays buffered, so it is retried on the next flush
+				logger.error("Failed to flush the end time of the last activity of day activity " + key, e);
+			}
+		}
+	}
+
+	private void flush(DayActivityKey key)
+	{
+		// Take the end time while holding the lock, so the analysis engine cannot add an activity between taking and writing it
+		try (LockPool<UUID>.Lock lock = userAnonymizedSynchronizer.lock(key.userAnonymizedID))
+		{
+			ZonedDateTime endTime = bufferedEndTimes.remove(key);
+			if (endTime != null)
+			{
+				flushService.writeEndTime(key.userAnonymizedID, key.goalID, key.date, endTime);
+			}
+		}
+	}
+
+	private boolean isEnabled()
+	{
+		return !getFlushInterval().isZero();
+	}
+
+	private Duration getFlushInterval()
+	{
+		return yonaProperties.getAnalysisService().getActivityEndTimeFlushInterval();
+	}
+
+	private static class DayActivityKey
+	{
+		private final UUID userAnonymizedID;
+		private final UUID goalID;
+		private final LocalDate date;
+
+		DayActivityKey(UUID userAnonymizedID, UUID goalID, LocalDate date)
+		{
+			this.userAnonymizedID = userAnonymizedID;
+			this.goalID = goalID;
+			this.date = date;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(userAnonymizedID, goalID, date);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof DayActivityKey))
+			{
+				return false;
+			}
+			DayActivityKey other = (DayActivityKey) obj;
+			return userAnonymizedID.equals(other.userAnonymizedID) && goalID.equals(other.goalID) && date.equals(other.date);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "user anonymized ID " + userAnonymizedID + ", goal ID " + goalID + ", date " + date;
+		}
+	}
+}
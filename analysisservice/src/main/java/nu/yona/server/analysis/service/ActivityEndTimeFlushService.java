@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+import javax.transaction.Transactional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import nu.yona.server.analysis.entities.Activity;
+import nu.yona.server.analysis.entities.DayActivity;
+import nu.yona.server.analysis.entities.DayActivityRepository;
+import nu.yona.server.analysis.entities.WeekActivity;
+import nu.yona.server.analysis.entities.WeekActivityRepository;
+
+/*
+ * Writes the end times flushed from the ActivityEndTimeBuffer, each in its own transaction.
+ */
+@Service
+public class ActivityEndTimeFlushService
+{
+	@Autowired(required = false)
+	private DayActivityRepository dayActivityRepository;
+
+	@Autowired(required = false)
+	private WeekActivityRepository weekActivityRepository;
+
+	@Autowired
+	private ActivityVersionService activityVersionService;
+
+	@Transactional
+	public void writeEndTime(UUID userAnonymizedID, UUID goalID, LocalDate date, ZonedDateTime endTime)
+	{
+		DayActivity dayActivity = dayActivityRepository.findOne(userAnonymizedID, date, goalID);
+		if (dayActivity == null)
+		{
+			// Deleted in the meantime, e.g. because the goal was deleted
+			return;
+		}
+		Activity lastActivity = dayActivity.getLastActivity();
+		if (lastActivity == null || !endTime.isAfter(lastActivity.getEndTime()))
+		{
+			return;
+		}
+		dayActivity.setLastActivityEndTime(endTime);
+		WeekActivity weekActivity = weekActivityRepository.findOne(userAnonymizedID, goalID,
+				WeekActivity.getStartOfWeek(dayActivity.getStartTime()).toLocalDate());
+		if (weekActivity != null)
+		{
+			weekActivity.applyDayActivityChange(dayActivity);
+			weekActivityRepository.save(weekActivity);
+		}
+		dayActivityRepository.save(dayActivity);
+		activityVersionService.incrementVersion(userAnonymizedID);
+	}
+}
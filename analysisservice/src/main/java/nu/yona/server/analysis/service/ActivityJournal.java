@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/*
+ * Append-only file journal of the activities queued for analysis. Every queued activity is written to the journal (and forced to
+ * disk) before it is acknowledged. Threads that append at the same time share one force, so the disk is not synced once per
+ * activity. When the analysis of an activity is done, its sequence number is appended to the processed file of its segment.
+ * The journal is split in segments of a limited number of activities. A new segment is started when the current one is full,
+ * and a segment is deleted as soon as all its activities are processed, so the journal does not grow while the queue keeps up.
+ * After a crash, the activities that are in a segment but not in its processed file are returned by {@link #open()}, so they can
+ * be queued again. Activities of which the analysis failed are moved to a separate dead letter file, for investigation and
+ * manual replay.
+ */
+class ActivityJournal implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(ActivityJournal.class);
+
+	private static final String JOURNAL_FILE_PREFIX = "activities-";
+	private static final String PROCESSED_FILE_PREFIX = "processed-";
+	private static final String FILE_SUFFIX = ".journal";
+	private static final Pattern JOURNAL_FILE_PATTERN = Pattern.compile(JOURNAL_FILE_PREFIX + "(\\d+)\\" + FILE_SUFFIX);
+	private static final String DEAD_LETTER_FILE_NAME = "failed.journal";
+	private static final byte[] LINE_SEPARATOR = "\n".getBytes(StandardCharsets.UTF_8);
+
+	private final ObjectMapper objectMapper;
+	private final Path directory;
+	private final int maxSegmentSize;
+	private final Object forceLock = new Object();
+	private final AtomicLong forcedSequenceNumber = new AtomicLong(-1);
+	private final NavigableMap<Long, Segment> segmentsByFirstSequenceNumber = new TreeMap<>();
+	private Segment currentSegment;
+	private FileChannel deadLetterChannel;
+	private long nextSequenceNumber;
+
+	ActivityJournal(ObjectMapper objectMapper, Path directory, int maxSegmentSize)
+	{
+		this.objectMapper = objectMapper;
+		this.directory = directory;
+		this.maxSegmentSize = maxSegmentSize;
+	}
+
+	/**
+	 * Opens the journal and returns the activities that were journaled but not processed before the previous shutdown or crash.
+	 * These activities stay in their segments, with their original sequence numbers. New activities go to a new segment.
+	 */
+	synchronized List<QueuedActivity> open() throws IOException
+	{
+		Files.createDirectories(directory);
+		List<QueuedActivity> pendingActivities = new ArrayList<>();
+		for (Path journalFile : findSegmentFiles().values())
+		{
+			pendingActivities.addAll(openExistingSegment(journalFile));
+		}
+		startSegment(nextSequenceNumber);
+		deadLetterChannel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE_NAME), StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+		if (!pendingActivities.isEmpty())
+		{
+			logger.info("Replaying {} activities from the activity journal", pendingActivities.size());
+		}
+		return pendingActivities;
+	}
+
+	/**
+	 * Journals a new activity. When this returns, the activity is on disk.
+	 */
+	QueuedActivity append(LongFunction<QueuedActivity> activityFactory) throws IOException
+	{
+		QueuedActivity activity = write(activityFactory);
+		force(activity.getSequenceNumber());
+		return activity;
+	}
+
+	synchronized void markProcessed(QueuedActivity activity) throws IOException
+	{
+		Segment segment = segmentsByFirstSequenceNumber.floorEntry(activity.getSequenceNumber()).getValue();
+		segment.markProcessed(activity.getSequenceNumber());
+		if (segment != currentSegment && segment.outstandingCount == 0)
+		{
+			segmentsByFirstSequenceNumber.remove(segment.firstSequenceNumber);
+			segment.delete();
+		}
+	}
+
+	/**
+	 * Writes an activity of which the analysis failed to the dead letter file, with the error. The activity still has to be marked
+	 * processed.
+	 */
+	synchronized void deadLetter(QueuedActivity activity, Exception error) throws IOException
+	{
+		ObjectNode entry = objectMapper.valueToTree(activity);
+		entry.put("error", String.valueOf(error));
+		writeLine(deadLetterChannel, objectMapper.writeValueAsBytes(entry));
+		deadLetterChannel.force(false);
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		for (Segment segment : segmentsByFirstSequenceNumber.values())
+		{
+			segment.close();
+		}
+		segmentsByFirstSequenceNumber.clear();
+		if (deadLetterChannel != null)
+		{
+			deadLetterChannel.close();
+		}
+	}
+
+	synchronized int getSegmentCount()
+	{
+		return segmentsByFirstSequenceNumber.size();
+	}
+
+	private synchronized QueuedActivity write(LongFunction<QueuedActivity> activityFactory) throws IOException
+	{
+		if (currentSegment.size >= maxSegmentSize)
+		{
+			rotate();
+		}
+		QueuedActivity activity = activityFactory.apply(nextSequenceNumber++);
+		writeLine(currentSegment.journalChannel, objectMapper.writeValueAsBytes(activity));
+		currentSegment.size++;
+		currentSegment.outstandingCount++;
+		currentSegment.lastSequenceNumber = activity.getSequenceNumber();
+		return activity;
+	}
+
+	/*
+	 * Forces the current segment to disk, unless another thread already did that after the given activity was written. While one
+	 * thread forces, the others that appended in the meantime wait, and are then covered by the next force.
+	 */
+	private void force(long sequenceNumber) throws IOException
+	{
+		synchronized (forceLock)
+		{
+			if (forcedSequenceNumber.get() >= sequenceNumber)
+			{
+				return;
+			}
+			FileChannel channel;
+			long lastWrittenSequenceNumber;
+			synchronized (this)
+			{
+				channel = currentSegment.journalChannel;
+				lastWrittenSequenceNumber = currentSegment.lastSequenceNumber;
+			}
+			channel.force(false);
+			forcedSequenceNumber.accumulateAndGet(lastWrittenSequenceNumber, Math::max);
+		}
+	}
+
+	/*
+	 * Starts a new segment. The current one is forced first, as the next force only covers the new segment. Its channels stay open
+	 * until all its activities are processed, as a thread that appended to it might still be forcing it.
+	 */
+	private void rotate() throws IOException
+	{
+		Segment fullSegment = currentSegment;
+		fullSegment.journalChannel.force(false);
+		forcedSequenceNumber.accumulateAndGet(fullSegment.lastSequenceNumber, Math::max);
+		startSegment(nextSequenceNumber);
+		if (fullSegment.outstandingCount == 0)
+		{
+			segmentsByFirstSequenceNumber.remove(fullSegment.firstSequenceNumber);
+			fullSegment.delete();
+		}
+	}
+
+	private void startSegment(long firstSequenceNumber) throws IOException
+	{
+		currentSegment = new Segment(firstSequenceNumber);
+		currentSegment.openForAppend();
+		segmentsByFirstSequenceNumber.put(firstSequenceNumber, currentSegment);
+	}
+
+	private NavigableMap<Long, Path> findSegmentFiles() throws IOException
+	{
+		NavigableMap<Long, Path> segmentFiles = new TreeMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, JOURNAL_FILE_PREFIX + "*" + FILE_SUFFIX))
+		{
+			for (Path file : files)
+			{
+				Matcher matcher = JOURNAL_FILE_PATTERN.matcher(file.getFileName().toString());
+				if (matcher.matches())
+				{
+					segmentFiles.put(Long.parseLong(matcher.group(1)), file);
+				}
+			}
+		}
+		return segmentFiles;
+	}
+
+	private List<QueuedActivity> openExistingSegment(Path journalFile) throws IOException
+	{
+		Matcher matcher = JOURNAL_FILE_PATTERN.matcher(journalFile.getFileName().toString());
+		matcher.matches();
+		Segment segment = new Segment(Long.parseLong(matcher.group(1)));
+		nextSequenceNumber = Math.max(nextSequenceNumber, segment.firstSequenceNumber);
+
+		Map<Long, QueuedActivity> journaledActivities = readActivities(segment.journalFile);
+		journaledActivities.keySet().stream().mapToLong(Long::longValue).max()
+				.ifPresent(sn -> nextSequenceNumber = Math.max(nextSequenceNumber, sn + 1));
+		journaledActivities.keySet().removeAll(readProcessedSequenceNumbers(segment.processedFile));
+		if (journaledActivities.isEmpty())
+		{
+			segment.delete();
+			return new ArrayList<>();
+		}
+		segment.outstandingCount = journaledActivities.size();
+		segment.openForProcessing();
+		segmentsByFirstSequenceNumber.put(segment.firstSequenceNumber, segment);
+		return new ArrayList<>(journaledActivities.values());
+	}
+
+	private Map<Long, QueuedActivity> readActivities(Path journalFile) throws IOException
+	{
+		Map<Long, QueuedActivity> activities = new LinkedHashMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				QueuedActivity activity = parseActivity(line);
+				if (activity != null)
+				{
+					activities.put(activity.getSequenceNumber(), activity);
+				}
+			}
+		}
+		return activities;
+	}
+
+	private QueuedActivity parseActivity(String line)
+	{
+		if (line.isEmpty())
+		{
+			return null;
+		}
+		try
+		{
+			return objectMapper.readValue(line, QueuedActivity.class);
+		}
+		catch (IOException e)
+		{
+			// This can happen for the last line, if the service crashed while appending it. It was not acknowledged then.
+			logger.warn("Skipping unreadable line in activity journal: " + line, e);
+			return null;
+		}
+	}
+
+	private Set<Long> readProcessedSequenceNumbers(Path processedFile) throws IOException
+	{
+		Set<Long> processedSequenceNumbers = new HashSet<>();
+		if (!Files.exists(processedFile))
+		{
+			return processedSequenceNumbers;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(processedFile, StandardCharsets.UTF_8))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				try
+				{
+					processedSequenceNumbers.add(Long.parseLong(line.trim()));
+				}
+				catch (NumberFormatException e)
+				{
+					logger.warn("Skipping unreadable line in processed activity journal: " + line);
+				}
+			}
+		}
+		return processedSequenceNumbers;
+	}
+
+	private static void writeLine(FileChannel channel, byte[] bytes) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length + LINE_SEPARATOR.length);
+		buffer.put(bytes).put(LINE_SEPARATOR).flip();
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+
+	private class Segment
+	{
+		private final long firstSequenceNumber;
+		private final Path journalFile;
+		private final Path processedFile;
+		private FileChannel journalChannel;
+		private FileChannel processedChannel;
+		private long lastSequenceNumber = -1;
+		private int size;
+		private int outstandingCount;
+
+		Segment(long firstSequenceNumber)
+		{
+			this.firstSequenceNumber = firstSequenceNumber;
+			this.journalFile = directory.resolve(JOURNAL_FILE_PREFIX + firstSequenceNumber + FILE_SUFFIX);
+			this.processedFile = directory.resolve(PROCESSED_FILE_PREFIX + firstSequenceNumber + FILE_SUFFIX);
+		}
+
+		void openForAppend() throws IOException
+		{
+			journalChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			processedChannel = FileChannel.open(processedFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		void openForProcessing() throws IOException
+		{
+			processedChannel = FileChannel.open(processedFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		}
+
+		void markProcessed(long sequenceNumber) throws IOException
+		{
+			writeLine(processedChannel, Long.toString(sequenceNumber).getBytes(StandardCharsets.UTF_8));
+			outstandingCount--;
+		}
+
+		void delete() throws IOException
+		{
+			close();
+			Files.deleteIfExists(journalFile);
+			Files.deleteIfExists(processedFile);
+		}
+
+		void close() throws IOException
+		{
+			if (journalChannel != null)
+			{
+				journalChannel.close();
+			}
+			if (processedChannel != null)
+			{
+				processedChannel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nu.yona.server.exceptions.AnalysisException;
+import nu.yona.server.exceptions.YonaException;
+import nu.yona.server.properties.AnalysisServiceProperties;
+import nu.yona.server.properties.YonaProperties;
+import nu.yona.server.util.LockPoolException;
+
+/*
+ * Bounded, durable queue in front of the analysis engine. Activities are journaled and acknowledged right away, and analyzed
+ * later by a pool of workers. Every user is assigned to one worker, so the activities of a user are analyzed in the order in
+ * which they were received. When the queue is full, new activities are refused, so the callers can back off. Activities that
+ * were not analyzed before a shutdown or crash are replayed from the journal on startup. The analysis of an activity is only
+ * retried when it fails on a lock or a concurrent update. An activity of which the analysis fails otherwise, or keeps failing, is
+ * moved to the dead letter file of the journal, so it is not lost, but does not block the other activities of the user either.
+ */
+@Service
+public class ActivityQueueService
+{
+	private static final Logger logger = LoggerFactory.getLogger(ActivityQueueService.class);
+
+	private static final long POLL_TIMEOUT_MILLIS = 500;
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+	private static final int MAX_ANALYSIS_ATTEMPTS = 3;
+
+	@Autowired
+	private YonaProperties yonaProperties;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private AnalysisEngineService analysisEngineService;
+
+	private final AtomicLong acceptedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong processedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private List<BlockingQueue<QueuedActivity>> partitions = Collections.emptyList();
+	private Semaphore availableCapacity;
+	private ActivityJournal journal;
+	private ExecutorService workers;
+	private volatile boolean isRunning;
+
+	@PostConstruct
+	public void start() throws IOException
+	{
+		if (!isEnabled())
+		{
+			return;
+		}
+		AnalysisServiceProperties properties = yonaProperties.getAnalysisService();
+		journal = new ActivityJournal(objectMapper, Paths.get(properties.getQueueJournalDirectory()),
+				properties.getQueueJournalSegmentSize());
+		List<QueuedActivity> pendingActivities = journal.open();
+
+		// Replayed activities are always accepted, even if there are more than the capacity of the queue
+		availableCapacity = new Semaphore(properties.getQueueCapacity() - pendingActivities.size());
+		partitions = new ArrayList<>(properties.getQueueWorkerCount());
+		for (int i = 0; i < properties.getQueueWorkerCount(); i++)
+		{
+			partitions.add(new LinkedBlockingQueue<>());
+		}
+		pendingActivities.forEach(a -> getPartition(a.getUserAnonymizedID()).add(a));
+
+		isRunning = true;
+		workers = Executors.newFixedThreadPool(partitions.size());
+		partitions.forEach(p -> workers.execute(() -> drain(p)));
+		logger.info("Activity queue started with {} workers and a capacity of {} activities", partitions.size(),
+				properties.getQueueCapacity());
+	}
+
+	@PreDestroy
+	public void stop() throws IOException, InterruptedException
+	{
+		if (!isRunning)
+		{
+			return;
+		}
+		// The workers finish the activity they are analyzing. The remaining ones stay in the journal and are replayed on startup
+		isRunning = false;
+		workers.shutdown();
+		if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+		{
+			logger.warn("Activity queue workers did not stop within {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+		}
+		journal.close();
+	}
+
+	public boolean isEnabled()
+	{
+		return yonaProperties.getAnalysisService().isQueueEnabled();
+	}
+
+	public void enqueue(UUID userAnonymizedID, NetworkActivityDTO networkActivity)
+	{
+		// Network activity without event time is registered at the time of analysis, so fix that time now
+		NetworkActivityDTO timedNetworkActivity = new NetworkActivityDTO(networkActivity.getCategories(),
+				networkActivity.getURL(), Optional.of(networkActivity.getEventTime().orElse(ZonedDateTime.now())));
+		enqueue(userAnonymizedID, sn -> QueuedActivity.createInstance(sn, userAnonymizedID, timedNetworkActivity));
+	}
+
+	public void enqueue(UUID userAnonymizedID, AppActivityDTO appActivity)
+	{
+		enqueue(userAnonymizedID, sn -> QueuedActivity.createInstance(sn, userAnonymizedID, appActivity));
+	}
+
+	public ActivityQueueStatusDTO getStatus()
+	{
+		return new ActivityQueueStatusDTO(isRunning, yonaProperties.getAnalysisService().getQueueCapacity(),
+				partitions.stream().map(BlockingQueue::size).collect(Collectors.toList()), acceptedCount.get(),
+				rejectedCount.get(), processedCount.get(), failedCount.get());
+	}
+
+	private void enqueue(UUID userAnonymizedID, LongFunction<QueuedActivity> activityFactory)
+	{
+		if (!isRunning)
+		{
+			throw new IllegalStateException("Activity queue is not running");
+		}
+		if (!availableCapacity.tryAcquire())
+		{
+			rejectedCount.incrementAndGet();
+			throw AnalysisException.activityQueueFull(yonaProperties.getAnalysisService().getQueueCapacity());
+		}
+		QueuedActivity activity;
+		try
+		{
+			activity = journal.append(activityFactory);
+		}
+		catch (IOException e)
+		{
+			availableCapacity.release();
+			throw YonaException.unexpected(e);
+		}
+		getPartition(userAnonymizedID).add(activity);
+		acceptedCount.incrementAndGet();
+	}
+
+	private BlockingQueue<QueuedActivity> getPartition(UUID userAnonymizedID)
+	{
+		return partitions.get(Math.floorMod(userAnonymizedID.hashCode(), partitions.size()));
+	}
+
+	private void drain(BlockingQueue<QueuedActivity> partition)
+	{
+		try
+		{
+			while (isRunning)
+			{
+				QueuedActivity activity = partition.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				if (activity != null)
+				{
+					process(activity);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void process(QueuedActivity activity)
+	{
+		try
+		{
+			analyzeWithRetry(activity);
+		}
+		finally
+		{
+			markProcessed(activity);
+		}
+	}
+
+	private void analyzeWithRetry(QueuedActivity activity)
+	{
+		for (int attempt = 1;; attempt++)
+		{
+			try
+			{
+				analyze(activity);
+				return;
+			}
+			catch (RuntimeException e)
+			{
+				if (attempt < MAX_ANALYSIS_ATTEMPTS && isTransient(e))
+				{
+					logger.warn("Analysis of queued activity " + activity.getSequenceNumber() + " failed in attempt " + attempt
+							+ ", retrying: " + e.getMessage());
+					continue;
+				}
+				failedCount.incrementAndGet();
+				logger.error("Analysis of queued activity " + activity.getSequenceNumber() + " for user anonymized ID "
+						+ activity.getUserAnonymizedID() + " failed, moving it to the dead letter file: " + e.getMessage(), e);
+				deadLetter(activity, e);
+				return;
+			}
+		}
+	}
+
+	/*
+	 * A lock timeout or a concurrent update will most likely succeed next time. Other failures, e.g. an unknown user or invalid
+	 * activity data, fail again on every attempt.
+	 */
+	private static boolean isTransient(RuntimeException e)
+	{
+		return e instanceof LockPoolException || e instanceof ConcurrencyFailureException
+				|| e instanceof TransientDataAccessException;
+	}
+
+	private void analyze(QueuedActivity activity)
+	{
+		if (activity.getNetworkActivity() != null)
+		{
+			analysisEngineService.analyze(activity.getUserAnonymizedID(), activity.getNetworkActivity());
+		}
+		else
+		{
+			analysisEngineService.analyze(activity.getUserAnonymizedID(), compensateForQueueTime(activity));
+		}
+	}
+
+	/*
+	 * The analysis engine determines the clock offset of the device by comparing the device time to the current time. Shift the
+	 * device time by the time the activity spent in the queue, to keep that offset right.
+	 */
+	private AppActivityDTO compensateForQueueTime(QueuedActivity activity)
+	{
+		AppActivityDTO appActivity = activity.getAppActivity();
+		Duration queueTime = Duration.between(activity.getReceivedTime(), ZonedDateTime.now());
+		return new AppActivityDTO(appActivity.getDeviceDateTime().plus(queueTime), appActivity.getActivities());
+	}
+
+	private void deadLetter(QueuedActivity activity, RuntimeException error)
+	{
+		try
+		{
+			journal.deadLetter(activity, error);
+		}
+		catch (IOException e)
+		{
+			logger.error("Failed to write queued activity " + activity.getSequenceNumber() + " to the dead letter file", e);
+		}
+	}
+
+	private void markProcessed(QueuedActivity activity)
+	{
+		try
+		{
+			journal.markProcessed(activity);
+		}
+		catch (IOException e)
+		{
+			// The activity will be analyzed once more after a restart
+			logger.error("Failed to mark queued activity " + activity.getSequenceNumber() + " as processed", e);
+		}
+		processedCount.incrementAndGet();
+		availableCapacity.release();
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonRootName;
+
+/*
+ * Snapshot of the metrics of the activity queue.
+ * @see ActivityQueueService
+ */
+@JsonRootName("activityQueueStatus")
+public class ActivityQueueStatusDTO
+{
+	private final boolean enabled;
+	private final int capacity;
+	private final List<Integer> partitionDepths;
+	private final long acceptedCount;
+	private final long rejectedCount;
+	private final long processedCount;
+	private final long failedCount;
+
+	ActivityQueueStatusDTO(boolean enabled, int capacity, List<Integer> partitionDepths, long acceptedCount, long rejectedCount,
+			long processedCount, long failedCount)
+	{
+		this.enabled = enabled;
+		this.capacity = capacity;
+		this.partitionDepths = partitionDepths;
+		this.acceptedCount = acceptedCount;
+		this.rejectedCount = rejectedCount;
+		this.processedCount = processedCount;
+		this.failedCount = failedCount;
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/*
+	 * The total number of activities waiting to be analyzed.
+	 */
+	public int getDepth()
+	{
+		return partitionDepths.stream().mapToInt(Integer::intValue).sum();
+	}
+
+	/*
+	 * The number of activities waiting to be analyzed, per worker.
+	 */
+	public List<Integer> getPartitionDepths()
+	{
+		return Collections.unmodifiableList(partitionDepths);
+	}
+
+	public long getAcceptedCount()
+	{
+		return acceptedCount;
+	}
+
+	/*
+	 * The number of activities that were refused because the queue was full.
+	 */
+	public long getRejectedCount()
+	{
+		return rejectedCount;
+	}
+
+	public long getProcessedCount()
+	{
+		return processedCount;
+	}
+
+	/*
+	 * The number of processed activities for which the analysis failed, also after retrying. These are in the dead letter file of
+	 * the activity journal.
+	 */
+	public long getFailedCount()
+	{
+		return failedCount;
+	}
+}
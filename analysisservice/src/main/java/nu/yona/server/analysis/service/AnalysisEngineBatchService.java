@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import nu.yona.server.analysis.service.NetworkActivityBatchDTO.UserNetworkActivity;
+import nu.yona.server.analysis.service.NetworkActivityBatchResultDTO.NetworkActivityResult;
+import nu.yona.server.exceptions.AnalysisException;
+import nu.yona.server.exceptions.YonaException;
+
+/*
+ * Splits a batch of network activities into one group per user and has the analysis engine process each group separately. Every
+ * group is processed in its own transaction and with one lock, so a failure for one user does not affect the other users in the
+ * batch.
+ */
+@Service
+public class AnalysisEngineBatchService
+{
+	private static final Logger logger = LoggerFactory.getLogger(AnalysisEngineBatchService.class);
+
+	@Autowired
+	private AnalysisEngineService analysisEngineService;
+
+	public NetworkActivityBatchResultDTO analyze(NetworkActivityBatchDTO networkActivityBatch)
+	{
+		List<UserNetworkActivity> networkActivities = networkActivityBatch.getNetworkActivities();
+		validateUserAnonymizedIDs(networkActivities);
+		Map<UUID, List<NetworkActivityDTO>> networkActivitiesByUserAnonymizedID = networkActivities.stream()
+				.collect(Collectors.groupingBy(UserNetworkActivity::getUserAnonymizedID, LinkedHashMap::new,
+						Collectors.mapping(UserNetworkActivity::getNetworkActivity, Collectors.toList())));
+
+		Map<UUID, NetworkActivityResult> resultsByUserAnonymizedID = networkActivitiesByUserAnonymizedID.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, e -> analyze(e.getKey(), e.getValue())));
+
+		List<NetworkActivityResult> results = new ArrayList<>(networkActivities.size());
+		networkActivities.forEach(na -> results.add(resultsByUserAnonymizedID.get(na.getUserAnonymizedID())));
+		return new NetworkActivityBatchResultDTO(results);
+	}
+
+	private void validateUserAnonymizedIDs(List<UserNetworkActivity> networkActivities)
+	{
+		for (int i = 0; i < networkActivities.size(); i++)
+		{
+			if (networkActivities.get(i).getUserAnonymizedID() == null)
+			{
+				throw AnalysisException.networkActivityBatchMissingUserAnonymizedID(i);
+			}
+		}
+	}
+
+	private NetworkActivityResult analyze(UUID userAnonymizedID, List<NetworkActivityDTO> networkActivities)
+	{
+		try
+		{
+			analysisEngineService.analyze(userAnonymizedID, networkActivities);
+			return NetworkActivityResult.createSuccessInstance(userAnonymizedID);
+		}
+		catch (YonaException e)
+		{
+			logger.error("Analysis of " + networkActivities.size() + " network activities for user anonymized ID "
+					+ userAnonymizedID + " failed: " + e.getMessage(), e);
+			return NetworkActivityResult.createFailureInstance(userAnonymizedID, e.getMessageId(), e.getMessage());
+		}
+		catch (RuntimeException e)
+		{
+			logger.error("Analysis of " + networkActivities.size() + " network activities for user anonymized ID "
+					+ userAnonymizedID + " failed with unknown exception: " + e.getMessage(), e);
+			return NetworkActivityResult.createFailureInstance(userAnonymizedID, null, e.getMessage());
+		}
+	}
+}
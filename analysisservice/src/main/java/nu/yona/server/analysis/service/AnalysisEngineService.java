@@ -8,6 +8,7 @@ import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -17,6 +18,8 @@ import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import nu.yona.server.analysis.entities.Activity;
 import nu.yona.server.analysis.entities.DayActivity;
@@ -36,7 +39,6 @@ import nu.yona.server.subscriptions.entities.UserAnonymized;
 import nu.yona.server.subscriptions.service.UserAnonymizedDTO;
 import nu.yona.server.subscriptions.service.UserAnonymizedService;
 import nu.yona.server.util.LockPool;
-import nu.yona.server.util.TimeUtil;
 
 @Service
 public class AnalysisEngineService
@@ -61,27 +63,70 @@ public class AnalysisEngineService
 	private WeekActivityRepository weekActivityRepository;
 	@Autowired
 	private LockPool<UUID> userAnonymizedSynchronizer;
+	@Autowired
+	private ActivityEndTimeBuffer activityEndTimeBuffer;
+	@Autowired
+	private ActivityVersionService activityVersionService;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
 
-	@Transactional
 	public void analyze(UUID userAnonymizedID, AppActivityDTO appActivities)
 	{
-		UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
-		Duration deviceTimeOffset = determineDeviceTimeOffset(appActivities);
-		for (AppActivityDTO.Activity appActivity : appActivities.getActivities())
-		{
-			Set<ActivityCategoryDTO> matchingActivityCategories = activityCategoryService
-					.getMatchingCategoriesForApp(appActivity.getApplication());
-			analyze(createActivityPayload(deviceTimeOffset, appActivity, userAnonymized), matchingActivityCategories);
-		}
+		analyzeInLockedTransaction(userAnonymizedID, () -> {
+			UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
+			Duration deviceTimeOffset = determineDeviceTimeOffset(appActivities);
+			for (AppActivityDTO.Activity appActivity : appActivities.getActivities())
+			{
+				Set<ActivityCategoryDTO> matchingActivityCategories = activityCategoryService
+						.getMatchingCategoriesForApp(appActivity.getApplication());
+				analyzeInsideLock(createActivityPayload(deviceTimeOffset, appActivity, userAnonymized),
+						matchingActivityCategories);
+			}
+		});
 	}
 
-	@Transactional
 	public void analyze(UUID userAnonymizedID, NetworkActivityDTO networkActivity)
 	{
-		UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
-		Set<ActivityCategoryDTO> matchingActivityCategories = activityCategoryService
-				.getMatchingCategoriesForSmoothwallCategories(networkActivity.getCategories());
-		analyze(ActivityPayload.createInstance(userAnonymized, networkActivity), matchingActivityCategories);
+		analyzeInLockedTransaction(userAnonymizedID, () -> {
+			UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
+			Set<ActivityCategoryDTO> matchingActivityCategories = activityCategoryService
+					.getMatchingCategoriesForSmoothwallCategories(networkActivity.getCategories());
+			analyzeInsideLock(ActivityPayload.createInstance(userAnonymized, networkActivity), matchingActivityCategories);
+		});
+	}
+
+	/*
+	 * Analyzes multiple network activities of one user. All activities are analyzed in one transaction and while holding the lock
+	 * of the user just once.
+	 */
+	public void analyze(UUID userAnonymizedID, List<NetworkActivityDTO> networkActivities)
+	{
+		analyzeInLockedTransaction(userAnonymizedID, () -> {
+			UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
+			for (NetworkActivityDTO networkActivity : networkActivities)
+			{
+				Set<ActivityCategoryDTO> matchingActivityCategories = activityCategoryService
+						.getMatchingCategoriesForSmoothwallCategories(networkActivity.getCategories());
+				analyzeInsideLock(ActivityPayload.createInstance(userAnonymized, networkActivity), matchingActivityCategories);
+			}
+		});
+	}
+
+	/*
+	 * We take a lock here because we further down in this class need to prevent conflicting updates to the DayActivity entities.
+	 * The lock is taken outside the transaction and only released after the commit. Otherwise another analysis of the same user
+	 * (possibly on another instance, when the locks are distributed) could read the activities before the changes of this one are
+	 * committed, and for instance create a second day activity for the same day.
+	 */
+	private void analyzeInLockedTransaction(UUID userAnonymizedID, Runnable analysis)
+	{
+		try (LockPool<UUID>.Lock lock = userAnonymizedSynchronizer.lock(userAnonymizedID))
+		{
+			new TransactionTemplate(transactionManager).execute(status -> {
+				analysis.run();
+				return null;
+			});
+		}
 	}
 
 	private Duration determineDeviceTimeOffset(AppActivityDTO appActivities)
@@ -124,18 +169,6 @@ public class AnalysisEngineService
 		return time.minus(deviceTimeOffset);
 	}
 
-	private void analyze(ActivityPayload payload, Set<ActivityCategoryDTO> matchingActivityCategories)
-	{
-		// We add a lock here because we further down in this class need to prevent conflicting updates to the DayActivity
-		// entities.
-		// The lock is added in this method (and not further down) so that we only have to lock once;
-		// because the lock is per user, it doesn't matter much that we block early.
-		try (LockPool<UUID>.Lock lock = userAnonymizedSynchronizer.lock(payload.userAnonymized.getID()))
-		{
-			analyzeInsideLock(payload, matchingActivityCategories);
-		}
-	}
-
 	private void analyzeInsideLock(ActivityPayload payload, Set<ActivityCategoryDTO> matchingActivityCategories)
 	{
 		Set<GoalDTO> matchingGoalsOfUser = determineMatchingGoalsForUser(payload.userAnonymized, matchingActivityCategories,
@@ -251,11 +284,23 @@ public class AnalysisEngineService
 
 	private void updateActivityEndTime(ActivityPayload payload, GoalDTO matchingGoal, ActivityDTO lastRegisteredActivity)
 	{
+		if (activityEndTimeBuffer.bufferEndTime(payload.userAnonymized.getID(), matchingGoal.getID(),
+				getStartOfDay(payload.startTime, payload.userAnonymized).toLocalDate(), payload.endTime))
+		{
+			// The day activity is updated when the buffer is flushed. Until then, the cache is the only place holding the end time
+			if (!payload.endTime.isBefore(lastRegisteredActivity.getEndTime()))
+			{
+				cacheService.updateLastActivityForUser(payload.userAnonymized.getID(), matchingGoal.getID(),
+						new ActivityDTO(lastRegisteredActivity.getStartTime(), payload.endTime));
+			}
+			return;
+		}
 		DayActivity dayActivity = findExistingDayActivity(payload, matchingGoal.getID());
 		// because of the lock further up in this class, we are sure that getLastActivity() gives the same activity
-		Activity activity = dayActivity.getLastActivity();
-		activity.setEndTime(payload.endTime);
+		dayActivity.setLastActivityEndTime(payload.endTime);
+		updateWeekActivity(payload, dayActivity);
 		DayActivity updatedDayActivity = dayActivityRepository.save(dayActivity);
+		activityVersionService.incrementVersion(payload.userAnonymized.getID());
 		// because of the lock further up in this class, we are sure that getLastActivity() gives the same activity
 		Activity updatedActivity = updatedDayActivity.getLastActivity();
 		if (shouldUpdateCache(lastRegisteredActivity, updatedActivity))
@@ -286,16 +331,7 @@ public class AnalysisEngineService
 
 	private ZonedDateTime getStartOfWeek(ZonedDateTime time, UserAnonymizedDTO userAnonymized)
 	{
-		ZonedDateTime startOfDay = getStartOfDay(time, userAnonymized);
-		switch (startOfDay.getDayOfWeek())
-		{
-			case SUNDAY:
-				// take as the first day of week
-				return startOfDay;
-			default:
-				// MONDAY=1, etc.
-				return startOfDay.minusDays(startOfDay.getDayOfWeek().getValue());
-		}
+		return WeekActivity.getStartOfWeek(getStartOfDay(time, userAnonymized));
 	}
 
 	private Activity createNewActivity(ActivityPayload payload, Goal matchingGoal)
@@ -305,15 +341,51 @@ public class AnalysisEngineService
 		{
 			dayActivity = createNewDayActivity(payload, matchingGoal);
 		}
+		else
+		{
+			applyBufferedEndTime(payload, matchingGoal, dayActivity);
+		}
 
 		ZonedDateTime endTime = ensureMinimumDurationOneMinute(payload);
 		Activity activity = Activity.createInstance(payload.startTime, endTime);
 		dayActivity.addActivity(activity);
+		updateWeekActivity(payload, dayActivity);
 		DayActivity updatedDayActivity = dayActivityRepository.save(dayActivity);
+		activityVersionService.incrementVersion(payload.userAnonymized.getID());
 		// because of the lock further up in this class, we are sure that getLastActivity() gives the same activity
 		return updatedDayActivity.getLastActivity();
 	}
 
+	/*
+	 * A new activity is about to be added, so the buffered end time of the current last activity must be applied first.
+	 */
+	private void applyBufferedEndTime(ActivityPayload payload, Goal matchingGoal, DayActivity dayActivity)
+	{
+		Optional<ZonedDateTime> bufferedEndTime = activityEndTimeBuffer.takeEndTime(payload.userAnonymized.getID(),
+				matchingGoal.getID(), dayActivity.getDate());
+		Activity lastActivity = dayActivity.getLastActivity();
+		if (bufferedEndTime.isPresent() && lastActivity != null && bufferedEndTime.get().isAfter(lastActivity.getEndTime()))
+		{
+			dayActivity.setLastActivityEndTime(bufferedEndTime.get());
+		}
+	}
+
+	/*
+	 * Rolls the changes of the day activity up into its week activity, so the aggregates of the week never need to be computed
+	 * from all its days.
+	 */
+	private void updateWeekActivity(ActivityPayload payload, DayActivity dayActivity)
+	{
+		WeekActivity weekActivity = weekActivityRepository.findOne(payload.userAnonymized.getID(),
+				dayActivity.getGoal().getID(), WeekActivity.getStartOfWeek(dayActivity.getStartTime()).toLocalDate());
+		if (weekActivity == null)
+		{
+			return;
+		}
+		weekActivity.applyDayActivityChange(dayActivity);
+		weekActivityRepository.save(weekActivity);
+	}
+
 	private ZonedDateTime ensureMinimumDurationOneMinute(ActivityPayload payload)
 	{
 		Duration duration = Duration.between(payload.startTime, payload.endTime);
@@ -370,15 +442,8 @@ public class AnalysisEngineService
 	private Set<GoalDTO> determineMatchingGoalsForUser(UserAnonymizedDTO userAnonymized,
 			Set<ActivityCategoryDTO> matchingActivityCategories, ZonedDateTime activityStartTime)
 	{
-		Set<UUID> matchingActivityCategoryIDs = matchingActivityCategories.stream().map(ac -> ac.getID())
-				.collect(Collectors.toSet());
-		Set<GoalDTO> goalsOfUser = userAnonymized.getGoals();
-		Set<GoalDTO> matchingGoalsOfUser = goalsOfUser.stream().filter(g -> !g.isHistoryItem())
-				.filter(g -> matchingActivityCategoryIDs.contains(g.getActivityCategoryID()))
-				.filter(g -> g.getCreationTime().get()
-						.isBefore(TimeUtil.toUtcLocalDateTime(activityStartTime.plus(DEVICE_TIME_INACCURACY_MARGIN))))
-				.collect(Collectors.toSet());
-		return matchingGoalsOfUser;
+		return userAnonymized.getActiveGoalsForActivityCategories(matchingActivityCategories,
+				activityStartTime.plus(DEVICE_TIME_INACCURACY_MARGIN).toInstant());
 	}
 
 	private static class ActivityPayload
@@ -11,11 +11,11 @@ import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import javax.transaction.Transactional;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import nu.yona.server.analysis.entities.DayActivity;
 import nu.yona.server.analysis.entities.DayActivityRepository;
@@ -45,15 +45,21 @@ public class InactivityManagementService
 	@Autowired
 	private LockPool<UUID> userAnonymizedSynchronizer;
 
-	@Transactional
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
 	public void createInactivityEntities(UUID userAnonymizedID, Set<IntervalInactivityDTO> intervalInactivities)
 	{
+		// The lock is released after the commit, so the analysis engine cannot create the same day or week activity meanwhile
 		try (LockPool<UUID>.Lock lock = userAnonymizedSynchronizer.lock(userAnonymizedID))
 		{
-			createWeekInactivityEntities(userAnonymizedID,
-					intervalInactivities.stream().filter(ia -> ia.getTimeUnit() == ChronoUnit.WEEKS).collect(Collectors.toSet()));
-			createDayInactivityEntities(userAnonymizedID,
-					intervalInactivities.stream().filter(ia -> ia.getTimeUnit() == ChronoUnit.DAYS).collect(Collectors.toSet()));
+			new TransactionTemplate(transactionManager).execute(status -> {
+				createWeekInactivityEntities(userAnonymizedID, intervalInactivities.stream()
+						.filter(ia -> ia.getTimeUnit() == ChronoUnit.WEEKS).collect(Collectors.toSet()));
+				createDayInactivityEntities(userAnonymizedID, intervalInactivities.stream()
+						.filter(ia -> ia.getTimeUnit() == ChronoUnit.DAYS).collect(Collectors.toSet()));
+				return null;
+			});
 		}
 	}
 
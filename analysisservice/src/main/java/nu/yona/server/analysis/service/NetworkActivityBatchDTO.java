@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRootName;
+
+/*
+ * Batch of online activities detected by Smoothwall, possibly for many different users. Allows the proxies to submit the hits
+ * they collected in one request rather than doing a request per hit.
+ * @see NetworkActivityDTO
+ * @see AnalysisEngineBatchService
+ */
+@JsonRootName("networkActivityBatch")
+public class NetworkActivityBatchDTO
+{
+	@JsonRootName("userNetworkActivity")
+	public static class UserNetworkActivity
+	{
+		private final UUID userAnonymizedID;
+		private final NetworkActivityDTO networkActivity;
+
+		@JsonCreator
+		public UserNetworkActivity(@JsonProperty("userAnonymizedID") UUID userAnonymizedID,
+				@JsonProperty("networkActivity") NetworkActivityDTO networkActivity)
+		{
+			this.userAnonymizedID = userAnonymizedID;
+			this.networkActivity = networkActivity;
+		}
+
+		public UUID getUserAnonymizedID()
+		{
+			return userAnonymizedID;
+		}
+
+		public NetworkActivityDTO getNetworkActivity()
+		{
+			return networkActivity;
+		}
+	}
+
+	private final List<UserNetworkActivity> networkActivities;
+
+	@JsonCreator
+	public NetworkActivityBatchDTO(@JsonProperty("networkActivities") List<UserNetworkActivity> networkActivities)
+	{
+		this.networkActivities = networkActivities;
+	}
+
+	public List<UserNetworkActivity> getNetworkActivities()
+	{
+		return Collections.unmodifiableList(networkActivities);
+	}
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonRootName;
+
+/*
+ * Outcome of a network activity batch. The results are in the same order as the network activities in the batch.
+ * @see NetworkActivityBatchDTO
+ */
+@JsonRootName("networkActivityBatchResult")
+public class NetworkActivityBatchResultDTO
+{
+	public enum Status
+	{
+		OK, FAILED
+	}
+
+	@JsonRootName("networkActivityResult")
+	@JsonInclude(Include.NON_NULL)
+	public static class NetworkActivityResult
+	{
+		private final UUID userAnonymizedID;
+		private final Status status;
+		private final String code;
+		private final String message;
+
+		private NetworkActivityResult(UUID userAnonymizedID, Status status, String code, String message)
+		{
+			this.userAnonymizedID = userAnonymizedID;
+			this.status = status;
+			this.code = code;
+			this.message = message;
+		}
+
+		public UUID getUserAnonymizedID()
+		{
+			return userAnonymizedID;
+		}
+
+		public Status getStatus()
+		{
+			return status;
+		}
+
+		public String getCode()
+		{
+			return code;
+		}
+
+		public String getMessage()
+		{
+			return message;
+		}
+
+		static NetworkActivityResult createSuccessInstance(UUID userAnonymizedID)
+		{
+			return new NetworkActivityResult(userAnonymizedID, Status.OK, null, null);
+		}
+
+		static NetworkActivityResult createFailureInstance(UUID userAnonymizedID, String code, String message)
+		{
+			return new NetworkActivityResult(userAnonymizedID, Status.FAILED, code, message);
+		}
+	}
+
+	private final List<NetworkActivityResult> results;
+
+	NetworkActivityBatchResultDTO(List<NetworkActivityResult> results)
+	{
+		this.results = results;
+	}
+
+	public List<NetworkActivityResult> getResults()
+	{
+		return Collections.unmodifiableList(results);
+	}
+}
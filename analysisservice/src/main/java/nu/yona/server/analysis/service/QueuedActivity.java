@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import nu.yona.server.Constants;
+
+/*
+ * Network or app activity that is queued for analysis. This is also the format in which the activity is stored in the activity
+ * journal.
+ * @see ActivityQueueService
+ * @see ActivityJournal
+ */
+@JsonInclude(Include.NON_NULL)
+class QueuedActivity
+{
+	private final long sequenceNumber;
+	private final ZonedDateTime receivedTime;
+	private final UUID userAnonymizedID;
+	private final NetworkActivityDTO networkActivity;
+	private final AppActivityDTO appActivity;
+
+	@JsonCreator
+	QueuedActivity(@JsonProperty("sequenceNumber") long sequenceNumber,
+			@JsonFormat(pattern = Constants.ISO_DATE_PATTERN) @JsonProperty("receivedTime") ZonedDateTime receivedTime,
+			@JsonProperty("userAnonymizedID") UUID userAnonymizedID,
+			@JsonProperty("networkActivity") NetworkActivityDTO networkActivity,
+			@JsonProperty("appActivity") AppActivityDTO appActivity)
+	{
+		this.sequenceNumber = sequenceNumber;
+		this.receivedTime = receivedTime;
+		this.userAnonymizedID = userAnonymizedID;
+		this.networkActivity = networkActivity;
+		this.appActivity = appActivity;
+	}
+
+	public long getSequenceNumber()
+	{
+		return sequenceNumber;
+	}
+
+	@JsonFormat(pattern = Constants.ISO_DATE_PATTERN)
+	public ZonedDateTime getReceivedTime()
+	{
+		return receivedTime;
+	}
+
+	public UUID getUserAnonymizedID()
+	{
+		return userAnonymizedID;
+	}
+
+	public NetworkActivityDTO getNetworkActivity()
+	{
+		return networkActivity;
+	}
+
+	public AppActivityDTO getAppActivity()
+	{
+		return appActivity;
+	}
+
+	static QueuedActivity createInstance(long sequenceNumber, UUID userAnonymizedID, NetworkActivityDTO networkActivity)
+	{
+		return new QueuedActivity(sequenceNumber, ZonedDateTime.now(), userAnonymizedID, networkActivity, null);
+	}
+
+	static QueuedActivity createInstance(long sequenceNumber, UUID userAnonymizedID, AppActivityDTO appActivity)
+	{
+		return new QueuedActivity(sequenceNumber, ZonedDateTime.now(), userAnonymizedID, null, appActivity);
+	}
+}
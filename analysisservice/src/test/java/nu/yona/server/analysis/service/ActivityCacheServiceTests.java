@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.monitor.LocalMapStats;
+
+import nu.yona.server.analysis.service.ActivityCacheService.LastActivityKey;
+import nu.yona.server.properties.AnalysisServiceProperties;
+import nu.yona.server.properties.YonaProperties;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ActivityCacheServiceTests
+{
+	@Mock
+	private YonaProperties mockYonaProperties;
+	@Mock
+	private HazelcastInstance mockHazelcastInstance;
+	@Mock
+	private IMap<LastActivityKey, ActivityDTO> mockClusterCache;
+	@InjectMocks
+	private final ActivityCacheService service = new ActivityCacheService();
+
+	private final AnalysisServiceProperties analysisServiceProperties = new AnalysisServiceProperties();
+	private final UUID userAnonID = UUID.randomUUID();
+	private final UUID goalID = UUID.randomUUID();
+
+	@Before
+	public void setUp()
+	{
+		analysisServiceProperties.setLastActivityNearCacheSize(2);
+		when(mockYonaProperties.getAnalysisService()).thenReturn(analysisServiceProperties);
+		when(mockHazelcastInstance.<LastActivityKey, ActivityDTO> getMap("lastActivity")).thenReturn(mockClusterCache);
+		when(mockClusterCache.getLocalMapStats()).thenReturn(mock(LocalMapStats.class));
+		service.initializeCache();
+	}
+
+	@Test
+	public void updatedActivityServedFromNearCache()
+	{
+		ActivityDTO activity = createActivity();
+		service.updateLastActivityForUser(userAnonID, goalID, activity);
+
+		assertThat(service.fetchLastActivityForUser(userAnonID, goalID), sameInstance(activity));
+		verify(mockClusterCache, times(1)).set(eq(new LastActivityKey(userAnonID, goalID)), eq(activity), anyLong(),
+				eq(TimeUnit.SECONDS));
+		verify(mockClusterCache, never()).get(any());
+		assertThat(service.getStatistics().getHitCount(), equalTo(1L));
+	}
+
+	@Test
+	public void clusterCacheEntryKeptInNearCache()
+	{
+		ActivityDTO activity = createActivity();
+		when(mockClusterCache.get(new LastActivityKey(userAnonID, goalID))).thenReturn(activity);
+
+		assertThat(service.fetchLastActivityForUser(userAnonID, goalID), sameInstance(activity));
+		assertThat(service.fetchLastActivityForUser(userAnonID, goalID), sameInstance(activity));
+
+		verify(mockClusterCache, times(1)).get(any());
+		ActivityCacheStatisticsDTO statistics = service.getStatistics();
+		assertThat(statistics.getHitCount(), equalTo(1L));
+		assertThat(statistics.getMissCount(), equalTo(1L));
+	}
+
+	@Test
+	public void nearCacheBounded()
+	{
+		service.updateLastActivityForUser(userAnonID, goalID, createActivity());
+		service.updateLastActivityForUser(userAnonID, UUID.randomUUID(), createActivity());
+		service.updateLastActivityForUser(userAnonID, UUID.randomUUID(), createActivity());
+
+		ActivityCacheStatisticsDTO statistics = service.getStatistics();
+		assertThat(statistics.getNearCacheSize(), equalTo(2L));
+		assertThat(statistics.getEvictionCount(), equalTo(1L));
+	}
+
+	@Test
+	public void distributedLockingReadsThroughClusterCache()
+	{
+		analysisServiceProperties.setDistributedLockingEnabled(true);
+		ActivityDTO activity = createActivity();
+		service.updateLastActivityForUser(userAnonID, goalID, activity);
+		ActivityDTO activityOfOtherInstance = createActivity();
+		when(mockClusterCache.get(new LastActivityKey(userAnonID, goalID))).thenReturn(activityOfOtherInstance);
+
+		assertThat(service.fetchLastActivityForUser(userAnonID, goalID), sameInstance(activityOfOtherInstance));
+		assertThat(service.fetchLastActivityForUser(userAnonID, goalID), sameInstance(activityOfOtherInstance));
+
+		verify(mockClusterCache, times(1)).set(eq(new LastActivityKey(userAnonID, goalID)), eq(activity), anyLong(),
+				eq(TimeUnit.SECONDS));
+		verify(mockClusterCache, times(2)).get(any());
+		assertThat(service.getStatistics().getNearCacheSize(), equalTo(0L));
+	}
+
+	private ActivityDTO createActivity()
+	{
+		ZonedDateTime now = ZonedDateTime.now();
+		return new ActivityDTO(now.minusMinutes(5), now);
+	}
+}
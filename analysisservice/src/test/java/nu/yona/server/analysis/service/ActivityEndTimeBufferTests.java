@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import nu.yona.server.properties.AnalysisServiceProperties;
+import nu.yona.server.properties.YonaProperties;
+import nu.yona.server.util.LockPool;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ActivityEndTimeBufferTests
+{
+	@Mock
+	private YonaProperties mockYonaProperties;
+	@Mock
+	private ActivityEndTimeFlushService mockFlushService;
+	@Mock
+	private LockPool<UUID> userAnonymizedSynchronizer;
+	@InjectMocks
+	private final ActivityEndTimeBuffer buffer = new ActivityEndTimeBuffer();
+
+	private final AnalysisServiceProperties analysisServiceProperties = new AnalysisServiceProperties();
+	private final UUID userAnonID = UUID.randomUUID();
+	private final UUID goalID = UUID.randomUUID();
+	private final LocalDate today = LocalDate.now();
+
+	@Before
+	public void setUp()
+	{
+		analysisServiceProperties.setActivityEndTimeFlushInterval("PT1M");
+		when(mockYonaProperties.getAnalysisService()).thenReturn(analysisServiceProperties);
+	}
+
+	@Test
+	public void consecutiveEndTimesCoalesced()
+	{
+		ZonedDateTime t = ZonedDateTime.now();
+		buffer.bufferEndTime(userAnonID, goalID, today, t.plusSeconds(10));
+		buffer.bufferEndTime(userAnonID, goalID, today, t.plusSeconds(30));
+		buffer.bufferEndTime(userAnonID, goalID, today, t.plusSeconds(20));
+		assertThat(buffer.getBufferedCount(), equalTo(1));
+
+		buffer.flushAll();
+
+		verify(userAnonymizedSynchronizer, times(1)).lock(userAnonID);
+		verify(mockFlushService, times(1)).writeEndTime(userAnonID, goalID, today, t.plusSeconds(30));
+		assertThat(buffer.getBufferedCount(), equalTo(0));
+	}
+
+	@Test
+	public void takenEndTimeNotFlushed()
+	{
+		ZonedDateTime t = ZonedDateTime.now();
+		buffer.bufferEndTime(userAnonID, goalID, today, t);
+
+		assertThat(buffer.takeEndTime(userAnonID, goalID, today), equalTo(Optional.of(t)));
+		assertThat(buffer.takeEndTime(userAnonID, goalID, today), equalTo(Optional.empty()));
+		buffer.flushAll();
+
+		verify(mockFlushService, never()).writeEndTime(any(), any(), any(), any());
+	}
+
+	@Test
+	public void disabledWhenFlushIntervalZero()
+	{
+		analysisServiceProperties.setActivityEndTimeFlushInterval("PT0S");
+
+		assertThat(buffer.bufferEndTime(userAnonID, goalID, today, ZonedDateTime.now()), equalTo(false));
+		assertThat(buffer.getBufferedCount(), equalTo(0));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void refusedWithDistributedLocking()
+	{
+		analysisServiceProperties.setDistributedLockingEnabled(true);
+
+		buffer.start();
+	}
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ActivityJournalTests
+{
+	private static final int MAX_SEGMENT_SIZE = 2;
+
+	@Rule
+	public TemporaryFolder journalFolder = new TemporaryFolder();
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final UUID userAnonymizedID = UUID.randomUUID();
+
+	private ActivityJournal journal;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		journal = createJournal();
+		journal.open();
+	}
+
+	@Test
+	public void replayUnprocessedActivities() throws IOException
+	{
+		QueuedActivity first = append("http://localhost/test1");
+		append("http://localhost/test2");
+		append("http://localhost/test3");
+		journal.markProcessed(first);
+		journal.close();
+
+		ActivityJournal reopenedJournal = createJournal();
+		List<QueuedActivity> pendingActivities = reopenedJournal.open();
+
+		assertThat(pendingActivities.stream().map(a -> a.getSequenceNumber()).collect(Collectors.toList()),
+				equalTo(Arrays.asList(1L, 2L)));
+		assertThat(pendingActivities.get(0).getUserAnonymizedID(), equalTo(userAnonymizedID));
+		assertThat(pendingActivities.get(0).getNetworkActivity().getURL(), equalTo("http://localhost/test2"));
+		QueuedActivity appended = reopenedJournal.append(
+				sn -> QueuedActivity.createInstance(sn, userAnonymizedID, createNetworkActivity("http://localhost/test4")));
+		assertThat(appended.getSequenceNumber(), equalTo(3L));
+		reopenedJournal.close();
+	}
+
+	@Test
+	public void noReplayWhenEverythingProcessed() throws IOException
+	{
+		QueuedActivity first = append("http://localhost/test1");
+		QueuedActivity second = append("http://localhost/test2");
+		journal.markProcessed(second);
+		journal.markProcessed(first);
+		journal.close();
+
+		ActivityJournal reopenedJournal = createJournal();
+		assertThat(reopenedJournal.open().size(), equalTo(0));
+		reopenedJournal.close();
+	}
+
+	@Test
+	public void processedSegmentsAreDeleted() throws IOException
+	{
+		QueuedActivity first = append("http://localhost/test1");
+		QueuedActivity second = append("http://localhost/test2");
+		QueuedActivity third = append("http://localhost/test3");
+		assertThat(journal.getSegmentCount(), equalTo(2));
+
+		journal.markProcessed(first);
+		journal.markProcessed(second);
+		assertThat(journal.getSegmentCount(), equalTo(1));
+		assertThat(countFiles("activities-*.journal"), equalTo(1L));
+
+		journal.close();
+		ActivityJournal reopenedJournal = createJournal();
+		List<QueuedActivity> pendingActivities = reopenedJournal.open();
+		assertThat(pendingActivities.size(), equalTo(1));
+		assertThat(pendingActivities.get(0).getSequenceNumber(), equalTo(third.getSequenceNumber()));
+		reopenedJournal.close();
+	}
+
+	@Test
+	public void replayAcrossSegments() throws IOException
+	{
+		append("http://localhost/test1");
+		QueuedActivity second = append("http://localhost/test2");
+		append("http://localhost/test3");
+		journal.markProcessed(second);
+		journal.close();
+
+		ActivityJournal reopenedJournal = createJournal();
+		List<QueuedActivity> pendingActivities = reopenedJournal.open();
+
+		assertThat(pendingActivities.stream().map(a -> a.getSequenceNumber()).collect(Collectors.toList()),
+				equalTo(Arrays.asList(0L, 2L)));
+		reopenedJournal.close();
+	}
+
+	@Test
+	public void concurrentAppendsAreAllJournaled() throws Exception
+	{
+		int threadCount = 8;
+		int activitiesPerThread = 25;
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++)
+		{
+			futures.add(executor.submit(() -> {
+				for (int j = 0; j < activitiesPerThread; j++)
+				{
+					append("http://localhost/test");
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures)
+		{
+			future.get();
+		}
+		executor.shutdown();
+		journal.close();
+
+		ActivityJournal reopenedJournal = createJournal();
+		List<QueuedActivity> pendingActivities = reopenedJournal.open();
+		assertThat(pendingActivities.stream().map(a -> a.getSequenceNumber()).distinct().count(),
+				equalTo((long) threadCount * activitiesPerThread));
+		reopenedJournal.close();
+	}
+
+	@Test
+	public void deadLetterKeepsFailedActivity() throws IOException
+	{
+		QueuedActivity activity = append("http://localhost/failing");
+		journal.deadLetter(activity, new IllegalStateException("Analysis failed"));
+		journal.markProcessed(activity);
+		journal.close();
+
+		List<String> deadLetters = Files.readAllLines(journalFolder.getRoot().toPath().resolve("failed.journal"));
+		assertThat(deadLetters.size(), equalTo(1));
+		assertThat(objectMapper.readTree(deadLetters.get(0)).get("networkActivity").get("url").asText(),
+				equalTo("http://localhost/failing"));
+		assertThat(objectMapper.readTree(deadLetters.get(0)).get("error").asText(), containsString("Analysis failed"));
+	}
+
+	private ActivityJournal createJournal()
+	{
+		return new ActivityJournal(objectMapper, journalFolder.getRoot().toPath(), MAX_SEGMENT_SIZE);
+	}
+
+	private long countFiles(String glob) throws IOException
+	{
+		long count = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(journalFolder.getRoot().toPath(), glob))
+		{
+			for (@SuppressWarnings("unused")
+			Path file : files)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private QueuedActivity append(String url) throws IOException
+	{
+		return journal.append(sn -> QueuedActivity.createInstance(sn, userAnonymizedID, createNetworkActivity(url)));
+	}
+
+	private NetworkActivityDTO createNetworkActivity(String url)
+	{
+		return new NetworkActivityDTO(new HashSet<String>(Arrays.asList("lotto")), url, Optional.of(ZonedDateTime.now()));
+	}
+}
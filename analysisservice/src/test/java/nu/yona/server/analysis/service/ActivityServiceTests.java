@@ -7,6 +7,10 @@ package nu.yona.server.analysis.service;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -17,20 +21,25 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
@@ -38,12 +47,15 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.support.Repositories;
 
 import nu.yona.server.Translator;
 import nu.yona.server.analysis.entities.Activity;
 import nu.yona.server.analysis.entities.DayActivity;
 import nu.yona.server.analysis.entities.DayActivityRepository;
+import nu.yona.server.analysis.entities.IntervalActivity;
+import nu.yona.server.analysis.entities.IntervalActivityRepository;
 import nu.yona.server.analysis.entities.WeekActivity;
 import nu.yona.server.analysis.entities.WeekActivityRepository;
 import nu.yona.server.crypto.PublicKeyUtil;
@@ -53,12 +65,19 @@ import nu.yona.server.goals.entities.BudgetGoal;
 import nu.yona.server.goals.entities.Goal;
 import nu.yona.server.goals.entities.TimeZoneGoal;
 import nu.yona.server.goals.service.GoalService;
+import nu.yona.server.messaging.entities.Message;
 import nu.yona.server.messaging.entities.MessageDestination;
+import nu.yona.server.messaging.service.MessageService;
 import nu.yona.server.properties.AnalysisServiceProperties;
 import nu.yona.server.properties.YonaProperties;
+import nu.yona.server.subscriptions.entities.BuddyAnonymized.Status;
 import nu.yona.server.subscriptions.entities.UserAnonymized;
+import nu.yona.server.subscriptions.service.BuddyDTO;
+import nu.yona.server.subscriptions.service.BuddyService;
 import nu.yona.server.subscriptions.service.UserAnonymizedDTO;
 import nu.yona.server.subscriptions.service.UserAnonymizedService;
+import nu.yona.server.subscriptions.service.UserDTO;
+import nu.yona.server.subscriptions.service.UserPrivateDTO;
 import nu.yona.server.subscriptions.service.UserService;
 import nu.yona.server.util.TimeUtil;
 
@@ -66,6 +85,7 @@ import nu.yona.server.util.TimeUtil;
 public class ActivityServiceTests
 {
 	private final Map<String, Goal> goalMap = new HashMap<String, Goal>();
+	private final Map<UUID, Goal> goalEntitiesByID = new HashMap<UUID, Goal>();
 
 	@Mock
 	private UserService mockUserService;
@@ -80,9 +100,17 @@ public class ActivityServiceTests
 	@Mock
 	private DayActivityRepository mockDayActivityRepository;
 	@Mock
+	private IntervalActivityRepository mockIntervalActivityRepository;
+	@Mock
 	private Repositories mockRepositories;
 	@Mock
-	private AnalysisEngineProxyService analysisEngineProxyService;
+	private BuddyService mockBuddyService;
+	@Mock
+	private MessageService mockMessageService;
+	@Mock
+	private AnalysisEngineProxyService mockAnalysisEngineProxyService;
+	@Captor
+	private ArgumentCaptor<Set<IntervalInactivityDTO>> intervalInactivitiesCaptor;
 
 	@InjectMocks
 	private final ActivityService service = new ActivityService();
@@ -154,6 +182,17 @@ public class ActivityServiceTests
 		when(mockGoalService.getGoalEntityForUserAnonymizedID(userAnonID, gamingGoal.getID())).thenReturn(gamingGoal);
 		when(mockGoalService.getGoalEntityForUserAnonymizedID(userAnonID, socialGoal.getID())).thenReturn(socialGoal);
 		when(mockGoalService.getGoalEntityForUserAnonymizedID(userAnonID, shoppingGoal.getID())).thenReturn(shoppingGoal);
+		goalMap.values().forEach(g -> goalEntitiesByID.put(g.getID(), g));
+		when(mockGoalService.getGoalEntitiesForUserAnonymizedID(eq(userAnonID), anySetOf(UUID.class)))
+				.thenAnswer(new Answer<Map<UUID, Goal>>() {
+					@Override
+					public Map<UUID, Goal> answer(InvocationOnMock invocation) throws Throwable
+					{
+						@SuppressWarnings("unchecked")
+						Set<UUID> goalIDs = (Set<UUID>) invocation.getArguments()[1];
+						return goalIDs.stream().collect(Collectors.toMap(id -> id, id -> goalEntitiesByID.get(id)));
+					}
+				});
 
 		// save should not return null but the saved entity
 		when(mockDayActivityRepository.save(any(DayActivity.class))).thenAnswer(new Answer<DayActivity>() {
@@ -225,6 +264,34 @@ public class ActivityServiceTests
 		assertThat(dayActivityForGambling.getTotalMinutesBeyondGoal(), equalTo(2));
 	}
 
+	@Test
+	public void dayActivityOverviewSliceStartsBeforeCursorDate()
+	{
+		ZonedDateTime today = getDayStartTime(ZonedDateTime.now(userAnonZone));
+
+		Slice<DayActivityOverviewDTO<DayActivityDTO>> dayOverviews = service.getUserDayActivityOverviews(userID,
+				Optional.of(today.minusDays(3).toLocalDate()), 3);
+
+		verify(mockDayActivityRepository, times(1)).findAllActivitiesForUserInIntervalEndIncluded(userAnonID,
+				today.minusDays(6).toLocalDate(), today.minusDays(4).toLocalDate());
+		assertThat(dayOverviews.getNumberOfElements(), equalTo(3));
+		assertThat(dayOverviews.getContent().get(0).getDateStr(),
+				equalTo(DayActivityDTO.formatDate(today.minusDays(4).toLocalDate())));
+		assertThat(dayOverviews.hasNext(), equalTo(true));
+	}
+
+	@Test
+	public void dayActivityOverviewSliceEndsAtOldestGoal()
+	{
+		ZonedDateTime today = getDayStartTime(ZonedDateTime.now(userAnonZone));
+
+		// gambling goal was created 2 weeks ago, see above
+		Slice<DayActivityOverviewDTO<DayActivityDTO>> dayOverviews = service.getUserDayActivityOverviews(userID,
+				Optional.of(today.minusDays(12).toLocalDate()), 3);
+
+		assertThat(dayOverviews.hasNext(), equalTo(false));
+	}
+
 	@Test
 	public void weekActivityOverview()
 	{
@@ -240,10 +307,9 @@ public class ActivityServiceTests
 		Activity recordedActivity = Activity.createInstance(saturdayStartOfDay.plusHours(19).plusMinutes(10),
 				saturdayStartOfDay.plusHours(19).plusMinutes(55));
 		previousWeekSaturdayRecordedActivity.addActivity(recordedActivity);
-		when(mockDayActivityRepository.findActivitiesForUserAndGoalsInIntervalEndExcluded(userAnonID,
-				new HashSet<UUID>(Arrays.asList(gamblingGoal.getID())), getWeekStartTime(today.minusWeeks(1)).toLocalDate(),
-				getWeekEndDate(getWeekStartTime(today.minusWeeks(1)).toLocalDate())))
-						.thenReturn(Arrays.asList(
+		when(mockIntervalActivityRepository.findAllActivitiesForUserInIntervalEndIncluded(userAnonID,
+				getWeekStartTime(today.minusWeeks(4)).toLocalDate(), getWeekStartTime(today).toLocalDate().plusDays(6)))
+						.thenReturn(Arrays.asList(previousWeekRecordedActivity,
 								DayActivity.createInstance(userAnonEntity, gamblingGoal, getWeekStartTime(today).minusDays(7)),
 								DayActivity.createInstance(userAnonEntity, gamblingGoal, getWeekStartTime(today).minusDays(6)),
 								DayActivity.createInstance(userAnonEntity, gamblingGoal, getWeekStartTime(today).minusDays(5)),
@@ -251,15 +317,16 @@ public class ActivityServiceTests
 								DayActivity.createInstance(userAnonEntity, gamblingGoal, getWeekStartTime(today).minusDays(3)),
 								DayActivity.createInstance(userAnonEntity, gamblingGoal, getWeekStartTime(today).minusDays(2)),
 								previousWeekSaturdayRecordedActivity));
-		when(mockWeekActivityRepository.findAll(userAnonID, getWeekStartTime(today.minusWeeks(4)).toLocalDate(),
-				getWeekStartTime(today).toLocalDate()))
-						.thenReturn(new HashSet<WeekActivity>(Arrays.asList(previousWeekRecordedActivity)));
 
 		Page<WeekActivityOverviewDTO> weekOverviews = service.getUserWeekActivityOverviews(userID, new PageRequest(0, 5));
 
-		// assert that the right retrieve from database was done
-		verify(mockWeekActivityRepository, times(1)).findAll(userAnonID, getWeekStartTime(today.minusWeeks(4)).toLocalDate(),
-				getWeekStartTime(today).toLocalDate());
+		// assert that the week activities and the day activities of all weeks were retrieved at once
+		verify(mockIntervalActivityRepository, times(1)).findAllActivitiesForUserInIntervalEndIncluded(userAnonID,
+				getWeekStartTime(today.minusWeeks(4)).toLocalDate(), getWeekStartTime(today).toLocalDate().plusDays(6));
+		verify(mockDayActivityRepository, never()).findActivitiesForUserAndGoalsInIntervalEndExcluded(any(), any(), any(), any());
+		// assert that the goals were loaded at once, rather than per goal and week
+		verify(mockGoalService, times(1)).getGoalEntitiesForUserAnonymizedID(eq(userAnonID), anySetOf(UUID.class));
+		verify(mockGoalService, never()).getGoalEntityForUserAnonymizedID(any(), any());
 
 		// because the gambling goal was added with creation date two weeks ago, there are multiple weeks
 		assertThat(weekOverviews.getNumberOfElements(), equalTo(3));
@@ -303,6 +370,92 @@ public class ActivityServiceTests
 		// assertThat(weekActivityForGambling.getDayActivities(), hasKey(DayOfWeek.SATURDAY));
 	}
 
+	@Test
+	public void weekActivityOverviewLoadsDayActivitiesOfAllWeeksAtOnce()
+	{
+		ZonedDateTime today = getDayStartTime(ZonedDateTime.now(userAnonZone));
+
+		// gambling goal was created 2 weeks ago, see above
+		// mock some activity on Saturday of the previous two weeks, 10 minutes per week ago
+		List<IntervalActivity> intervalActivities = new ArrayList<>();
+		for (int weeksAgo = 1; weeksAgo <= 2; weeksAgo++)
+		{
+			ZonedDateTime startOfWeek = getWeekStartTime(today.minusWeeks(weeksAgo));
+			intervalActivities.add(WeekActivity.createInstance(userAnonEntity, gamblingGoal, startOfWeek));
+			ZonedDateTime saturdayStartOfDay = startOfWeek.plusDays(6);
+			DayActivity saturdayRecordedActivity = DayActivity.createInstance(userAnonEntity, gamblingGoal, saturdayStartOfDay);
+			saturdayRecordedActivity.addActivity(Activity.createInstance(saturdayStartOfDay.plusHours(10),
+					saturdayStartOfDay.plusHours(10).plusMinutes(10 * weeksAgo)));
+			intervalActivities.add(saturdayRecordedActivity);
+		}
+		when(mockIntervalActivityRepository.findAllActivitiesForUserInIntervalEndIncluded(userAnonID,
+				getWeekStartTime(today.minusWeeks(4)).toLocalDate(), getWeekStartTime(today).toLocalDate().plusDays(6)))
+						.thenReturn(intervalActivities);
+
+		Page<WeekActivityOverviewDTO> weekOverviews = service.getUserWeekActivityOverviews(userID, new PageRequest(0, 5));
+
+		// assert that one query retrieved the week activities and the day activities of all weeks
+		verify(mockIntervalActivityRepository, times(1)).findAllActivitiesForUserInIntervalEndIncluded(any(), any(), any());
+		verify(mockDayActivityRepository, never()).findAllActivitiesForUserInIntervalEndIncluded(any(), any(), any());
+		verify(mockDayActivityRepository, never()).findActivitiesForUserAndGoalsInIntervalEndExcluded(any(), any(), any(), any());
+
+		// assert that each week got its own day activity
+		assertThat(weekOverviews.getNumberOfElements(), equalTo(3));
+		for (int weeksAgo = 1; weeksAgo <= 2; weeksAgo++)
+		{
+			WeekActivityDTO weekActivityForGambling = weekOverviews.getContent().get(weeksAgo).getWeekActivities().stream()
+					.filter(a -> a.getGoalID().equals(gamblingGoal.getID())).findAny().get();
+			assertThat(weekActivityForGambling.getStartTime(), equalTo(getWeekStartTime(today.minusWeeks(weeksAgo))));
+			assertThat(weekActivityForGambling.getDayActivities().get(DayOfWeek.SATURDAY).getTotalActivityDurationMinutes().get(),
+					equalTo(10 * weeksAgo));
+		}
+	}
+
+	@Test
+	public void weekActivityOverviewMatchesDayActivitiesOnGoalHistory()
+	{
+		ZonedDateTime today = getDayStartTime(ZonedDateTime.now(userAnonZone));
+		ZonedDateTime startOfPreviousWeek = getWeekStartTime(today.minusWeeks(1));
+
+		// the gambling goal was updated on Tuesday of the previous week, so the week activity and the Monday activity moved to
+		// the history item, while the Thursday activity was recorded on the updated goal
+		Goal historyGoal = gamblingGoal.cloneAsHistoryItem(startOfPreviousWeek.plusDays(2).toLocalDateTime());
+		gamblingGoal.setPreviousVersionOfThisGoal(historyGoal);
+		goalEntitiesByID.put(historyGoal.getID(), historyGoal);
+		// like the cached user anonymized, this includes the history item
+		when(mockUserAnonymizedService.getUserAnonymized(userAnonID)).thenReturn(UserAnonymizedDTO.createInstance(userAnonEntity));
+		ZonedDateTime mondayStartOfDay = startOfPreviousWeek.plusDays(1);
+		DayActivity mondayRecordedActivity = DayActivity.createInstance(userAnonEntity, historyGoal, mondayStartOfDay);
+		mondayRecordedActivity.addActivity(
+				Activity.createInstance(mondayStartOfDay.plusHours(10), mondayStartOfDay.plusHours(10).plusMinutes(10)));
+		ZonedDateTime thursdayStartOfDay = startOfPreviousWeek.plusDays(4);
+		DayActivity thursdayRecordedActivity = DayActivity.createInstance(userAnonEntity, gamblingGoal, thursdayStartOfDay);
+		thursdayRecordedActivity.addActivity(
+				Activity.createInstance(thursdayStartOfDay.plusHours(10), thursdayStartOfDay.plusHours(10).plusMinutes(20)));
+		when(mockIntervalActivityRepository.findAllActivitiesForUserInIntervalEndIncluded(userAnonID,
+				getWeekStartTime(today.minusWeeks(4)).toLocalDate(), getWeekStartTime(today).toLocalDate().plusDays(6)))
+						.thenReturn(Arrays.asList(WeekActivity.createInstance(userAnonEntity, historyGoal, startOfPreviousWeek),
+								WeekActivity.createInstance(userAnonEntity, gamblingGoal, startOfPreviousWeek),
+								thursdayRecordedActivity, mondayRecordedActivity));
+
+		Page<WeekActivityOverviewDTO> weekOverviews = service.getUserWeekActivityOverviews(userID, new PageRequest(0, 5));
+
+		Set<WeekActivityDTO> previousWeekActivities = weekOverviews.getContent().get(1).getWeekActivities();
+		// the week of the history item does not collect the day activities of the updated goal
+		WeekActivityDTO weekActivityForHistoryGoal = previousWeekActivities.stream()
+				.filter(a -> a.getGoalID().equals(historyGoal.getID())).findAny().get();
+		assertThat(weekActivityForHistoryGoal.getDayActivities().get(DayOfWeek.MONDAY).getTotalActivityDurationMinutes().get(),
+				equalTo(10));
+		assertThat(weekActivityForHistoryGoal.getDayActivities().containsKey(DayOfWeek.THURSDAY), equalTo(false));
+		// the week of the updated goal includes the day activities of its history items, like WeekActivity.getDayActivities()
+		WeekActivityDTO weekActivityForGambling = previousWeekActivities.stream()
+				.filter(a -> a.getGoalID().equals(gamblingGoal.getID())).findAny().get();
+		assertThat(weekActivityForGambling.getDayActivities().get(DayOfWeek.MONDAY).getTotalActivityDurationMinutes().get(),
+				equalTo(10));
+		assertThat(weekActivityForGambling.getDayActivities().get(DayOfWeek.THURSDAY).getTotalActivityDurationMinutes().get(),
+				equalTo(20));
+	}
+
 	@Test
 	public void dayActivityOverviewInactivity()
 	{
@@ -348,7 +501,7 @@ public class ActivityServiceTests
 
 		DayActivityDTO inactivityDay = service.getUserDayActivityDetail(userID, LocalDate.now(userAnonZone),
 				gamblingGoal.getID());
-		assertThat(inactivityDay.getSpread().size(), equalTo(96));
+		assertThat(inactivityDay.getSpread().length, equalTo(96));
 		assertThat(inactivityDay.getStartTime(), equalTo(today));
 		assertThat(inactivityDay.getTimeZoneId(), equalTo(userAnonZone.getId()));
 		assertThat(inactivityDay.getTotalActivityDurationMinutes().get(), equalTo(0));
@@ -360,12 +513,102 @@ public class ActivityServiceTests
 	{
 		WeekActivityDTO inactivityWeek = service.getUserWeekActivityDetail(userID, getWeekStartDate(LocalDate.now(userAnonZone)),
 				gamblingGoal.getID());
-		assertThat(inactivityWeek.getSpread().size(), equalTo(96));
+		assertThat(inactivityWeek.getSpread().length, equalTo(96));
 		assertThat(inactivityWeek.getStartTime(), equalTo(getWeekStartTime(ZonedDateTime.now(userAnonZone))));
 		assertThat(inactivityWeek.getTimeZoneId(), equalTo(userAnonZone.getId()));
 		assertThat(inactivityWeek.getTotalActivityDurationMinutes().get(), equalTo(0));
 	}
 
+	@Test
+	public void inactivityIsNotPersistedOnRead()
+	{
+		service.getUserWeekActivityOverviews(userID, new PageRequest(0, 5));
+		service.getUserDayActivityOverviews(userID, new PageRequest(0, 3));
+		service.getUserDayActivityDetail(userID, LocalDate.now(userAnonZone), gamblingGoal.getID());
+
+		verify(mockAnalysisEngineProxyService, never()).createInactivityEntities(any(), any());
+		verify(mockWeekActivityRepository, never()).save(any(WeekActivity.class));
+		verify(mockDayActivityRepository, never()).save(any(DayActivity.class));
+	}
+
+	@Test
+	public void missingInactivitiesIncludeWeeksAndDays()
+	{
+		LocalDate today = LocalDate.now(userAnonZone);
+		LocalDate startOfWeek = getWeekStartDate(today);
+
+		Set<IntervalInactivityDTO> missingInactivities = service.getMissingInactivities(userAnonID, 2);
+
+		// all goals are active in the current week
+		assertThat(missingInactivities.stream()
+				.filter(mia -> mia.getTimeUnit() == ChronoUnit.WEEKS && mia.getStartTime().toLocalDate().equals(startOfWeek))
+				.count(), equalTo((long) userAnonEntity.getGoals().size()));
+		// only the gambling goal was active in the previous week, see above
+		assertThat(missingInactivities.stream()
+				.filter(mia -> mia.getTimeUnit() == ChronoUnit.WEEKS
+						&& mia.getStartTime().toLocalDate().equals(startOfWeek.minusWeeks(1)))
+				.count(), equalTo(1L));
+		assertThat(missingInactivities.stream().anyMatch(mia -> mia.getTimeUnit() == ChronoUnit.DAYS
+				&& mia.getGoalID().equals(gamblingGoal.getID()) && mia.getStartTime().toLocalDate().equals(today)), equalTo(true));
+		assertThat(missingInactivities.stream().allMatch(mia -> mia.getUserAnonymizedID().get().equals(userAnonID)),
+				equalTo(true));
+	}
+
+	@Test
+	public void commentOnInactiveDayCreatesInactivityEntity()
+	{
+		ZonedDateTime yesterday = getDayStartTime(ZonedDateTime.now(userAnonZone)).minusDays(1);
+		UUID buddyID = UUID.randomUUID();
+		UUID sendingUserID = mockSendingUserWithBuddy(buddyID);
+
+		// the inactivity entity only exists after the analysis engine created it
+		DayActivity inactivityEntity = DayActivity.createInstance(userAnonEntity, gamblingGoal, yesterday);
+		when(mockDayActivityRepository.findOne(userAnonID, yesterday.toLocalDate(), gamblingGoal.getID())).thenReturn(null,
+				inactivityEntity);
+
+		service.addMessageToDayActivity(sendingUserID, buddyID, yesterday.toLocalDate(), gamblingGoal.getID(),
+				new PostPutActivityCommentMessageDTO("You're quiet today"));
+
+		verify(mockAnalysisEngineProxyService, times(1)).createInactivityEntities(eq(userAnonID),
+				intervalInactivitiesCaptor.capture());
+		assertThat(intervalInactivitiesCaptor.getValue().size(), equalTo(1));
+		IntervalInactivityDTO intervalInactivity = intervalInactivitiesCaptor.getValue().iterator().next();
+		assertThat(intervalInactivity.getTimeUnit(), equalTo(ChronoUnit.DAYS));
+		assertThat(intervalInactivity.getGoalID(), equalTo(gamblingGoal.getID()));
+		assertThat(intervalInactivity.getStartTime().toLocalDate(), equalTo(yesterday.toLocalDate()));
+		// one message to the buddy and a copy to the sender
+		verify(mockMessageService, times(2)).sendMessageToUserAnonymized(any(), any(Message.class));
+	}
+
+	@Test(expected = ActivityServiceException.class)
+	public void commentOnDayBeforeGoalWasCreatedIsRejected()
+	{
+		// the gambling goal was created two weeks ago, see above
+		LocalDate dateBeforeGoal = LocalDate.now(userAnonZone).minusWeeks(3);
+		UUID buddyID = UUID.randomUUID();
+		UUID sendingUserID = mockSendingUserWithBuddy(buddyID);
+
+		service.addMessageToDayActivity(sendingUserID, buddyID, dateBeforeGoal, gamblingGoal.getID(),
+				new PostPutActivityCommentMessageDTO("Hi"));
+	}
+
+	private UUID mockSendingUserWithBuddy(UUID buddyID)
+	{
+		// the buddy is the user set up above
+		when(mockBuddyService.getBuddy(buddyID))
+				.thenReturn(new BuddyDTO(buddyID, null, "Buddy", Optional.of(userAnonID), Status.ACCEPTED, Status.ACCEPTED));
+
+		UUID sendingUserID = UUID.randomUUID();
+		UserDTO sendingUser = mock(UserDTO.class);
+		UserPrivateDTO sendingUserPrivateData = mock(UserPrivateDTO.class);
+		when(sendingUser.getID()).thenReturn(sendingUserID);
+		when(sendingUser.getPrivateData()).thenReturn(sendingUserPrivateData);
+		when(sendingUserPrivateData.getUserAnonymizedID()).thenReturn(UUID.randomUUID());
+		when(sendingUserPrivateData.getNickname()).thenReturn("Sender");
+		when(mockUserService.getPrivateUser(sendingUserID)).thenReturn(sendingUser);
+		return sendingUserID;
+	}
+
 	@Test
 	@Ignore
 	public void spreadShortDurationInMiddleOfCell()
@@ -424,7 +667,7 @@ public class ActivityServiceTests
 
 		DayActivityDTO inactivityDay = service.getUserDayActivityDetail(userID, yesterday.toLocalDate(), gamblingGoal.getID());
 		verify(mockDayActivityRepository, times(1)).findOne(userAnonID, yesterday.toLocalDate(), gamblingGoal.getID());
-		assertThat(inactivityDay.getSpread(), equalTo(Arrays.asList(ArrayUtils.toObject((expectedSpread)))));
+		assertThat(inactivityDay.getSpread(), equalTo(expectedSpread));
 	}
 
 	private ZonedDateTime getWeekStartTime(ZonedDateTime dateTime)
@@ -454,9 +697,4 @@ public class ActivityServiceTests
 				return date.minusDays(date.getDayOfWeek().getValue());
 		}
 	}
-
-	private LocalDate getWeekEndDate(LocalDate date)
-	{
-		return getWeekStartDate(date).plusDays(7);
-	}
 }
\ No newline at end of file
@@ -43,6 +43,7 @@ import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import nu.yona.server.Translator;
 import nu.yona.server.analysis.entities.Activity;
@@ -92,6 +93,12 @@ public class AnalysisEngineServiceTests
 	private WeekActivityRepository mockWeekActivityRepository;
 	@Mock
 	private LockPool<UUID> userAnonymizedSynchronizer;
+	@Mock
+	private ActivityEndTimeBuffer mockActivityEndTimeBuffer;
+	@Mock
+	private ActivityVersionService mockActivityVersionService;
+	@Mock
+	private PlatformTransactionManager mockTransactionManager;
 	@InjectMocks
 	private final AnalysisEngineService service = new AnalysisEngineService();
 
@@ -135,6 +142,7 @@ public class AnalysisEngineServiceTests
 		goalMap.put("shopping", shoppingGoal);
 
 		when(mockYonaProperties.getAnalysisService()).thenReturn(new AnalysisServiceProperties());
+		when(mockActivityEndTimeBuffer.takeEndTime(any(), any(), any())).thenReturn(Optional.empty());
 
 		when(mockActivityCategoryService.getAllActivityCategories()).thenReturn(getAllActivityCategories());
 		when(mockActivityCategoryService.getMatchingCategoriesForSmoothwallCategories(anySetOf(String.class)))
@@ -343,6 +351,30 @@ public class AnalysisEngineServiceTests
 				containsInAnyOrder(gamblingGoal, gamingGoal));
 	}
 
+	/**
+	 * Tests that multiple network activities of one user are analyzed while acquiring the user lock only once.
+	 */
+	@Test
+	public void networkActivitiesOfOneUserAnalyzedInOneLock()
+	{
+		// Execute the analysis engine service.
+		service.analyze(userAnonID,
+				Arrays.asList(
+						new NetworkActivityDTO(new HashSet<String>(Arrays.asList("lotto")), "http://localhost/test1",
+								Optional.empty()),
+						new NetworkActivityDTO(new HashSet<String>(Arrays.asList("games")), "http://localhost/test2",
+								Optional.empty())));
+
+		// Verify that the lock was acquired just once.
+		verify(userAnonymizedSynchronizer, times(1)).lock(userAnonID);
+		// Verify that there are 2 conflict messages sent, for both goals.
+		ArgumentCaptor<GoalConflictMessage> message = ArgumentCaptor.forClass(GoalConflictMessage.class);
+		verify(mockMessageService, times(2)).sendMessage(message.capture(), eq(anonMessageDestination));
+		assertThat("Expect right goals set to goal conflict messages",
+				message.getAllValues().stream().map(m -> m.getGoal()).collect(Collectors.toSet()),
+				containsInAnyOrder(gamblingGoal, gamingGoal));
+	}
+
 	/**
 	 * Tests that a conflict message is updated when analysis service is called with a matching category after a short time.
 	 */
@@ -407,6 +439,31 @@ public class AnalysisEngineServiceTests
 		verifyNoMessagesCreated();
 	}
 
+	/**
+	 * Tests that the version of the activity reports is incremented when an activity is recorded, so clients do not keep a stale
+	 * report.
+	 */
+	@Test
+	public void activityVersionIncrementedOnMatch()
+	{
+		Set<String> conflictCategories = new HashSet<String>(Arrays.asList("lotto"));
+		service.analyze(userAnonID, new NetworkActivityDTO(conflictCategories, "http://localhost/test", Optional.empty()));
+
+		verify(mockActivityVersionService, times(1)).incrementVersion(userAnonID);
+	}
+
+	/**
+	 * Tests that the version of the activity reports is not incremented when no activity is recorded.
+	 */
+	@Test
+	public void activityVersionNotIncrementedOnNoMatch()
+	{
+		Set<String> conflictCategories = new HashSet<String>(Arrays.asList("refdag"));
+		service.analyze(userAnonID, new NetworkActivityDTO(conflictCategories, "http://localhost/test", Optional.empty()));
+
+		verify(mockActivityVersionService, never()).incrementVersion(any());
+	}
+
 	private void verifyNoMessagesCreated()
 	{
 		// Verify that there is no conflict message sent.
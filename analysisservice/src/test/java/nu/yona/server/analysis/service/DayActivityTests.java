@@ -77,9 +77,9 @@ public class DayActivityTests
 	{
 		DayActivity d = createDayActivity();
 		d.addActivity(Activity.createInstance(getDate(19, 55), getDate(19, 59)));
-		assertThat(d.getSpread().get(78), equalTo(0));
-		assertThat(d.getSpread().get(79), equalTo(4));
-		assertThat(d.getSpread().get(80), equalTo(0));
+		assertThat(d.getSpread()[78], equalTo(0));
+		assertThat(d.getSpread()[79], equalTo(4));
+		assertThat(d.getSpread()[80], equalTo(0));
 	}
 
 	@Test
@@ -87,10 +87,10 @@ public class DayActivityTests
 	{
 		DayActivity d = createDayActivity();
 		d.addActivity(Activity.createInstance(getDate(19, 55), getDate(20, 1)));
-		assertThat(d.getSpread().get(78), equalTo(0));
-		assertThat(d.getSpread().get(79), equalTo(5));
-		assertThat(d.getSpread().get(80), equalTo(1));
-		assertThat(d.getSpread().get(81), equalTo(0));
+		assertThat(d.getSpread()[78], equalTo(0));
+		assertThat(d.getSpread()[79], equalTo(5));
+		assertThat(d.getSpread()[80], equalTo(1));
+		assertThat(d.getSpread()[81], equalTo(0));
 	}
 
 	@Test
@@ -98,10 +98,10 @@ public class DayActivityTests
 	{
 		DayActivity d = createDayActivity();
 		d.addActivity(Activity.createInstance(getDate(19, 45), getDate(20, 1)));
-		assertThat(d.getSpread().get(78), equalTo(0));
-		assertThat(d.getSpread().get(79), equalTo(15));
-		assertThat(d.getSpread().get(80), equalTo(1));
-		assertThat(d.getSpread().get(81), equalTo(0));
+		assertThat(d.getSpread()[78], equalTo(0));
+		assertThat(d.getSpread()[79], equalTo(15));
+		assertThat(d.getSpread()[80], equalTo(1));
+		assertThat(d.getSpread()[81], equalTo(0));
 	}
 
 	@Test
@@ -109,10 +109,10 @@ public class DayActivityTests
 	{
 		DayActivity d = createDayActivity();
 		d.addActivity(Activity.createInstance(getDate(19, 55), getDate(20, 15)));
-		assertThat(d.getSpread().get(78), equalTo(0));
-		assertThat(d.getSpread().get(79), equalTo(5));
-		assertThat(d.getSpread().get(80), equalTo(15));
-		assertThat(d.getSpread().get(81), equalTo(0));
+		assertThat(d.getSpread()[78], equalTo(0));
+		assertThat(d.getSpread()[79], equalTo(5));
+		assertThat(d.getSpread()[80], equalTo(15));
+		assertThat(d.getSpread()[81], equalTo(0));
 	}
 
 	@Test
@@ -120,9 +120,9 @@ public class DayActivityTests
 	{
 		DayActivity d = createDayActivity();
 		d.addActivity(Activity.createInstance(getDate(19, 45, 00), getDate(19, 59, 59)));
-		assertThat(d.getSpread().get(78), equalTo(0));
-		assertThat(d.getSpread().get(79), equalTo(14));
-		assertThat(d.getSpread().get(80), equalTo(0));
+		assertThat(d.getSpread()[78], equalTo(0));
+		assertThat(d.getSpread()[79], equalTo(14));
+		assertThat(d.getSpread()[80], equalTo(0));
 	}
 
 	@Test
@@ -130,11 +130,11 @@ public class DayActivityTests
 	{
 		DayActivity d = createDayActivity();
 		d.addActivity(Activity.createInstance(getDate(19, 55), getDate(20, 16)));
-		assertThat(d.getSpread().get(78), equalTo(0));
-		assertThat(d.getSpread().get(79), equalTo(5));
-		assertThat(d.getSpread().get(80), equalTo(15));
-		assertThat(d.getSpread().get(81), equalTo(1));
-		assertThat(d.getSpread().get(82), equalTo(0));
+		assertThat(d.getSpread()[78], equalTo(0));
+		assertThat(d.getSpread()[79], equalTo(5));
+		assertThat(d.getSpread()[80], equalTo(15));
+		assertThat(d.getSpread()[81], equalTo(1));
+		assertThat(d.getSpread()[82], equalTo(0));
 	}
 
 	@Test
@@ -144,10 +144,55 @@ public class DayActivityTests
 		d.addActivity(Activity.createInstance(getDate(19, 48), getDate(19, 50)));
 		d.addActivity(Activity.createInstance(getDate(19, 46), getDate(19, 59)));
 		d.addActivity(Activity.createInstance(getDate(20, 1), getDate(20, 17)));
-		assertThat(d.getSpread().get(78), equalTo(0));
-		assertThat(d.getSpread().get(79), equalTo(13));
-		assertThat(d.getSpread().get(80), equalTo(14));
-		assertThat(d.getSpread().get(81), equalTo(2));
-		assertThat(d.getSpread().get(82), equalTo(0));
+		assertThat(d.getSpread()[78], equalTo(0));
+		assertThat(d.getSpread()[79], equalTo(13));
+		assertThat(d.getSpread()[80], equalTo(14));
+		assertThat(d.getSpread()[81], equalTo(2));
+		assertThat(d.getSpread()[82], equalTo(0));
+	}
+
+	@Test
+	public void testSpreadSetLastActivityEndTime()
+	{
+		DayActivity d = createDayActivity();
+		d.addActivity(Activity.createInstance(getDate(19, 46), getDate(19, 59)));
+		d.addActivity(Activity.createInstance(getDate(20, 1), getDate(20, 5)));
+		d.setLastActivityEndTime(getDate(20, 17));
+		assertThat(d.getSpread()[79], equalTo(13));
+		assertThat(d.getSpread()[80], equalTo(14));
+		assertThat(d.getSpread()[81], equalTo(2));
+		assertThat(d.getTotalActivityDurationMinutes(), equalTo(29));
+
+		d.setLastActivityEndTime(getDate(20, 10));
+		assertThat(d.getSpread()[80], equalTo(9));
+		assertThat(d.getSpread()[81], equalTo(0));
+		assertThat(d.getTotalActivityDurationMinutes(), equalTo(22));
+		assertThat(d.getSpreadChange(), equalTo(d.getSpread()));
+	}
+
+	@Test
+	public void testSpreadSetLastActivityEndTimeOverlapping()
+	{
+		DayActivity d = createDayActivity();
+		d.addActivity(Activity.createInstance(getDate(19, 55), getDate(20, 10)));
+		d.addActivity(Activity.createInstance(getDate(19, 50), getDate(19, 52)));
+		d.setLastActivityEndTime(getDate(20, 5));
+		assertThat(d.getSpread()[79], equalTo(10));
+		assertThat(d.getSpread()[80], equalTo(10));
+		assertThat(d.getTotalActivityDurationMinutes(), equalTo(30));
+	}
+
+	@Test
+	public void testGoalAggregatesRecomputedAfterGoalChange()
+	{
+		DayActivity d = createDayActivity();
+		d.addActivity(Activity.createInstance(getDate(19, 0), getDate(20, 10)));
+		assertThat(d.isGoalAccomplished(), equalTo(false));
+		assertThat(d.getTotalMinutesBeyondGoal(), equalTo(10));
+
+		goal.setMaxDurationMinutes(90);
+		d.recomputeGoalAggregates();
+		assertThat(d.isGoalAccomplished(), equalTo(true));
+		assertThat(d.getTotalMinutesBeyondGoal(), equalTo(0));
 	}
 }
@@ -11,9 +11,27 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
 import java.time.DayOfWeek;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.UUID;
 
 import org.junit.Test;
 
+import nu.yona.server.analysis.entities.Activity;
+import nu.yona.server.analysis.entities.DayActivity;
+import nu.yona.server.analysis.entities.WeekActivity;
+import nu.yona.server.crypto.PublicKeyUtil;
+import nu.yona.server.goals.entities.ActivityCategory;
+import nu.yona.server.goals.entities.BudgetGoal;
+import nu.yona.server.goals.entities.Goal;
+import nu.yona.server.messaging.entities.MessageDestination;
+import nu.yona.server.subscriptions.entities.UserAnonymized;
+import nu.yona.server.util.TimeUtil;
+
 public class WeekActivityTests
 {
 	@Test
@@ -22,4 +40,33 @@ public class WeekActivityTests
 		assertThat(WeekActivityDTO.parseDate("2016-W02").getDayOfWeek(), equalTo(DayOfWeek.SUNDAY));
 		assertThat(WeekActivityDTO.parseDate("2016-W02").getYear(), equalTo(2016));
 	}
+
+	@Test
+	public void newWeekAggregatesAreMaintainedIncrementally()
+	{
+		ZoneId testZone = ZoneId.of("Europe/Amsterdam");
+		ActivityCategory activityCategory = ActivityCategory.createInstance(UUID.randomUUID(),
+				Collections.singletonMap(Locale.US, "being bored"), false, Collections.emptySet(), Collections.emptySet(),
+				Collections.singletonMap(Locale.US, "Descr"));
+		BudgetGoal goal = BudgetGoal.createInstance(TimeUtil.utcNow(), activityCategory, 60);
+		UserAnonymized userAnonEntity = UserAnonymized.createInstance(
+				MessageDestination.createInstance(PublicKeyUtil.generateKeyPair().getPublic()),
+				new HashSet<Goal>(Arrays.asList(goal)));
+
+		WeekActivity weekActivity = WeekActivity.createInstance(userAnonEntity, goal,
+				ZonedDateTime.of(2016, 3, 13, 0, 0, 0, 0, testZone));
+		assertThat(weekActivity.areAggregatesComputed(), equalTo(true));
+		assertThat(weekActivity.getTotalActivityDurationMinutes(), equalTo(0));
+
+		// Rolling up a change must not need the stored day activities, as there is no repository in this test
+		DayActivity dayActivity = DayActivity.createInstance(userAnonEntity, goal,
+				ZonedDateTime.of(2016, 3, 17, 0, 0, 0, 0, testZone));
+		dayActivity.addActivity(Activity.createInstance(ZonedDateTime.of(2016, 3, 17, 19, 55, 0, 0, testZone),
+				ZonedDateTime.of(2016, 3, 17, 20, 1, 0, 0, testZone)));
+		weekActivity.applyDayActivityChange(dayActivity);
+
+		assertThat(weekActivity.getTotalActivityDurationMinutes(), equalTo(6));
+		assertThat(weekActivity.getSpread()[79], equalTo(5));
+		assertThat(weekActivity.getSpread()[80], equalTo(1));
+	}
 }
@@ -354,6 +354,76 @@ class ActivityTest extends AbstractAppServiceIntegrationTest
 		appService.deleteUser(richard)
 	}
 
+	def 'Unchanged activity report is not sent again'()
+	{
+		given:
+		User richard = addRichard()
+		def initialResponseWeekOverviews = appService.getWeekActivityOverviews(richard)
+		assert initialResponseWeekOverviews.status == 200
+		def eTag = initialResponseWeekOverviews.headers."ETag"
+		assert eTag
+
+		when:
+		def responseWeekOverviews = appService.yonaServer.getResource(richard.weeklyActivityReportsUrl, ["Yona-Password": richard.password, "If-None-Match": eTag])
+
+		then:
+		responseWeekOverviews.status == 304
+		responseWeekOverviews.headers."ETag" == eTag
+
+		cleanup:
+		appService.deleteUser(richard)
+	}
+
+	def 'Activity report is sent again after adding activity'()
+	{
+		given:
+		User richard = addRichard()
+		def ZonedDateTime now = YonaServer.now
+		def initialResponseWeekOverviews = appService.getWeekActivityOverviews(richard)
+		assert initialResponseWeekOverviews.status == 200
+		def eTag = initialResponseWeekOverviews.headers."ETag"
+		assert eTag
+
+		when:
+		reportAppActivities(richard, AppActivity.singleActivity("NU.nl", now, now))
+		def responseWeekOverviews = appService.yonaServer.getResource(richard.weeklyActivityReportsUrl, ["Yona-Password": richard.password, "If-None-Match": eTag])
+
+		then:
+		responseWeekOverviews.status == 200
+		responseWeekOverviews.headers."ETag" != eTag
+		responseWeekOverviews.responseData._embedded."yona:weekActivityOverviews".size() == 1
+
+		cleanup:
+		appService.deleteUser(richard)
+	}
+
+	def 'Only the activity report of a closed day can be cached by the client'()
+	{
+		given:
+		User richard = addRichard()
+		setGoalCreationTime(richard, NEWS_ACT_CAT_URL, "W-1 Mon 02:18")
+		Goal budgetGoalNews = richard.findActiveGoal(NEWS_ACT_CAT_URL)
+
+		def responseDayOverviews = appService.getDayActivityOverviews(richard)
+		assert responseDayOverviews.status == 200
+		def dayOverviews = responseDayOverviews.responseData._embedded."yona:dayActivityOverviews"
+		def dayDetailsUrlToday = dayOverviews[0].dayActivities.find{ it._links."yona:goal".href == budgetGoalNews.url}._links."yona:dayDetails".href
+		def dayDetailsUrlYesterday = dayOverviews[1].dayActivities.find{ it._links."yona:goal".href == budgetGoalNews.url}._links."yona:dayDetails".href
+
+		when:
+		def responseYesterday = appService.getResourceWithPassword(dayDetailsUrlYesterday, richard.password)
+		def responseToday = appService.getResourceWithPassword(dayDetailsUrlToday, richard.password)
+
+		then:
+		responseYesterday.status == 200
+		responseYesterday.headers."Cache-Control".contains("max-age=3600")
+		responseToday.status == 200
+		responseToday.headers."Cache-Control" == null || !responseToday.headers."Cache-Control".contains("max-age")
+
+		cleanup:
+		appService.deleteUser(richard)
+	}
+
 	def 'Add activity after retrieving the report with multiple days'()
 	{
 		given:
@@ -64,6 +64,62 @@ class MessagingTest extends AbstractAppServiceIntegrationTest
 		appService.deleteUser(bob)
 	}
 
+	def 'Richard pages through his messages with a cursor'()
+	{
+		given:
+		def richardAndBob = addRichardAndBobAsBuddies()
+		def richard = richardAndBob.richard
+		def bob = richardAndBob.bob
+		analysisService.postToAnalysisEngine(richard, ["news/media"], "http://www.refdag.nl")
+		analysisService.postToAnalysisEngine(bob, ["Gambling"], "http://www.poker'com")
+		analysisService.postToAnalysisEngine(bob, ["news/media"], "http://www.refdag.nl")
+		def allMessagesResponse = appService.getMessages(richard)
+		assert allMessagesResponse.status == 200
+		def allMessageUrls = allMessagesResponse.responseData._embedded."yona:messages".collect{ it._links.self.href }
+
+		when:
+		def firstSliceResponse = appService.getMessages(richard, [
+			"continueFrom": "",
+			"includeTotal": true,
+			"size": 3])
+		def secondSliceResponse = appService.yonaServer.getResourceWithPassword(firstSliceResponse.responseData._links.next.href, richard.password)
+
+		then:
+		firstSliceResponse.status == 200
+		firstSliceResponse.responseData.totalElements == 4
+		firstSliceResponse.responseData._embedded."yona:messages".size() == 3
+		firstSliceResponse.responseData._links.next.href.contains("continueFrom=")
+
+		secondSliceResponse.status == 200
+		secondSliceResponse.responseData.totalElements == null
+		secondSliceResponse.responseData._embedded."yona:messages".size() == 1
+		!secondSliceResponse.responseData._links.next
+
+		// The slices contain the messages in the same order as the pages, without overlap
+		def sliceMessageUrls = firstSliceResponse.responseData._embedded."yona:messages".collect{ it._links.self.href } + secondSliceResponse.responseData._embedded."yona:messages".collect{ it._links.self.href }
+		sliceMessageUrls == allMessageUrls
+
+		cleanup:
+		appService.deleteUser(richard)
+		appService.deleteUser(bob)
+	}
+
+	def 'Richard tries to page through his messages with an invalid cursor'()
+	{
+		given:
+		def richard = addRichard()
+
+		when:
+		def response = appService.getMessages(richard, ["continueFrom": "not a cursor!"])
+
+		then:
+		response.status == 400
+		response.responseData.code == "error.invalid.cursor"
+
+		cleanup:
+		appService.deleteUser(richard)
+	}
+
 	def 'Richard retrieves only unread messages'()
 	{
 		given:
@@ -251,6 +307,72 @@ class MessagingTest extends AbstractAppServiceIntegrationTest
 		appService.deleteUser(bob)
 	}
 
+	def 'Richard and Bob follow their unread messages through the inbox summary'()
+	{
+		given:
+		def richard = addRichard()
+		def bob = addBob()
+
+		when:
+		appService.sendBuddyConnectRequest(richard, bob)
+
+		then:
+		// The summary is requested before the messages, so the request is still on the named destination of Bob
+		getUnreadMessageCount(bob) == 1
+		// Reading the messages transferred the request to the anonymous destination
+		getUnreadMessageCount(bob) == 1
+		getUnreadMessageCount(richard) == 0
+
+		when:
+		def acceptURL = appService.fetchBuddyConnectRequestMessage(bob).acceptURL
+		appService.postMessageActionWithPassword(acceptURL, ["message" : "Yes, great idea!"], bob.password)
+		def processURL = appService.fetchBuddyConnectResponseMessage(richard).processURL
+		appService.postMessageActionWithPassword(processURL, [ : ], richard.password)
+		richard = appService.reloadUser(richard)
+		int richardCount = getUnreadMessageCount(richard)
+		int bobCount = getUnreadMessageCount(bob)
+		analysisService.postToAnalysisEngine(richard, ["news/media"], "http://www.refdag.nl")
+
+		then:
+		// Sent to Richard and broadcast to Bob
+		getUnreadMessageCount(richard) == richardCount + 1
+		getUnreadMessageCount(bob) == bobCount + 1
+
+		when:
+		def goalConflictMessage = appService.getMessages(richard).responseData._embedded."yona:messages".findAll{ it."@type" == "GoalConflictMessage"}[0]
+		markRead(richard, goalConflictMessage)
+
+		then:
+		getUnreadMessageCount(richard) == richardCount
+
+		when:
+		markUnread(richard, appService.getMessages(richard).responseData._embedded."yona:messages".findAll{ it."@type" == "GoalConflictMessage"}[0])
+
+		then:
+		getUnreadMessageCount(richard) == richardCount + 1
+
+		when:
+		def deleteResponse = appService.deleteResourceWithPassword(goalConflictMessage._links.edit.href, richard.password)
+
+		then:
+		deleteResponse.status == 200
+		getUnreadMessageCount(richard) == richardCount
+
+		when:
+		def removeGoalResponse = appService.removeGoal(richard, richard.findActiveGoal(NEWS_ACT_CAT_URL), "Don't want to monitor my news time anymore")
+
+		then:
+		removeGoalResponse.status == 200
+		// The goal conflict message of Bob is deleted in bulk, and Bob is informed about the removed goal
+		appService.getMessages(bob).responseData._embedded."yona:messages".findAll{ it."@type" == "GoalConflictMessage"}.size() == 0
+		getUnreadMessageCount(bob) == bobCount + 1
+		getUnreadMessageCount(richard) == richardCount
+
+		cleanup:
+		appService.deleteUser(richard)
+		appService.deleteUser(bob)
+	}
+
 	private void markRead(User user, def message)
 	{
 		assert message._links?."yona:markRead"?.href
@@ -263,4 +385,18 @@ class MessagingTest extends AbstractAppServiceIntegrationTest
 		def response = appService.postMessageActionWithPassword(message._links."yona:markUnread".href, [ : ], user.password)
 		assert response.status == 200
 	}
+
+	/*
+	 * Returns the unread message count of the inbox summary, after checking that it matches the number of unread messages. The
+	 * summary is requested first, as reading the messages transfers the direct messages to the anonymous destination.
+	 */
+	private int getUnreadMessageCount(User user)
+	{
+		def summaryResponse = appService.getInboxSummary(user)
+		assert summaryResponse.status == 200
+		def unreadMessagesResponse = appService.getMessages(user, [ "onlyUnreadMessages" : true])
+		assert unreadMessagesResponse.status == 200
+		assert summaryResponse.responseData.unreadMessageCount == unreadMessagesResponse.responseData.page.totalElements
+		return summaryResponse.responseData.unreadMessageCount
+	}
 }
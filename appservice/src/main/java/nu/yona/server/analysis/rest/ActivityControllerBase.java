@@ -8,11 +8,15 @@
 package nu.yona.server.analysis.rest;
 
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -20,6 +24,7 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.PagedResources;
@@ -27,9 +32,14 @@ import org.springframework.hateoas.Resource;
 import org.springframework.hateoas.hal.CurieProvider;
 import org.springframework.hateoas.mvc.ControllerLinkBuilder;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.ResponseEntity.BodyBuilder;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 
@@ -37,16 +47,22 @@ import nu.yona.server.analysis.entities.IntervalActivity;
 import nu.yona.server.analysis.entities.WeekActivity;
 import nu.yona.server.analysis.service.ActivityCommentMessageDTO;
 import nu.yona.server.analysis.service.ActivityService;
+import nu.yona.server.analysis.service.ActivityVersionDTO;
+import nu.yona.server.analysis.service.ActivityVersionService;
 import nu.yona.server.analysis.service.DayActivityDTO;
 import nu.yona.server.analysis.service.DayActivityOverviewDTO;
 import nu.yona.server.analysis.service.WeekActivityDTO;
 import nu.yona.server.analysis.service.WeekActivityOverviewDTO;
 import nu.yona.server.crypto.CryptoSession;
+import nu.yona.server.exceptions.InvalidDataException;
 import nu.yona.server.messaging.rest.MessageController;
 import nu.yona.server.messaging.rest.MessageController.MessageResourceAssembler;
 import nu.yona.server.messaging.service.MessageDTO;
+import nu.yona.server.properties.YonaProperties;
+import nu.yona.server.rest.SliceResources;
 import nu.yona.server.subscriptions.rest.BuddyController;
 import nu.yona.server.subscriptions.service.GoalIDMapping;
+import nu.yona.server.subscriptions.service.UserAnonymizedService;
 import nu.yona.server.subscriptions.service.UserService;
 
 /*
@@ -71,6 +87,18 @@ abstract class ActivityControllerBase
 	@Autowired
 	private MessageController messageController;
 
+	@Autowired
+	private ActivityVersionService activityVersionService;
+
+	@Autowired
+	private UserAnonymizedService userAnonymizedService;
+
+	@Autowired
+	private YonaProperties yonaProperties;
+
+	@Autowired
+	private ActivityResponseCacheService activityResponseCacheService;
+
 	protected static final String WEEK_ACTIVITY_OVERVIEWS_URI_FRAGMENT = "/weeks/";
 	protected static final String DAY_OVERVIEWS_URI_FRAGMENT = "/days/";
 	protected static final String WEEK_ACTIVITY_DETAIL_URI_FRAGMENT = "/weeks/{date}/details/{goalID}";
@@ -85,43 +113,129 @@ abstract class ActivityControllerBase
 	protected static final String PREV_REL = "prev"; // IANA reserved, so will not be prefixed
 	protected static final String NEXT_REL = "next"; // IANA reserved, so will not be prefixed
 
-	protected HttpEntity<PagedResources<WeekActivityOverviewResource>> getWeekActivityOverviews(Optional<String> password,
-			UUID userID, Pageable pageable, PagedResourcesAssembler<WeekActivityOverviewDTO> pagedResourcesAssembler,
-			Supplier<Page<WeekActivityOverviewDTO>> activitySupplier, LinkProvider linkProvider)
+	protected HttpEntity<byte[]> getWeekActivityOverviews(Optional<String> password, UUID userID, WebRequest request,
+			Pageable pageable, PagedResourcesAssembler<WeekActivityOverviewDTO> pagedResourcesAssembler,
+			Supplier<UUID> userAnonymizedIDSupplier, Supplier<Page<WeekActivityOverviewDTO>> activitySupplier,
+			LinkProvider linkProvider)
 	{
 		return CryptoSession.execute(password, () -> userService.canAccessPrivateData(userID),
-				() -> new ResponseEntity<>(pagedResourcesAssembler.toResource(activitySupplier.get(),
-						new WeekActivityOverviewResourceAssembler(linkProvider)), HttpStatus.OK));
+				() -> executeIfModified(request, userAnonymizedIDSupplier.get(), Optional.empty(),
+						() -> pagedResourcesAssembler.toResource(activitySupplier.get(),
+								new WeekActivityOverviewResourceAssembler(linkProvider))));
 	}
 
-	protected HttpEntity<PagedResources<DayActivityOverviewResource>> getDayActivityOverviews(Optional<String> password,
-			UUID userID, Pageable pageable,
-			PagedResourcesAssembler<DayActivityOverviewDTO<DayActivityDTO>> pagedResourcesAssembler,
-			Supplier<Page<DayActivityOverviewDTO<DayActivityDTO>>> activitySupplier, LinkProvider linkProvider)
+	protected HttpEntity<byte[]> getDayActivityOverviews(Optional<String> password, UUID userID, WebRequest request,
+			Pageable pageable, PagedResourcesAssembler<DayActivityOverviewDTO<DayActivityDTO>> pagedResourcesAssembler,
+			Supplier<UUID> userAnonymizedIDSupplier, Supplier<Page<DayActivityOverviewDTO<DayActivityDTO>>> activitySupplier,
+			LinkProvider linkProvider)
 	{
 		return CryptoSession.execute(password, () -> userService.canAccessPrivateData(userID),
-				() -> new ResponseEntity<>(pagedResourcesAssembler.toResource(activitySupplier.get(),
-						new DayActivityOverviewResourceAssembler(linkProvider)), HttpStatus.OK));
+				() -> executeIfModified(request, userAnonymizedIDSupplier.get(), Optional.empty(),
+						() -> pagedResourcesAssembler.toResource(activitySupplier.get(),
+								new DayActivityOverviewResourceAssembler(linkProvider))));
 	}
 
-	protected HttpEntity<WeekActivityResource> getWeekActivityDetail(Optional<String> password, UUID userID, String dateStr,
-			Function<LocalDate, WeekActivityDTO> activitySupplier, LinkProvider linkProvider)
+	protected HttpEntity<byte[]> getWeekActivityOverviewSlice(Optional<String> password, UUID userID, WebRequest request,
+			String cursor, boolean includeTotal, Supplier<UUID> userAnonymizedIDSupplier,
+			Function<Optional<LocalDate>, Slice<WeekActivityOverviewDTO>> activitySupplier, LinkProvider linkProvider)
+	{
+		Optional<LocalDate> before = parseCursor(cursor, WeekActivityDTO::parseDate);
+		return CryptoSession.execute(password, () -> userService.canAccessPrivateData(userID), () -> {
+			UUID userAnonymizedID = userAnonymizedIDSupplier.get();
+			return executeIfModified(request, userAnonymizedID, Optional.empty(),
+					() -> SliceResources.createInstance(activitySupplier.apply(before),
+							new WeekActivityOverviewResourceAssembler(linkProvider),
+							includeTotal ? Optional.of(activityService.countWeekActivityOverviews(userAnonymizedID))
+									: Optional.empty(),
+							WeekActivityOverviewDTO::getDateStr));
+		});
+	}
+
+	protected HttpEntity<byte[]> getDayActivityOverviewSlice(Optional<String> password, UUID userID, WebRequest request,
+			String cursor, boolean includeTotal, Supplier<UUID> userAnonymizedIDSupplier,
+			Function<Optional<LocalDate>, Slice<DayActivityOverviewDTO<DayActivityDTO>>> activitySupplier,
+			LinkProvider linkProvider)
+	{
+		Optional<LocalDate> before = parseCursor(cursor, DayActivityDTO::parseDate);
+		return CryptoSession.execute(password, () -> userService.canAccessPrivateData(userID), () -> {
+			UUID userAnonymizedID = userAnonymizedIDSupplier.get();
+			return executeIfModified(request, userAnonymizedID, Optional.empty(),
+					() -> SliceResources.createInstance(activitySupplier.apply(before),
+							new DayActivityOverviewResourceAssembler(linkProvider),
+							includeTotal ? Optional.of(activityService.countDayActivityOverviews(userAnonymizedID))
+									: Optional.empty(),
+							DayActivityOverviewDTO::getDateStr));
+		});
+	}
+
+	/*
+	 * The cursor of the activity overviews is the ISO-8601 date of the last overview of the previous page.
+	 */
+	private Optional<LocalDate> parseCursor(String cursor, Function<String, LocalDate> dateParser)
+	{
+		try
+		{
+			return SliceResources.parseCursor(cursor).map(dateParser);
+		}
+		catch (DateTimeParseException e)
+		{
+			throw InvalidDataException.invalidCursor(cursor);
+		}
+	}
+
+	protected HttpEntity<byte[]> getWeekActivityDetail(Optional<String> password, UUID userID, WebRequest request,
+			String dateStr, Supplier<UUID> userAnonymizedIDSupplier, Function<LocalDate, WeekActivityDTO> activitySupplier,
+			LinkProvider linkProvider)
 	{
 		LocalDate date = WeekActivityDTO.parseDate(dateStr);
 		return CryptoSession.execute(password, () -> userService.canAccessPrivateData(userID),
-				() -> new ResponseEntity<>(
-						new WeekActivityResourceAssembler(linkProvider, true).toResource(activitySupplier.apply(date)),
-						HttpStatus.OK));
+				() -> executeIfModified(request, userAnonymizedIDSupplier.get(), Optional.of(date.plusWeeks(1)),
+						() -> new WeekActivityResourceAssembler(linkProvider, true).toResource(activitySupplier.apply(date))));
 	}
 
-	protected HttpEntity<DayActivityResource> getDayActivityDetail(Optional<String> password, UUID userID, String dateStr,
-			Function<LocalDate, DayActivityDTO> activitySupplier, LinkProvider linkProvider)
+	protected HttpEntity<byte[]> getDayActivityDetail(Optional<String> password, UUID userID, WebRequest request,
+			String dateStr, Supplier<UUID> userAnonymizedIDSupplier, Function<LocalDate, DayActivityDTO> activitySupplier,
+			LinkProvider linkProvider)
 	{
 		LocalDate date = DayActivityDTO.parseDate(dateStr);
 		return CryptoSession.execute(password, () -> userService.canAccessPrivateData(userID),
-				() -> new ResponseEntity<>(
-						new DayActivityResourceAssembler(linkProvider, true, true).toResource(activitySupplier.apply(date)),
-						HttpStatus.OK));
+				() -> executeIfModified(request, userAnonymizedIDSupplier.get(), Optional.of(date.plusDays(1)),
+						() -> new DayActivityResourceAssembler(linkProvider, true, true).toResource(activitySupplier.apply(date))));
+	}
+
+	/*
+	 * The activity reports of a user only change when the activities or goals of that user change, or when a new day starts for
+	 * the user. If the client already has the current version of a report, it gets a 304 Not Modified response, without any
+	 * activities being loaded. Otherwise, the rendered report is taken from the response cache, if another request already
+	 * rendered this version of it.
+	 */
+	private HttpEntity<byte[]> executeIfModified(WebRequest request, UUID userAnonymizedID, Optional<LocalDate> endOfInterval,
+			Supplier<Object> resourceSupplier)
+	{
+		ZoneId zone = ZoneId.of(userAnonymizedService.getUserAnonymized(userAnonymizedID).getTimeZoneId());
+		LocalDate today = LocalDate.now(zone);
+		ActivityVersionDTO activityVersion = activityVersionService.getVersion(userAnonymizedID);
+		String eTag = activityVersion.getETag(today);
+		if (request.checkNotModified(eTag, activityVersion.getLastModifiedEpochMillis(zone, today)))
+		{
+			return null;
+		}
+		String requestUrl = ServletUriComponentsBuilder.fromCurrentRequest().toUriString();
+		return createActivityResponse(activityResponseCacheService.getResponseBody(requestUrl, eTag, resourceSupplier),
+				endOfInterval, today);
+	}
+
+	private ResponseEntity<byte[]> createActivityResponse(byte[] responseBody, Optional<LocalDate> endOfInterval,
+			LocalDate today)
+	{
+		BodyBuilder responseBuilder = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8);
+		if (endOfInterval.filter(e -> !e.isAfter(today)).isPresent())
+		{
+			// The interval is closed, so it is unlikely to change
+			Duration maxAge = yonaProperties.getAnalysisService().getClosedIntervalMaxAge();
+			responseBuilder.cacheControl(CacheControl.maxAge(maxAge.getSeconds(), TimeUnit.SECONDS).cachePrivate());
+		}
+		return responseBuilder.body(responseBody);
 	}
 
 	protected HttpEntity<PagedResources<MessageDTO>> getActivityDetailMessages(Optional<String> password, UUID userID,
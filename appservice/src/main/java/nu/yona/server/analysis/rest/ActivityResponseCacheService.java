@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.rest;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import nu.yona.server.exceptions.YonaException;
+import nu.yona.server.properties.YonaProperties;
+
+/*
+ * Caches the rendered JSON of activity reports. Building the HAL resources of a report creates many links, which is expensive, and
+ * clients tend to fetch the same pages repeatedly. The response bodies are kept on the heap as they are, so a hit returns them
+ * without copying; they are never modified after they are rendered. The total size of the bodies is bounded, evicting the least
+ * recently used responses first. The responses are keyed on the request URL and the entity tag, which includes the activity
+ * version of the user, so a response is never served after the activities of the user have changed; the outdated responses simply
+ * age out of the cache.
+ */
+@Service
+public class ActivityResponseCacheService
+{
+	@Autowired
+	private YonaProperties yonaProperties;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private Optional<Cache<String, byte[]>> cache;
+
+	@PostConstruct
+	void initializeCache()
+	{
+		long maxSize = yonaProperties.getAnalysisService().getActivityResponseCacheSize();
+		cache = (maxSize == 0) ? Optional.empty()
+				: Optional.of(CacheBuilder.newBuilder().maximumWeight(maxSize)
+						.weigher((String key, byte[] value) -> key.length() + value.length).build());
+	}
+
+	/**
+	 * Returns the rendered response body for the given request.
+	 * 
+	 * @param requestUrl The complete URL of the request. This includes the user, buddy and page, as well as the host of the
+	 *            links in the response.
+	 * @param eTag The entity tag of the current version of the response
+	 * @param resourceSupplier Supplies the resource to render if the response is not cached
+	 * @return The JSON response body
+	 */
+	public byte[] getResponseBody(String requestUrl, String eTag, Supplier<Object> resourceSupplier)
+	{
+		if (!cache.isPresent())
+		{
+			return serialize(resourceSupplier.get());
+		}
+		String key = requestUrl + eTag;
+		byte[] cachedResponseBody = cache.get().getIfPresent(key);
+		if (cachedResponseBody != null)
+		{
+			return cachedResponseBody;
+		}
+		byte[] responseBody = serialize(resourceSupplier.get());
+		cache.get().put(key, responseBody);
+		return responseBody;
+	}
+
+	private byte[] serialize(Object resource)
+	{
+		try
+		{
+			return objectMapper.writeValueAsBytes(resource);
+		}
+		catch (JsonProcessingException e)
+		{
+			throw YonaException.unexpected(e);
+		}
+	}
+}
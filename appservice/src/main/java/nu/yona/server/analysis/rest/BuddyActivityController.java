@@ -30,7 +30,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 
 import nu.yona.server.analysis.entities.IntervalActivity;
 import nu.yona.server.analysis.service.ActivityCommentMessageDTO;
@@ -42,7 +44,9 @@ import nu.yona.server.analysis.service.WeekActivityOverviewDTO;
 import nu.yona.server.crypto.CryptoSession;
 import nu.yona.server.messaging.rest.MessageController;
 import nu.yona.server.messaging.service.MessageDTO;
+import nu.yona.server.rest.SliceResources;
 import nu.yona.server.subscriptions.rest.BuddyController;
+import nu.yona.server.subscriptions.service.BuddyService;
 import nu.yona.server.subscriptions.service.GoalIDMapping;
 
 /*
@@ -55,38 +59,71 @@ public class BuddyActivityController extends ActivityControllerBase
 	@Autowired
 	private MessageController messageController;
 
+	@Autowired
+	private BuddyService buddyService;
+
 	@RequestMapping(value = WEEK_ACTIVITY_OVERVIEWS_URI_FRAGMENT, method = RequestMethod.GET)
 	@ResponseBody
-	public HttpEntity<PagedResources<WeekActivityOverviewResource>> getBuddyWeekActivityOverviews(
+	public HttpEntity<byte[]> getBuddyWeekActivityOverviews(
 			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
-			@PathVariable UUID buddyID, @PageableDefault(size = WEEKS_DEFAULT_PAGE_SIZE) Pageable pageable,
+			@PathVariable UUID buddyID, WebRequest request, @PageableDefault(size = WEEKS_DEFAULT_PAGE_SIZE) Pageable pageable,
 			PagedResourcesAssembler<WeekActivityOverviewDTO> pagedResourcesAssembler)
 	{
-		return getWeekActivityOverviews(password, userID, pageable, pagedResourcesAssembler,
+		return getWeekActivityOverviews(password, userID, request, pageable, pagedResourcesAssembler,
+				() -> getBuddyUserAnonymizedID(buddyID),
 				() -> activityService.getBuddyWeekActivityOverviews(buddyID, pageable),
 				new BuddyActivityLinkProvider(userID, buddyID));
 	}
 
 	@RequestMapping(value = DAY_OVERVIEWS_URI_FRAGMENT, method = RequestMethod.GET)
 	@ResponseBody
-	public HttpEntity<PagedResources<DayActivityOverviewResource>> getBuddyDayActivityOverviews(
+	public HttpEntity<byte[]> getBuddyDayActivityOverviews(
 			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
-			@PathVariable UUID buddyID, @PageableDefault(size = DAYS_DEFAULT_PAGE_SIZE) Pageable pageable,
+			@PathVariable UUID buddyID, WebRequest request, @PageableDefault(size = DAYS_DEFAULT_PAGE_SIZE) Pageable pageable,
 			PagedResourcesAssembler<DayActivityOverviewDTO<DayActivityDTO>> pagedResourcesAssembler)
 	{
-		return getDayActivityOverviews(password, userID, pageable, pagedResourcesAssembler,
+		return getDayActivityOverviews(password, userID, request, pageable, pagedResourcesAssembler,
+				() -> getBuddyUserAnonymizedID(buddyID),
 				() -> activityService.getBuddyDayActivityOverviews(buddyID, pageable),
 				new BuddyActivityLinkProvider(userID, buddyID));
 	}
 
+	@RequestMapping(value = WEEK_ACTIVITY_OVERVIEWS_URI_FRAGMENT, method = RequestMethod.GET, params = SliceResources.CURSOR_PARAM)
+	@ResponseBody
+	public HttpEntity<byte[]> getBuddyWeekActivityOverviewSlice(
+			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
+			@PathVariable UUID buddyID, WebRequest request, @RequestParam(value = SliceResources.CURSOR_PARAM) String cursor,
+			@RequestParam(value = SliceResources.INCLUDE_TOTAL_PARAM, required = false, defaultValue = "false") boolean includeTotal,
+			@PageableDefault(size = WEEKS_DEFAULT_PAGE_SIZE) Pageable pageable)
+	{
+		return getWeekActivityOverviewSlice(password, userID, request, cursor, includeTotal,
+				() -> getBuddyUserAnonymizedID(buddyID),
+				before -> activityService.getBuddyWeekActivityOverviews(buddyID, before, pageable.getPageSize()),
+				new BuddyActivityLinkProvider(userID, buddyID));
+	}
+
+	@RequestMapping(value = DAY_OVERVIEWS_URI_FRAGMENT, method = RequestMethod.GET, params = SliceResources.CURSOR_PARAM)
+	@ResponseBody
+	public HttpEntity<byte[]> getBuddyDayActivityOverviewSlice(
+			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
+			@PathVariable UUID buddyID, WebRequest request, @RequestParam(value = SliceResources.CURSOR_PARAM) String cursor,
+			@RequestParam(value = SliceResources.INCLUDE_TOTAL_PARAM, required = false, defaultValue = "false") boolean includeTotal,
+			@PageableDefault(size = DAYS_DEFAULT_PAGE_SIZE) Pageable pageable)
+	{
+		return getDayActivityOverviewSlice(password, userID, request, cursor, includeTotal,
+				() -> getBuddyUserAnonymizedID(buddyID),
+				before -> activityService.getBuddyDayActivityOverviews(buddyID, before, pageable.getPageSize()),
+				new BuddyActivityLinkProvider(userID, buddyID));
+	}
+
 	@RequestMapping(value = WEEK_ACTIVITY_DETAIL_URI_FRAGMENT, method = RequestMethod.GET)
 	@ResponseBody
-	public HttpEntity<WeekActivityResource> getBuddyWeekActivityDetail(
+	public HttpEntity<byte[]> getBuddyWeekActivityDetail(
 			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
-			@PathVariable UUID buddyID, @PathVariable(value = DATE_PATH_VARIABLE) String dateStr,
+			@PathVariable UUID buddyID, WebRequest request, @PathVariable(value = DATE_PATH_VARIABLE) String dateStr,
 			@PathVariable(value = GOAL_PATH_VARIABLE) UUID goalID)
 	{
-		return getWeekActivityDetail(password, userID, dateStr,
+		return getWeekActivityDetail(password, userID, request, dateStr, () -> getBuddyUserAnonymizedID(buddyID),
 				date -> activityService.getBuddyWeekActivityDetail(buddyID, date, goalID),
 				new BuddyActivityLinkProvider(userID, buddyID));
 	}
@@ -126,12 +163,12 @@ public class BuddyActivityController extends ActivityControllerBase
 
 	@RequestMapping(value = DAY_ACTIVITY_DETAIL_URI_FRAGMENT, method = RequestMethod.GET)
 	@ResponseBody
-	public HttpEntity<DayActivityResource> getBuddyDayActivityDetail(
+	public HttpEntity<byte[]> getBuddyDayActivityDetail(
 			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
-			@PathVariable UUID buddyID, @PathVariable(value = DATE_PATH_VARIABLE) String dateStr,
+			@PathVariable UUID buddyID, WebRequest request, @PathVariable(value = DATE_PATH_VARIABLE) String dateStr,
 			@PathVariable(value = GOAL_PATH_VARIABLE) UUID goalID)
 	{
-		return getDayActivityDetail(password, userID, dateStr,
+		return getDayActivityDetail(password, userID, request, dateStr, () -> getBuddyUserAnonymizedID(buddyID),
 				date -> activityService.getBuddyDayActivityDetail(buddyID, date, goalID),
 				new BuddyActivityLinkProvider(userID, buddyID));
 	}
@@ -169,6 +206,12 @@ public class BuddyActivityController extends ActivityControllerBase
 								HttpStatus.OK));
 	}
 
+	private UUID getBuddyUserAnonymizedID(UUID buddyID)
+	{
+		return buddyService.getBuddy(buddyID).getUserAnonymizedID()
+				.orElseThrow(() -> new IllegalStateException("Should have user anonymized ID when fetching buddy activity"));
+	}
+
 	@Override
 	public void addLinks(GoalIDMapping goalIDMapping, IntervalActivity activity, ActivityCommentMessageDTO message)
 	{
@@ -180,20 +223,20 @@ public class BuddyActivityController extends ActivityControllerBase
 	public static ControllerLinkBuilder getBuddyDayActivityOverviewsLinkBuilder(UUID userID, UUID buddyID)
 	{
 		BuddyActivityController methodOn = methodOn(BuddyActivityController.class);
-		return linkTo(methodOn.getBuddyDayActivityOverviews(null, userID, buddyID, null, null));
+		return linkTo(methodOn.getBuddyDayActivityOverviews(null, userID, buddyID, null, null, null));
 	}
 
 	public static ControllerLinkBuilder getBuddyWeekActivityOverviewsLinkBuilder(UUID userID, UUID buddyID)
 	{
 		BuddyActivityController methodOn = methodOn(BuddyActivityController.class);
-		return linkTo(methodOn.getBuddyWeekActivityOverviews(null, userID, buddyID, null, null));
+		return linkTo(methodOn.getBuddyWeekActivityOverviews(null, userID, buddyID, null, null, null));
 	}
 
 	public static ControllerLinkBuilder getBuddyDayActivityDetailLinkBuilder(UUID userID, UUID buddyID, String dateStr,
 			UUID goalID)
 	{
 		BuddyActivityController methodOn = methodOn(BuddyActivityController.class);
-		return linkTo(methodOn.getBuddyDayActivityDetail(null, userID, buddyID, dateStr, goalID));
+		return linkTo(methodOn.getBuddyDayActivityDetail(null, userID, buddyID, null, dateStr, goalID));
 	}
 
 	private static final class BuddyActivityLinkProvider implements LinkProvider
@@ -217,7 +260,7 @@ public class BuddyActivityController extends ActivityControllerBase
 		public ControllerLinkBuilder getWeekActivityDetailLinkBuilder(String dateStr, UUID goalID)
 		{
 			BuddyActivityController methodOn = methodOn(BuddyActivityController.class);
-			return linkTo(methodOn.getBuddyWeekActivityDetail(null, userID, buddyID, dateStr, goalID));
+			return linkTo(methodOn.getBuddyWeekActivityDetail(null, userID, buddyID, null, dateStr, goalID));
 		}
 
 		@Override
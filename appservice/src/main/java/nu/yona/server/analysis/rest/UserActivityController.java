@@ -33,7 +33,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 
 import nu.yona.server.analysis.entities.IntervalActivity;
 import nu.yona.server.analysis.service.ActivityCommentMessageDTO;
@@ -47,6 +49,7 @@ import nu.yona.server.crypto.CryptoSession;
 import nu.yona.server.goals.rest.ActivityCategoryController;
 import nu.yona.server.goals.rest.GoalController;
 import nu.yona.server.messaging.service.MessageDTO;
+import nu.yona.server.rest.SliceResources;
 import nu.yona.server.subscriptions.rest.BuddyController;
 import nu.yona.server.subscriptions.rest.UserController;
 import nu.yona.server.subscriptions.service.GoalIDMapping;
@@ -60,33 +63,61 @@ public class UserActivityController extends ActivityControllerBase
 {
 	@RequestMapping(value = WEEK_ACTIVITY_OVERVIEWS_URI_FRAGMENT, method = RequestMethod.GET)
 	@ResponseBody
-	public HttpEntity<PagedResources<WeekActivityOverviewResource>> getUserWeekActivityOverviews(
-			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
+	public HttpEntity<byte[]> getUserWeekActivityOverviews(
+			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID, WebRequest request,
 			@PageableDefault(size = WEEKS_DEFAULT_PAGE_SIZE) Pageable pageable,
 			PagedResourcesAssembler<WeekActivityOverviewDTO> pagedResourcesAssembler)
 	{
-		return getWeekActivityOverviews(password, userID, pageable, pagedResourcesAssembler,
+		return getWeekActivityOverviews(password, userID, request, pageable, pagedResourcesAssembler,
+				() -> userService.getUserAnonymizedID(userID),
 				() -> activityService.getUserWeekActivityOverviews(userID, pageable), new UserActivityLinkProvider(userID));
 	}
 
 	@RequestMapping(value = DAY_OVERVIEWS_URI_FRAGMENT, method = RequestMethod.GET)
 	@ResponseBody
-	public HttpEntity<PagedResources<DayActivityOverviewResource>> getUserDayActivityOverviews(
-			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
+	public HttpEntity<byte[]> getUserDayActivityOverviews(
+			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID, WebRequest request,
 			@PageableDefault(size = DAYS_DEFAULT_PAGE_SIZE) Pageable pageable,
 			PagedResourcesAssembler<DayActivityOverviewDTO<DayActivityDTO>> pagedResourcesAssembler)
 	{
-		return getDayActivityOverviews(password, userID, pageable, pagedResourcesAssembler,
+		return getDayActivityOverviews(password, userID, request, pageable, pagedResourcesAssembler,
+				() -> userService.getUserAnonymizedID(userID),
 				() -> activityService.getUserDayActivityOverviews(userID, pageable), new UserActivityLinkProvider(userID));
 	}
 
+	@RequestMapping(value = WEEK_ACTIVITY_OVERVIEWS_URI_FRAGMENT, method = RequestMethod.GET, params = SliceResources.CURSOR_PARAM)
+	@ResponseBody
+	public HttpEntity<byte[]> getUserWeekActivityOverviewSlice(@RequestHeader(value = PASSWORD_HEADER) Optional<String> password,
+			@PathVariable UUID userID, WebRequest request, @RequestParam(value = SliceResources.CURSOR_PARAM) String cursor,
+			@RequestParam(value = SliceResources.INCLUDE_TOTAL_PARAM, required = false, defaultValue = "false") boolean includeTotal,
+			@PageableDefault(size = WEEKS_DEFAULT_PAGE_SIZE) Pageable pageable)
+	{
+		return getWeekActivityOverviewSlice(password, userID, request, cursor, includeTotal,
+				() -> userService.getUserAnonymizedID(userID),
+				before -> activityService.getUserWeekActivityOverviews(userID, before, pageable.getPageSize()),
+				new UserActivityLinkProvider(userID));
+	}
+
+	@RequestMapping(value = DAY_OVERVIEWS_URI_FRAGMENT, method = RequestMethod.GET, params = SliceResources.CURSOR_PARAM)
+	@ResponseBody
+	public HttpEntity<byte[]> getUserDayActivityOverviewSlice(@RequestHeader(value = PASSWORD_HEADER) Optional<String> password,
+			@PathVariable UUID userID, WebRequest request, @RequestParam(value = SliceResources.CURSOR_PARAM) String cursor,
+			@RequestParam(value = SliceResources.INCLUDE_TOTAL_PARAM, required = false, defaultValue = "false") boolean includeTotal,
+			@PageableDefault(size = DAYS_DEFAULT_PAGE_SIZE) Pageable pageable)
+	{
+		return getDayActivityOverviewSlice(password, userID, request, cursor, includeTotal,
+				() -> userService.getUserAnonymizedID(userID),
+				before -> activityService.getUserDayActivityOverviews(userID, before, pageable.getPageSize()),
+				new UserActivityLinkProvider(userID));
+	}
+
 	@RequestMapping(value = WEEK_ACTIVITY_DETAIL_URI_FRAGMENT, method = RequestMethod.GET)
 	@ResponseBody
-	public HttpEntity<WeekActivityResource> getUserWeekActivityDetail(
-			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
+	public HttpEntity<byte[]> getUserWeekActivityDetail(
+			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID, WebRequest request,
 			@PathVariable(value = DATE_PATH_VARIABLE) String dateStr, @PathVariable(value = GOAL_PATH_VARIABLE) UUID goalID)
 	{
-		return getWeekActivityDetail(password, userID, dateStr,
+		return getWeekActivityDetail(password, userID, request, dateStr, () -> userService.getUserAnonymizedID(userID),
 				date -> activityService.getUserWeekActivityDetail(userID, date, goalID), new UserActivityLinkProvider(userID));
 	}
 
@@ -106,11 +137,11 @@ public class UserActivityController extends ActivityControllerBase
 
 	@RequestMapping(value = DAY_ACTIVITY_DETAIL_URI_FRAGMENT, method = RequestMethod.GET)
 	@ResponseBody
-	public HttpEntity<DayActivityResource> getUserDayActivityDetail(
-			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID,
+	public HttpEntity<byte[]> getUserDayActivityDetail(
+			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID, WebRequest request,
 			@PathVariable(value = DATE_PATH_VARIABLE) String dateStr, @PathVariable(value = GOAL_PATH_VARIABLE) UUID goalID)
 	{
-		return getDayActivityDetail(password, userID, dateStr,
+		return getDayActivityDetail(password, userID, request, dateStr, () -> userService.getUserAnonymizedID(userID),
 				date -> activityService.getUserDayActivityDetail(userID, date, goalID), new UserActivityLinkProvider(userID));
 	}
 
@@ -168,7 +199,7 @@ public class UserActivityController extends ActivityControllerBase
 	public static ControllerLinkBuilder getUserDayActivityOverviewsLinkBuilder(UUID userID)
 	{
 		UserActivityController methodOn = methodOn(UserActivityController.class);
-		return linkTo(methodOn.getUserDayActivityOverviews(null, userID, null, null));
+		return linkTo(methodOn.getUserDayActivityOverviews(null, userID, null, null, null));
 	}
 
 	public static ControllerLinkBuilder getDayActivityOverviewsWithBuddiesLinkBuilder(UUID userID)
@@ -180,13 +211,13 @@ public class UserActivityController extends ActivityControllerBase
 	public static ControllerLinkBuilder getUserWeekActivityOverviewsLinkBuilder(UUID userID)
 	{
 		UserActivityController methodOn = methodOn(UserActivityController.class);
-		return linkTo(methodOn.getUserWeekActivityOverviews(null, userID, null, null));
+		return linkTo(methodOn.getUserWeekActivityOverviews(null, userID, null, null, null));
 	}
 
 	public static ControllerLinkBuilder getUserDayActivityDetailLinkBuilder(UUID userID, String dateStr, UUID goalID)
 	{
 		UserActivityController methodOn = methodOn(UserActivityController.class);
-		return linkTo(methodOn.getUserDayActivityDetail(null, userID, dateStr, goalID));
+		return linkTo(methodOn.getUserDayActivityDetail(null, userID, null, dateStr, goalID));
 	}
 
 	static final class UserActivityLinkProvider implements LinkProvider
@@ -208,7 +239,7 @@ public class UserActivityController extends ActivityControllerBase
 		public ControllerLinkBuilder getWeekActivityDetailLinkBuilder(String dateStr, UUID goalID)
 		{
 			UserActivityController methodOn = methodOn(UserActivityController.class);
-			return linkTo(methodOn.getUserWeekActivityDetail(null, userID, dateStr, goalID));
+			return linkTo(methodOn.getUserWeekActivityDetail(null, userID, null, dateStr, goalID));
 		}
 
 		@Override
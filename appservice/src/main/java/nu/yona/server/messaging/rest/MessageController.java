@@ -56,10 +56,13 @@ import nu.yona.server.messaging.service.BuddyMessageEmbeddedUserDTO;
 import nu.yona.server.messaging.service.BuddyMessageLinkedUserDTO;
 import nu.yona.server.messaging.service.DisclosureRequestMessageDTO;
 import nu.yona.server.messaging.service.DisclosureResponseMessageDTO;
+import nu.yona.server.messaging.service.InboxSummaryDTO;
 import nu.yona.server.messaging.service.MessageActionDTO;
+import nu.yona.server.messaging.service.MessageCursor;
 import nu.yona.server.messaging.service.MessageDTO;
 import nu.yona.server.messaging.service.MessageService;
 import nu.yona.server.rest.JsonRootRelProvider;
+import nu.yona.server.rest.SliceResources;
 import nu.yona.server.subscriptions.rest.BuddyController;
 import nu.yona.server.subscriptions.rest.UserController;
 import nu.yona.server.subscriptions.service.BuddyConnectResponseMessageDTO;
@@ -101,6 +104,45 @@ public class MessageController
 						new MessageResourceAssembler(curieProvider, createGoalIDMapping(userID), this))));
 	}
 
+	@RequestMapping(value = "/", method = RequestMethod.GET, params = SliceResources.CURSOR_PARAM)
+	@ResponseBody
+	public HttpEntity<SliceResources<MessageDTO>> getMessageSlice(
+			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password,
+			@RequestParam(value = "onlyUnreadMessages", required = false, defaultValue = "false") String onlyUnreadMessagesStr,
+			@RequestParam(value = SliceResources.CURSOR_PARAM) String cursor,
+			@RequestParam(value = SliceResources.INCLUDE_TOTAL_PARAM, required = false, defaultValue = "false") boolean includeTotal,
+			@PathVariable UUID userID, Pageable pageable)
+	{
+		boolean onlyUnreadMessages = Boolean.TRUE.toString().equals(onlyUnreadMessagesStr);
+		Optional<MessageCursor> messageCursor = SliceResources.parseCursor(cursor).map(MessageCursor::parse);
+		return CryptoSession.execute(password, () -> userService.canAccessPrivateData(userID),
+				() -> new ResponseEntity<>(SliceResources.createInstance(
+						messageService.getReceivedMessages(userID, onlyUnreadMessages, messageCursor, pageable.getPageSize()),
+						new MessageResourceAssembler(curieProvider, createGoalIDMapping(userID), this),
+						includeTotal ? Optional.of(messageService.countReceivedMessages(userID, onlyUnreadMessages))
+								: Optional.empty(),
+						m -> MessageCursor.createInstance(m).format()), HttpStatus.OK));
+	}
+
+	@RequestMapping(value = "/summary", method = RequestMethod.GET)
+	@ResponseBody
+	public HttpEntity<Resource<InboxSummaryDTO>> getInboxSummary(
+			@RequestHeader(value = PASSWORD_HEADER) Optional<String> password, @PathVariable UUID userID)
+	{
+		return CryptoSession.execute(password, () -> userService.canAccessPrivateData(userID),
+				() -> new ResponseEntity<>(createInboxSummaryResource(userID, messageService.getInboxSummary(userID)),
+						HttpStatus.OK));
+	}
+
+	private Resource<InboxSummaryDTO> createInboxSummaryResource(UUID userID, InboxSummaryDTO inboxSummary)
+	{
+		Resource<InboxSummaryDTO> inboxSummaryResource = new Resource<>(inboxSummary);
+		inboxSummaryResource
+				.add(linkTo(methodOn(MessageController.class).getInboxSummary(Optional.empty(), userID)).withSelfRel());
+		inboxSummaryResource.add(getMessagesLink(userID));
+		return inboxSummaryResource;
+	}
+
 	@RequestMapping(value = "/{messageID}", method = RequestMethod.GET)
 	@ResponseBody
 	public HttpEntity<MessageDTO> getMessage(@RequestHeader(value = PASSWORD_HEADER) Optional<String> password,
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Slice;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.Resources;
+import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * A page of resources that is navigated by cursor rather than by page number. The next link carries the cursor of the last item
+ * on this page. Unlike the paged resources, the total number of elements is only included if the client asks for it, as counting
+ * them is not free.
+ */
+public class SliceResources<T> extends Resources<T>
+{
+	/**
+	 * Request parameter with the cursor of the last item of the previous page. It is empty for the first page.
+	 */
+	public static final String CURSOR_PARAM = "continueFrom";
+
+	/**
+	 * Request parameter to include the total number of elements in the response.
+	 */
+	public static final String INCLUDE_TOTAL_PARAM = "includeTotal";
+
+	private final Optional<Long> totalElements;
+
+	private SliceResources(Iterable<T> content, Optional<Long> totalElements, Iterable<Link> links)
+	{
+		super(content, links);
+		this.totalElements = totalElements;
+	}
+
+	@JsonInclude(Include.NON_NULL)
+	public Long getTotalElements()
+	{
+		return totalElements.orElse(null);
+	}
+
+	public static <T, R extends ResourceSupport> SliceResources<R> createInstance(Slice<T> slice,
+			ResourceAssemblerSupport<T, R> assembler, Optional<Long> totalElements, Function<T, String> cursorProvider)
+	{
+		List<Link> links = new ArrayList<>();
+		links.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest().build().toUriString()));
+		if (slice.hasNext() && slice.hasContent())
+		{
+			String nextCursor = cursorProvider.apply(slice.getContent().get(slice.getNumberOfElements() - 1));
+			links.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam(CURSOR_PARAM, nextCursor)
+					.build().toUriString(), Link.REL_NEXT));
+		}
+		return new SliceResources<>(assembler.toResources(slice.getContent()), totalElements, links);
+	}
+
+	public static Optional<String> parseCursor(String cursor)
+	{
+		return (cursor == null || cursor.isEmpty()) ? Optional.empty() : Optional.of(cursor);
+	}
+}
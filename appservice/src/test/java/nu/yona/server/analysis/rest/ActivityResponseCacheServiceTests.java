@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.rest;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nu.yona.server.properties.AnalysisServiceProperties;
+import nu.yona.server.properties.YonaProperties;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ActivityResponseCacheServiceTests
+{
+	private static final String URL_PAGE_0 = "http://localhost/users/1/activity/days/?page=0&size=3";
+	private static final String URL_PAGE_1 = "http://localhost/users/1/activity/days/?page=1&size=3";
+	private static final String ETAG_VERSION_1 = "\"1-2016-03-17\"";
+	private static final String ETAG_VERSION_2 = "\"2-2016-03-17\"";
+
+	@Mock
+	private YonaProperties mockYonaProperties;
+	@Spy
+	private ObjectMapper objectMapper = new ObjectMapper();
+	@InjectMocks
+	private final ActivityResponseCacheService service = new ActivityResponseCacheService();
+
+	private final AnalysisServiceProperties analysisServiceProperties = new AnalysisServiceProperties();
+
+	private final AtomicInteger renderCount = new AtomicInteger();
+
+	@Before
+	public void setUp()
+	{
+		when(mockYonaProperties.getAnalysisService()).thenReturn(analysisServiceProperties);
+		analysisServiceProperties.setActivityResponseCacheSize(1024 * 1024);
+		service.initializeCache();
+	}
+
+	@Test
+	public void sameUrlAndETagRenderedOnce()
+	{
+		byte[] responseBody1 = service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+		byte[] responseBody2 = service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+
+		assertThat(renderCount.get(), equalTo(1));
+		assertThat(responseBody2, equalTo(responseBody1));
+		assertThat(new String(responseBody1, StandardCharsets.UTF_8), equalTo("{\"render\":1}"));
+	}
+
+	@Test
+	public void otherUrlRenderedSeparately()
+	{
+		service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+		byte[] responseBody = service.getResponseBody(URL_PAGE_1, ETAG_VERSION_1, createResourceSupplier());
+
+		assertThat(renderCount.get(), equalTo(2));
+		assertThat(new String(responseBody, StandardCharsets.UTF_8), equalTo("{\"render\":2}"));
+	}
+
+	@Test
+	public void newVersionRenderedAgain()
+	{
+		service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+		byte[] responseBody = service.getResponseBody(URL_PAGE_0, ETAG_VERSION_2, createResourceSupplier());
+
+		assertThat(renderCount.get(), equalTo(2));
+		assertThat(new String(responseBody, StandardCharsets.UTF_8), equalTo("{\"render\":2}"));
+	}
+
+	@Test
+	public void cachedResponseCanBeReadRepeatedly()
+	{
+		service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+
+		for (int i = 0; i < 3; i++)
+		{
+			byte[] responseBody = service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+			assertThat(new String(responseBody, StandardCharsets.UTF_8), equalTo("{\"render\":1}"));
+		}
+	}
+
+	@Test
+	public void responseLargerThanCacheNotKept()
+	{
+		analysisServiceProperties.setActivityResponseCacheSize(10);
+		service.initializeCache();
+
+		service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+		byte[] responseBody = service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+
+		assertThat(renderCount.get(), equalTo(2));
+		assertThat(new String(responseBody, StandardCharsets.UTF_8), equalTo("{\"render\":2}"));
+	}
+
+	@Test
+	public void nothingCachedWhenDisabled()
+	{
+		analysisServiceProperties.setActivityResponseCacheSize(0);
+		service.initializeCache();
+
+		service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+		service.getResponseBody(URL_PAGE_0, ETAG_VERSION_1, createResourceSupplier());
+
+		assertThat(renderCount.get(), equalTo(2));
+	}
+
+	private Supplier<Object> createResourceSupplier()
+	{
+		return () -> Collections.singletonMap("render", renderCount.incrementAndGet());
+	}
+}
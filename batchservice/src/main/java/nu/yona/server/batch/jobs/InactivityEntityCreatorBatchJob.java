@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.batch.jobs;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.JobParametersInvalidException;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JpaPagingItemReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+
+import nu.yona.server.analysis.service.ActivityService;
+import nu.yona.server.analysis.service.AnalysisEngineProxyService;
+import nu.yona.server.analysis.service.IntervalInactivityDTO;
+import nu.yona.server.exceptions.YonaException;
+import nu.yona.server.properties.YonaProperties;
+import nu.yona.server.subscriptions.entities.UserAnonymized;
+
+/*
+ * The activity overviews add the inactivities that are not recorded yet, without persisting them. This job persists them for all
+ * users, through the analysis engine. It only covers the last NUMBER_OF_WEEKS weeks. Older gaps, e.g. from before the job was
+ * introduced or from periods in which it did not run, are not backfilled: the overviews keep computing those on read.
+ */
+@Component
+public class InactivityEntityCreatorBatchJob
+{
+	private static final int CHUNK_SIZE = 10;
+
+	/*
+	 * The current and the previous week, so the last days of the previous week are covered when the job runs on a Sunday
+	 */
+	private static final int NUMBER_OF_WEEKS = 2;
+
+	private static final Logger logger = LoggerFactory.getLogger(InactivityEntityCreatorBatchJob.class);
+
+	@Autowired
+	private YonaProperties yonaProperties;
+
+	@Autowired
+	private ActivityService activityService;
+
+	@Autowired
+	private AnalysisEngineProxyService analysisEngineProxyService;
+
+	@Autowired
+	private JobRepository jobRepository;
+
+	@Autowired
+	private JobBuilderFactory jobBuilderFactory;
+
+	@Autowired
+	private StepBuilderFactory stepBuilderFactory;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private JpaPagingItemReader<UserAnonymized> inactivityEntityCreatorReader;
+
+	@Autowired
+	private TaskScheduler scheduler;
+
+	@Bean(destroyMethod = "")
+	@StepScope
+	public JpaPagingItemReader<UserAnonymized> inactivityEntityCreatorReader()
+	{
+		try
+		{
+			JpaPagingItemReader<UserAnonymized> reader = new JpaPagingItemReader<UserAnonymized>();
+			reader.setQueryString("SELECT u FROM UserAnonymized u ORDER BY u.id");
+			reader.setEntityManagerFactory(entityManager.getEntityManagerFactory());
+			reader.setPageSize(CHUNK_SIZE);
+			reader.afterPropertiesSet();
+			reader.setSaveState(true);
+
+			return reader;
+		}
+		catch (Exception e)
+		{
+			throw YonaException.unexpected(e);
+		}
+	}
+
+	@Bean
+	public ItemProcessor<UserAnonymized, Set<IntervalInactivityDTO>> inactivityEntityCreatorProcessor()
+	{
+		return new ItemProcessor<UserAnonymized, Set<IntervalInactivityDTO>>() {
+			@Override
+			public Set<IntervalInactivityDTO> process(final UserAnonymized userAnonymized) throws Exception
+			{
+				Set<IntervalInactivityDTO> missingInactivities = activityService.getMissingInactivities(userAnonymized.getID(),
+						NUMBER_OF_WEEKS);
+				// Returning null skips the user
+				return missingInactivities.isEmpty() ? null : missingInactivities;
+			}
+		};
+	}
+
+	@Bean
+	public ItemWriter<Set<IntervalInactivityDTO>> inactivityEntityCreatorWriter()
+	{
+		return new ItemWriter<Set<IntervalInactivityDTO>>() {
+			@Override
+			public void write(List<? extends Set<IntervalInactivityDTO>> missingInactivitiesOfUsers) throws Exception
+			{
+				missingInactivitiesOfUsers.forEach(mias -> createInactivityEntities(mias));
+			}
+		};
+	}
+
+	private void createInactivityEntities(Set<IntervalInactivityDTO> missingInactivities)
+	{
+		UUID userAnonymizedID = missingInactivities.iterator().next().getUserAnonymizedID().get();
+		logger.info("Creating {} inactivity entities for user anonymized ID '{}'", missingInactivities.size(),
+				userAnonymizedID);
+		try
+		{
+			analysisEngineProxyService.createInactivityEntities(userAnonymizedID, missingInactivities);
+		}
+		catch (RestClientException e)
+		{
+			// The next run will try again, so do not let this fail the entities of the other users
+			logger.error("Failed to create inactivity entities for user anonymized ID '" + userAnonymizedID + "'", e);
+		}
+	}
+
+	@Bean
+	public Step inactivityEntityCreatorStep()
+	{
+		return stepBuilderFactory.get("inactivityEntityCreatorStep")
+				.<UserAnonymized, Set<IntervalInactivityDTO>> chunk(CHUNK_SIZE).reader(inactivityEntityCreatorReader)
+				.processor(inactivityEntityCreatorProcessor()).writer(inactivityEntityCreatorWriter()).build();
+	}
+
+	@Bean
+	public Job inactivityEntityCreatorJob()
+	{
+		return jobBuilderFactory.get("inactivityEntityCreatorJob").incrementer(new RunIdIncrementer())
+				.flow(inactivityEntityCreatorStep()).end().build();
+	}
+
+	/*
+	 * This method is created as alternative to the Spring expression annotation on runJob, as that is not supported yet.
+	 */
+	@EventListener({ ContextRefreshedEvent.class })
+	void onContextStarted(ContextRefreshedEvent event)
+	{
+		scheduler.schedule(this::runJob, new CronTrigger(yonaProperties.getBatch().getInactivityEntityCreationCron()));
+	}
+
+	private void runJob()
+	{
+		try
+		{
+			SimpleJobLauncher launcher = new SimpleJobLauncher();
+			launcher.setJobRepository(jobRepository);
+			launcher.setTaskExecutor(new SimpleAsyncTaskExecutor());
+
+			JobParameters jobParameters = new JobParametersBuilder().addDate("runDate", new Date()).toJobParameters();
+			launcher.run(inactivityEntityCreatorJob(), jobParameters);
+		}
+		catch (JobExecutionAlreadyRunningException | JobRestartException | JobInstanceAlreadyCompleteException
+				| JobParametersInvalidException e)
+		{
+			logger.error("Unexpected exception", e);
+			throw YonaException.unexpected(e);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.batch.jobs;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import nu.yona.server.analysis.service.ActivityService;
+import nu.yona.server.analysis.service.AnalysisEngineProxyService;
+import nu.yona.server.analysis.service.IntervalInactivityDTO;
+import nu.yona.server.crypto.PublicKeyUtil;
+import nu.yona.server.messaging.entities.MessageDestination;
+import nu.yona.server.subscriptions.entities.UserAnonymized;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InactivityEntityCreatorBatchJobTests
+{
+	@Mock
+	private ActivityService mockActivityService;
+	@Mock
+	private AnalysisEngineProxyService mockAnalysisEngineProxyService;
+
+	@InjectMocks
+	private final InactivityEntityCreatorBatchJob job = new InactivityEntityCreatorBatchJob();
+
+	private UserAnonymized userAnonEntity;
+
+	@Before
+	public void setUp()
+	{
+		MessageDestination anonMessageDestinationEntity = MessageDestination
+				.createInstance(PublicKeyUtil.generateKeyPair().getPublic());
+		userAnonEntity = UserAnonymized.createInstance(anonMessageDestinationEntity, Collections.emptySet());
+	}
+
+	@Test
+	public void processorSkipsUserWithoutMissingInactivities() throws Exception
+	{
+		when(mockActivityService.getMissingInactivities(any(UUID.class), anyInt())).thenReturn(Collections.emptySet());
+
+		ItemProcessor<UserAnonymized, Set<IntervalInactivityDTO>> processor = job.inactivityEntityCreatorProcessor();
+
+		assertThat(processor.process(userAnonEntity), nullValue());
+	}
+
+	@Test
+	public void processorReturnsMissingInactivitiesOfCurrentAndPreviousWeek() throws Exception
+	{
+		Set<IntervalInactivityDTO> missingInactivities = createMissingInactivities(userAnonEntity.getID());
+		when(mockActivityService.getMissingInactivities(userAnonEntity.getID(), 2)).thenReturn(missingInactivities);
+
+		ItemProcessor<UserAnonymized, Set<IntervalInactivityDTO>> processor = job.inactivityEntityCreatorProcessor();
+
+		assertThat(processor.process(userAnonEntity), equalTo(missingInactivities));
+	}
+
+	@Test
+	public void writerCreatesInactivityEntitiesPerUser() throws Exception
+	{
+		UUID userAnonID1 = UUID.randomUUID();
+		UUID userAnonID2 = UUID.randomUUID();
+		Set<IntervalInactivityDTO> missingInactivities1 = createMissingInactivities(userAnonID1);
+		Set<IntervalInactivityDTO> missingInactivities2 = createMissingInactivities(userAnonID2);
+
+		ItemWriter<Set<IntervalInactivityDTO>> writer = job.inactivityEntityCreatorWriter();
+		writer.write(Arrays.asList(missingInactivities1, missingInactivities2));
+
+		verify(mockAnalysisEngineProxyService, times(1)).createInactivityEntities(userAnonID1, missingInactivities1);
+		verify(mockAnalysisEngineProxyService, times(1)).createInactivityEntities(userAnonID2, missingInactivities2);
+	}
+
+	@Test
+	public void writerContinuesAfterFailureForUser() throws Exception
+	{
+		UUID userAnonID1 = UUID.randomUUID();
+		UUID userAnonID2 = UUID.randomUUID();
+		Set<IntervalInactivityDTO> missingInactivities1 = createMissingInactivities(userAnonID1);
+		Set<IntervalInactivityDTO> missingInactivities2 = createMissingInactivities(userAnonID2);
+		doThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)).when(mockAnalysisEngineProxyService)
+				.createInactivityEntities(userAnonID1, missingInactivities1);
+
+		ItemWriter<Set<IntervalInactivityDTO>> writer = job.inactivityEntityCreatorWriter();
+		writer.write(Arrays.asList(missingInactivities1, missingInactivities2));
+
+		verify(mockAnalysisEngineProxyService, times(1)).createInactivityEntities(userAnonID2, missingInactivities2);
+	}
+
+	private Set<IntervalInactivityDTO> createMissingInactivities(UUID userAnonymizedID)
+	{
+		ZonedDateTime startOfDay = ZonedDateTime.now(ZoneId.of("Europe/Amsterdam")).truncatedTo(ChronoUnit.DAYS);
+		UUID goalID = UUID.randomUUID();
+		return new HashSet<>(Arrays.asList(IntervalInactivityDTO.createWeekInstance(userAnonymizedID, goalID, startOfDay),
+				IntervalInactivityDTO.createDayInstance(userAnonymizedID, goalID, startOfDay)));
+	}
+}
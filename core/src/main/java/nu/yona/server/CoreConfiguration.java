@@ -13,7 +13,6 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.ReloadableResourceBundleMessageSource;
@@ -166,17 +165,19 @@ public class CoreConfiguration extends CachingConfigurerSupport
 		return restTemplate;
 	}
 
-	@Override
-	@Bean
-	public CacheManager cacheManager()
+	/**
+	 * The Hazelcast cluster member of this service. Besides the distributed cache, it provides the distributed locks.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public HazelcastInstance hazelcastInstance()
 	{
-		HazelcastInstance client = Hazelcast.newHazelcastInstance(new Config());
-		return new HazelcastCacheManager(client);
+		return Hazelcast.newHazelcastInstance(new Config());
 	}
 
+	@Override
 	@Bean
-	public CacheManager localCache()
+	public CacheManager cacheManager()
 	{
-		return new ConcurrentMapCacheManager();
+		return new HazelcastCacheManager(hazelcastInstance());
 	}
 }
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.entities;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+import nu.yona.server.entities.EntityWithID;
+import nu.yona.server.entities.RepositoryProvider;
+
+/*
+ * Version of the activity data of a user, for HTTP caching of the activity reports. The ID is the ID of the user anonymized
+ * entity. The version is incremented whenever the activities or goals of the user change.
+ */
+@Entity
+@Table(name = "ACTIVITY_VERSIONS")
+public class ActivityVersion extends EntityWithID
+{
+	public static ActivityVersionRepository getRepository()
+	{
+		return (ActivityVersionRepository) RepositoryProvider.getRepository(ActivityVersion.class, UUID.class);
+	}
+
+	private long version;
+
+	/*
+	 * The time of the last change, in UTC.
+	 */
+	private LocalDateTime lastModified;
+
+	// Default constructor is required for JPA
+	public ActivityVersion()
+	{
+		super(null);
+	}
+
+	private ActivityVersion(UUID userAnonymizedID, long version, LocalDateTime lastModified)
+	{
+		super(userAnonymizedID);
+		this.version = version;
+		this.lastModified = lastModified;
+	}
+
+	public long getVersion()
+	{
+		return version;
+	}
+
+	public LocalDateTime getLastModified()
+	{
+		return lastModified;
+	}
+
+	/**
+	 * Creates the first version of the activity data of a new user.
+	 */
+	public static ActivityVersion createInstance(UUID userAnonymizedID, LocalDateTime lastModified)
+	{
+		return new ActivityVersion(userAnonymizedID, 1, lastModified);
+	}
+}
@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.entities;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ActivityVersionRepository extends CrudRepository<ActivityVersion, UUID>
+{
+	/*
+	 * Increments in the database rather than in memory, so concurrent increments are never lost.
+	 */
+	@Modifying
+	@Query("update ActivityVersion v set v.version = v.version + 1, v.lastModified = :now where v.id = :userAnonymizedID")
+	int increment(@Param("userAnonymizedID") UUID userAnonymizedID, @Param("now") LocalDateTime now);
+
+	@Modifying
+	@Query("delete from ActivityVersion v where v.id = :userAnonymizedID")
+	void deleteForUser(@Param("userAnonymizedID") UUID userAnonymizedID);
+}
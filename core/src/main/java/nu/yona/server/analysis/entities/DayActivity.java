@@ -17,6 +17,7 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 
 import nu.yona.server.entities.RepositoryProvider;
 import nu.yona.server.goals.entities.Goal;
@@ -37,6 +38,14 @@ public class DayActivity extends IntervalActivity
 	private boolean goalAccomplished;
 	private int totalMinutesBeyondGoal;
 
+	/*
+	 * The changes to the aggregates that are not yet rolled up into the week activity.
+	 */
+	@Transient
+	private int[] spreadChange;
+	@Transient
+	private int totalActivityDurationMinutesChange;
+
 	// Default constructor is required for JPA
 	public DayActivity()
 	{
@@ -44,7 +53,7 @@ public class DayActivity extends IntervalActivity
 	}
 
 	private DayActivity(UUID id, UserAnonymized userAnonymized, Goal goal, ZonedDateTime startOfDay, List<Activity> activities,
-			List<Integer> spread, int totalActivityDurationMinutes, boolean goalAccomplished, boolean aggregatesComputed)
+			int[] spread, int totalActivityDurationMinutes, boolean goalAccomplished, boolean aggregatesComputed)
 	{
 		super(id, userAnonymized, goal, startOfDay, spread, totalActivityDurationMinutes, aggregatesComputed);
 
@@ -78,16 +87,144 @@ public class DayActivity extends IntervalActivity
 	public void addActivity(Activity activity)
 	{
 		activity.setActivityCategory(getGoal().getActivityCategory());
+		ensureAggregatesComputed();
+		boolean overlapsOtherActivity = overlapsOtherActivity(activity, activity.getStartTime(), activity.getEndTime());
 		this.activities.add(activity);
+		if (overlapsOtherActivity)
+		{
+			recomputeAggregates();
+			return;
+		}
+
+		int[] spreadChange = getEmptySpread();
+		addToSpread(spreadChange, activity.getStartTime(), activity.getEndTime(), 1);
+		applyAggregatesChange(spreadChange, activity.getDurationMinutes());
+	}
+
+	/**
+	 * Sets the end time of the last activity and updates the aggregates accordingly.
+	 * 
+	 * @param endTime The new end time of the last activity
+	 */
+	public void setLastActivityEndTime(ZonedDateTime endTime)
+	{
+		ensureAggregatesComputed();
+		Activity lastActivity = getLastActivity();
+		ZonedDateTime oldEndTime = lastActivity.getEndTime();
+		int oldDurationMinutes = lastActivity.getDurationMinutes();
+		ZonedDateTime latestEndTime = endTime.isAfter(oldEndTime) ? endTime : oldEndTime;
+		boolean overlapsOtherActivity = overlapsOtherActivity(lastActivity, lastActivity.getStartTime(), latestEndTime);
+		lastActivity.setEndTime(endTime);
+		if (overlapsOtherActivity)
+		{
+			recomputeAggregates();
+			return;
+		}
+
+		int[] spreadChange = getEmptySpread();
+		addToSpread(spreadChange, lastActivity.getStartTime(), endTime, 1);
+		addToSpread(spreadChange, lastActivity.getStartTime(), oldEndTime, -1);
+		applyAggregatesChange(spreadChange, lastActivity.getDurationMinutes() - oldDurationMinutes);
+	}
+
+	/*
+	 * An activity that does not overlap any other one adds its own minutes to the spread (see computeSpread), so only then the
+	 * aggregates can be updated incrementally.
+	 */
+	private boolean overlapsOtherActivity(Activity activity, ZonedDateTime startTime, ZonedDateTime endTime)
+	{
+		return activities.stream().anyMatch(
+				a -> a != activity && a.getStartTime().isBefore(endTime) && startTime.isBefore(a.getEndTime()));
+	}
+
+	/*
+	 * Day activities stored before the aggregates were maintained incrementally compute them once, before the first change.
+	 */
+	private void ensureAggregatesComputed()
+	{
+		if (areAggregatesComputed())
+		{
+			return;
+		}
+		setAggregates(computeSpread(), computeTotalActivityDurationMinutes());
+		updateGoalAggregates();
+	}
+
+	private void recomputeAggregates()
+	{
+		int[] oldSpread = getSpread();
+		int[] spreadChange = computeSpread();
+		for (int i = 0; i < IntervalActivity.SPREAD_COUNT; i++)
+		{
+			spreadChange[i] -= oldSpread[i];
+		}
+		applyAggregatesChange(spreadChange, computeTotalActivityDurationMinutes() - getTotalActivityDurationMinutes());
+	}
+
+	private void applyAggregatesChange(int[] spreadChange, int totalActivityDurationMinutesChange)
+	{
+		addToAggregates(spreadChange, totalActivityDurationMinutesChange);
+		updateGoalAggregates();
+
+		if (this.spreadChange == null)
+		{
+			this.spreadChange = getEmptySpread();
+		}
+		for (int i = 0; i < IntervalActivity.SPREAD_COUNT; i++)
+		{
+			this.spreadChange[i] += spreadChange[i];
+		}
+		this.totalActivityDurationMinutesChange += totalActivityDurationMinutesChange;
+	}
+
+	/**
+	 * Recomputes whether the goal was accomplished on this day, and how far it was exceeded. These depend on the settings of the
+	 * goal, so they need to be recomputed when the goal of this day activity is changed.
+	 */
+	public void recomputeGoalAggregates()
+	{
+		if (areAggregatesComputed())
+		{
+			updateGoalAggregates();
+		}
+		// Else: the goal aggregates are computed on read
+	}
+
+	private void updateGoalAggregates()
+	{
+		goalAccomplished = computeGoalAccomplished();
+		totalMinutesBeyondGoal = computeTotalMinutesBeyondGoal();
+	}
+
+	/**
+	 * @return The change to the spread since the last call to {@link #clearAggregatesChange()}
+	 */
+	public int[] getSpreadChange()
+	{
+		return (spreadChange == null) ? getEmptySpread() : spreadChange.clone();
+	}
+
+	/**
+	 * @return The change to the total activity duration since the last call to {@link #clearAggregatesChange()}
+	 */
+	public int getTotalActivityDurationMinutesChange()
+	{
+		return totalActivityDurationMinutesChange;
+	}
+
+	public void clearAggregatesChange()
+	{
+		spreadChange = null;
+		totalActivityDurationMinutesChange = 0;
 	}
 
 	@Override
-	protected List<Integer> computeSpread()
+	protected int[] computeSpread()
 	{
 		// assumption:
 		// - activities are not always sorted
 		// - activities may overlap
-		List<Integer> result = getEmptySpread();
+		int[] result = getEmptySpread();
 		List<Activity> activitiesSorted = getActivitiesSorted();
 		for (int i = 0; i < activitiesSorted.size(); i++)
 		{
@@ -107,7 +244,7 @@ public class DayActivity extends IntervalActivity
 				i++;
 			}
 
-			addToSpread(result, activity.getStartTime(), activityBlockEndTime);
+			addToSpread(result, activity.getStartTime(), activityBlockEndTime, 1);
 		}
 		return result;
 	}
@@ -119,7 +256,7 @@ public class DayActivity extends IntervalActivity
 		return activitiesSortedOnStartTime;
 	}
 
-	private void addToSpread(List<Integer> spread, ZonedDateTime startTime, ZonedDateTime endTime)
+	private void addToSpread(int[] spread, ZonedDateTime startTime, ZonedDateTime endTime, int sign)
 	{
 		// assumption:
 		// - activities never start before or end after the day
@@ -129,7 +266,7 @@ public class DayActivity extends IntervalActivity
 		{
 			int durationInSpreadItem = getDurationInSpreadItem(startTime, endTime, spreadStartIndex, spreadEndIndex,
 					spreadItemIndex);
-			spread.set(spreadItemIndex, spread.get(spreadItemIndex) + durationInSpreadItem);
+			spread[spreadItemIndex] += sign * durationInSpreadItem;
 		}
 	}
 
@@ -202,6 +339,6 @@ public class DayActivity extends IntervalActivity
 	public static DayActivity createInstance(UserAnonymized userAnonymized, Goal goal, ZonedDateTime startOfDay)
 	{
 		return new DayActivity(UUID.randomUUID(), userAnonymized, goal, startOfDay, new ArrayList<Activity>(),
-				new ArrayList<Integer>(IntervalActivity.SPREAD_COUNT), 0, true, false);
+				getEmptySpread(), 0, true, true);
 	}
 }
@@ -31,10 +31,14 @@ public interface DayActivityRepository extends CrudRepository<DayActivity, UUID>
 	DayActivity findOne(@Param("userAnonymizedID") UUID userAnonymizedID, @Param("date") LocalDate date,
 			@Param("goalID") UUID goalID);
 
-	@Query("select a from DayActivity a where a.userAnonymized.id = :userAnonymizedID and a.date >= :dateFrom and a.date <= :dateUntil order by a.date desc")
+	@Query("select a from DayActivity a join fetch a.goal g join fetch g.activityCategory where a.userAnonymized.id = :userAnonymizedID and a.date >= :dateFrom and a.date <= :dateUntil order by a.date desc")
 	List<DayActivity> findAllActivitiesForUserInIntervalEndIncluded(@Param("userAnonymizedID") UUID userAnonymizedID,
 			@Param("dateFrom") LocalDate dateFrom, @Param("dateUntil") LocalDate dateUntil);
 
+	@Query("select a from DayActivity a join fetch a.goal g join fetch g.activityCategory where a.userAnonymized.id in :userAnonymizedIDs and a.date >= :dateFrom and a.date <= :dateUntil order by a.date desc")
+	List<DayActivity> findAllActivitiesForUsersInIntervalEndIncluded(@Param("userAnonymizedIDs") Set<UUID> userAnonymizedIDs,
+			@Param("dateFrom") LocalDate dateFrom, @Param("dateUntil") LocalDate dateUntil);
+
 	@Query("select a from DayActivity a where a.userAnonymized.id = :userAnonymizedID and a.goal.id in :goalIDs and a.date >= :dateFrom and a.date < :dateUntil order by a.date desc")
 	List<DayActivity> findActivitiesForUserAndGoalsInIntervalEndExcluded(@Param("userAnonymizedID") UUID userAnonymizedID,
 			@Param("goalIDs") Set<UUID> goalIDs, @Param("dateFrom") LocalDate dateFrom, @Param("dateUntil") LocalDate dateUntil);
@@ -7,13 +7,11 @@ package nu.yona.server.analysis.entities;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.time.temporal.TemporalUnit;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
-import javax.persistence.ElementCollection;
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -53,8 +51,12 @@ public abstract class IntervalActivity extends EntityWithID
 	 */
 	private ZonedDateTime startTime;
 
-	@ElementCollection
-	private List<Integer> spread;
+	/*
+	 * The activity minutes per 15 minutes of the day, in a single column. See SpreadConverter.
+	 */
+	@Convert(converter = SpreadConverter.class)
+	@Column(length = SPREAD_COUNT * 2)
+	private int[] spread;
 
 	private int totalActivityDurationMinutes;
 
@@ -66,7 +68,7 @@ public abstract class IntervalActivity extends EntityWithID
 		super(null);
 	}
 
-	protected IntervalActivity(UUID id, UserAnonymized userAnonymized, Goal goal, ZonedDateTime startTime, List<Integer> spread,
+	protected IntervalActivity(UUID id, UserAnonymized userAnonymized, Goal goal, ZonedDateTime startTime, int[] spread,
 			int totalActivityDurationMinutes, boolean aggregatesComputed)
 	{
 		super(id);
@@ -85,7 +87,7 @@ public abstract class IntervalActivity extends EntityWithID
 
 	protected abstract TemporalUnit getTimeUnit();
 
-	protected abstract List<Integer> computeSpread();
+	protected abstract int[] computeSpread();
 
 	protected abstract int computeTotalActivityDurationMinutes();
 
@@ -138,14 +140,15 @@ public abstract class IntervalActivity extends EntityWithID
 
 	public boolean areAggregatesComputed()
 	{
-		return aggregatesComputed;
+		// Activities stored before the spread was kept in a single column have no stored spread
+		return aggregatesComputed && spread != null;
 	}
 
-	public List<Integer> getSpread()
+	public int[] getSpread()
 	{
 		if (areAggregatesComputed())
 		{
-			return Collections.unmodifiableList(spread);
+			return spread.clone();
 		}
 
 		return computeSpread();
@@ -161,8 +164,37 @@ public abstract class IntervalActivity extends EntityWithID
 		return computeTotalActivityDurationMinutes();
 	}
 
-	protected static List<Integer> getEmptySpread()
+	/*
+	 * Replaces the stored aggregates and marks them as computed.
+	 */
+	protected void setAggregates(int[] spread, int totalActivityDurationMinutes)
+	{
+		this.spread = spread.clone();
+		this.totalActivityDurationMinutes = totalActivityDurationMinutes;
+		this.aggregatesComputed = true;
+	}
+
+	/*
+	 * Adds the given changes to the stored aggregates. Only to be called when the aggregates are computed. The spread is replaced
+	 * rather than updated in place, so JPA reliably detects the change.
+	 */
+	protected void addToAggregates(int[] spreadChange, int totalActivityDurationMinutesChange)
+	{
+		if (!areAggregatesComputed())
+		{
+			throw new IllegalStateException("Aggregates of " + getClass().getSimpleName() + " " + getID() + " are not computed");
+		}
+		int[] newSpread = spread.clone();
+		for (int i = 0; i < SPREAD_COUNT; i++)
+		{
+			newSpread[i] += spreadChange[i];
+		}
+		spread = newSpread;
+		totalActivityDurationMinutes += totalActivityDurationMinutesChange;
+	}
+
+	protected static int[] getEmptySpread()
 	{
-		return new ArrayList<Integer>(Collections.nCopies(96, 0));
+		return new int[SPREAD_COUNT];
 	}
 }
@@ -4,12 +4,19 @@
  *******************************************************************************/
 package nu.yona.server.analysis.entities;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface IntervalActivityRepository extends CrudRepository<IntervalActivity, UUID>
 {
+	@Query("select a from IntervalActivity a join fetch a.goal g join fetch g.activityCategory where type(a) in (WeekActivity, DayActivity) and a.userAnonymized.id = :userAnonymizedID and a.date >= :dateFrom and a.date <= :dateUntil")
+	List<IntervalActivity> findAllActivitiesForUserInIntervalEndIncluded(@Param("userAnonymizedID") UUID userAnonymizedID,
+			@Param("dateFrom") LocalDate dateFrom, @Param("dateUntil") LocalDate dateUntil);
 }
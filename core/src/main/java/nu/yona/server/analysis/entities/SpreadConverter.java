@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.entities;
+
+import java.nio.ByteBuffer;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a spread in a single column, two bytes per spread item. The minutes in a spread item of a week are at most 7 * 15, so
+ * this leaves ample room.
+ */
+@Converter
+public class SpreadConverter implements AttributeConverter<int[], byte[]>
+{
+	private static final int BYTES_PER_ITEM = 2;
+
+	@Override
+	public byte[] convertToDatabaseColumn(int[] attribute)
+	{
+		if (attribute == null)
+		{
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(attribute.length * BYTES_PER_ITEM);
+		for (int minutes : attribute)
+		{
+			buffer.putShort((short) minutes);
+		}
+		return buffer.array();
+	}
+
+	@Override
+	public int[] convertToEntityAttribute(byte[] dbData)
+	{
+		if (dbData == null)
+		{
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(dbData);
+		int[] spread = new int[dbData.length / BYTES_PER_ITEM];
+		for (int i = 0; i < spread.length; i++)
+		{
+			spread[i] = buffer.getShort();
+		}
+		return spread;
+	}
+}
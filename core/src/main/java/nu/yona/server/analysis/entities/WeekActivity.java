@@ -7,9 +7,9 @@ package nu.yona.server.analysis.entities;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import javax.persistence.Entity;
 import javax.persistence.Table;
@@ -33,7 +33,7 @@ public class WeekActivity extends IntervalActivity
 		super();
 	}
 
-	private WeekActivity(UUID id, UserAnonymized userAnonymized, Goal goal, ZonedDateTime startOfWeek, List<Integer> spread,
+	private WeekActivity(UUID id, UserAnonymized userAnonymized, Goal goal, ZonedDateTime startOfWeek, int[] spread,
 			int totalActivityDurationMinutes, boolean aggregatesComputed)
 	{
 		super(id, userAnonymized, goal, startOfWeek, spread, totalActivityDurationMinutes, aggregatesComputed);
@@ -66,33 +66,87 @@ public class WeekActivity extends IntervalActivity
 		return dayActivities;
 	}
 
+	/**
+	 * Rolls the aggregate changes of the given day activity up into the aggregates of this week. If the aggregates of this week
+	 * were not computed yet, they are computed from the stored day activities of the week and the given one.
+	 * 
+	 * @param dayActivity A changed day activity of this week
+	 */
+	public void applyDayActivityChange(DayActivity dayActivity)
+	{
+		if (areAggregatesComputed())
+		{
+			addToAggregates(dayActivity.getSpreadChange(), dayActivity.getTotalActivityDurationMinutesChange());
+		}
+		else
+		{
+			// The stored version of the changed day activity is outdated, so take the one at hand
+			List<DayActivity> dayActivities = getDayActivities().stream().filter(d -> !d.getID().equals(dayActivity.getID()))
+					.collect(Collectors.toList());
+			dayActivities.add(dayActivity);
+			setAggregates(computeSpread(dayActivities), computeTotalActivityDurationMinutes(dayActivities));
+		}
+		dayActivity.clearAggregatesChange();
+	}
+
 	@Override
-	protected List<Integer> computeSpread()
+	protected int[] computeSpread()
+	{
+		return computeSpread(getDayActivities());
+	}
+
+	private int[] computeSpread(List<DayActivity> dayActivities)
 	{
-		return getDayActivities().stream().map(dayActivity -> dayActivity.getSpread()).reduce(getEmptySpread(),
-				(one, other) -> sumSpread(one, other));
+		int[] result = getEmptySpread();
+		dayActivities.forEach(dayActivity -> addToSpread(result, dayActivity.getSpread()));
+		return result;
 	}
 
-	private List<Integer> sumSpread(List<Integer> one, List<Integer> other)
+	private static void addToSpread(int[] spread, int[] dayActivitySpread)
 	{
-		List<Integer> result = new ArrayList<Integer>(IntervalActivity.SPREAD_COUNT);
 		for (int i = 0; i < IntervalActivity.SPREAD_COUNT; i++)
 		{
-			result.add(one.get(i) + other.get(i));
+			spread[i] += dayActivitySpread[i];
 		}
-		return result;
 	}
 
 	@Override
 	protected int computeTotalActivityDurationMinutes()
 	{
-		return getDayActivities().stream().map(dayActivity -> dayActivity.getTotalActivityDurationMinutes()).reduce(0,
+		return computeTotalActivityDurationMinutes(getDayActivities());
+	}
+
+	private int computeTotalActivityDurationMinutes(List<DayActivity> dayActivities)
+	{
+		return dayActivities.stream().map(dayActivity -> dayActivity.getTotalActivityDurationMinutes()).reduce(0,
 				Integer::sum);
 	}
 
+	/**
+	 * @param startOfDay The start of a day, in the time zone of the user
+	 * @return The start of the week that contains the given day. Weeks start on Sunday.
+	 */
+	public static ZonedDateTime getStartOfWeek(ZonedDateTime startOfDay)
+	{
+		switch (startOfDay.getDayOfWeek())
+		{
+			case SUNDAY:
+				// take as the first day of week
+				return startOfDay;
+			default:
+				// MONDAY=1, etc.
+				return startOfDay.minusDays(startOfDay.getDayOfWeek().getValue());
+		}
+	}
+
+	/**
+	 * Creates a new week activity. A new week does not have any day activities yet, so its aggregates are empty and hence
+	 * computed. The changes of the day activities added later on are rolled up incrementally through
+	 * {@link #applyDayActivityChange(DayActivity)}.
+	 */
 	public static WeekActivity createInstance(UserAnonymized userAnonymized, Goal goal, ZonedDateTime startOfWeek)
 	{
 		return new WeekActivity(UUID.randomUUID(), userAnonymized, goal, startOfWeek,
-				new ArrayList<Integer>(IntervalActivity.SPREAD_COUNT), 0, false);
+				getEmptySpread(), 0, true);
 	}
 }
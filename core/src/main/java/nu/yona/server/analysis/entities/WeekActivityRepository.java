@@ -29,10 +29,6 @@ public interface WeekActivityRepository extends CrudRepository<WeekActivity, UUI
 	WeekActivity findOne(@Param("userAnonymizedID") UUID userAnonymizedID, @Param("date") LocalDate date,
 			@Param("goalID") UUID goalID);
 
-	@Query("select a from WeekActivity a where a.userAnonymized.id = :userAnonymizedID and a.date >= :dateFrom and a.date <= :dateUntil order by a.startTime desc")
-	Set<WeekActivity> findAll(@Param("userAnonymizedID") UUID userAnonymizedID, @Param("dateFrom") LocalDate dateFrom,
-			@Param("dateUntil") LocalDate dateUntil);
-
 	@Modifying
 	@Query("delete from WeekActivity a where a.userAnonymized.id = :userAnonymizedID")
 	void deleteAllForUser(@Param("userAnonymizedID") UUID userAnonymizedID);
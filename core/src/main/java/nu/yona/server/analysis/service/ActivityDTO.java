@@ -4,6 +4,7 @@
  *******************************************************************************/
 package nu.yona.server.analysis.service;
 
+import java.io.Serializable;
 import java.time.ZonedDateTime;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -15,8 +16,10 @@ import nu.yona.server.Constants;
 import nu.yona.server.analysis.entities.Activity;
 
 @JsonRootName("activity")
-public class ActivityDTO
+public class ActivityDTO implements Serializable
 {
+	private static final long serialVersionUID = -5542916446440446717L;
+
 	private ZonedDateTime startTime;
 	private ZonedDateTime endTime;
 
@@ -12,6 +12,7 @@ import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -20,14 +21,16 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
-import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -35,6 +38,7 @@ import nu.yona.server.analysis.entities.ActivityCommentMessage;
 import nu.yona.server.analysis.entities.DayActivity;
 import nu.yona.server.analysis.entities.DayActivityRepository;
 import nu.yona.server.analysis.entities.IntervalActivity;
+import nu.yona.server.analysis.entities.IntervalActivityRepository;
 import nu.yona.server.analysis.entities.WeekActivity;
 import nu.yona.server.analysis.entities.WeekActivityRepository;
 import nu.yona.server.analysis.service.IntervalActivityDTO.LevelOfDetail;
@@ -76,6 +80,9 @@ public class ActivityService
 	@Autowired(required = false)
 	private DayActivityRepository dayActivityRepository;
 
+	@Autowired(required = false)
+	private IntervalActivityRepository intervalActivityRepository;
+
 	@Autowired
 	private YonaProperties yonaProperties;
 
@@ -85,34 +92,48 @@ public class ActivityService
 	@Transactional
 	public Page<WeekActivityOverviewDTO> getUserWeekActivityOverviews(UUID userID, Pageable pageable)
 	{
-		return executeAndCreateInactivityEntries(
-				mia -> getWeekActivityOverviews(userService.getUserAnonymizedID(userID), pageable, mia));
+		return getWeekActivityOverviews(userService.getUserAnonymizedID(userID), pageable, new HashSet<>());
 	}
 
 	@Transactional
 	public Page<WeekActivityOverviewDTO> getBuddyWeekActivityOverviews(UUID buddyID, Pageable pageable)
 	{
-		return executeAndCreateInactivityEntries(
-				mia -> getWeekActivityOverviews(getBuddyUserAnonymizedID(buddyID), pageable, mia));
+		return getWeekActivityOverviews(getBuddyUserAnonymizedID(buddyID), pageable, new HashSet<>());
 	}
 
-	private <T> T executeAndCreateInactivityEntries(Function<Set<IntervalInactivityDTO>, T> executor)
+	/*
+	 * Alternative to the paged variants above, for clients that page by date. The page ends at the week before the given date, or
+	 * at the current week if no date is given. The pages do not shift when a new week starts, and the overviews are not counted.
+	 */
+	@Transactional
+	public Slice<WeekActivityOverviewDTO> getUserWeekActivityOverviews(UUID userID, Optional<LocalDate> before, int pageSize)
 	{
-		Set<IntervalInactivityDTO> missingInactivities = new HashSet<>();
-		// Execute the method that finds missing inactivities
-		T retVal = executor.apply(missingInactivities);
-
-		createInactivityEntities(missingInactivities);
+		return getWeekActivityOverviews(userService.getUserAnonymizedID(userID), before, pageSize, new HashSet<>());
+	}
 
-		return retVal;
+	@Transactional
+	public Slice<WeekActivityOverviewDTO> getBuddyWeekActivityOverviews(UUID buddyID, Optional<LocalDate> before, int pageSize)
+	{
+		return getWeekActivityOverviews(getBuddyUserAnonymizedID(buddyID), before, pageSize, new HashSet<>());
 	}
 
-	private void createInactivityEntities(Set<IntervalInactivityDTO> missingInactivities)
+	@Transactional
+	public long countWeekActivityOverviews(UUID userAnonymizedID)
 	{
-		Map<UUID, Set<IntervalInactivityDTO>> activitiesByUserAnonymizedID = missingInactivities.stream()
-				.collect(Collectors.groupingBy(mia -> mia.getUserAnonymizedID().get(), Collectors.toSet()));
+		return getTotalPageableItems(userAnonymizedService.getUserAnonymized(userAnonymizedID), ChronoUnit.WEEKS);
+	}
 
-		activitiesByUserAnonymizedID.forEach((u, mias) -> analysisEngineProxyService.createInactivityEntities(u, mias));
+	/*
+	 * Reading the activities only adds the missing inactivities to the returned DTOs, so it does not write anything. They are
+	 * persisted in the background by the batch service, through this method.
+	 */
+	@Transactional
+	public Set<IntervalInactivityDTO> getMissingInactivities(UUID userAnonymizedID, int numberOfWeeks)
+	{
+		Set<IntervalInactivityDTO> missingInactivities = new HashSet<>();
+		// The week overviews include the inactivities of the days in those weeks
+		getWeekActivityOverviews(userAnonymizedID, new PageRequest(0, numberOfWeeks), missingInactivities);
+		return missingInactivities;
 	}
 
 	private Page<WeekActivityOverviewDTO> getWeekActivityOverviews(UUID userAnonymizedID, Pageable pageable,
@@ -120,44 +141,130 @@ public class ActivityService
 	{
 		UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
 		Interval interval = getInterval(getCurrentWeekDate(userAnonymized), pageable, ChronoUnit.WEEKS);
+		return new PageImpl<WeekActivityOverviewDTO>(getWeekActivityOverviews(userAnonymized, interval, missingInactivities),
+				pageable, getTotalPageableItems(userAnonymized, ChronoUnit.WEEKS));
+	}
+
+	private Slice<WeekActivityOverviewDTO> getWeekActivityOverviews(UUID userAnonymizedID, Optional<LocalDate> before,
+			int pageSize, Set<IntervalInactivityDTO> missingInactivities)
+	{
+		UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
+		LocalDate currentWeekDate = getCurrentWeekDate(userAnonymized);
+		Interval interval = getInterval(currentWeekDate, before.map(d -> getWeekDate(d)), pageSize, ChronoUnit.WEEKS);
+		return new SliceImpl<WeekActivityOverviewDTO>(
+				getWeekActivityOverviews(userAnonymized, interval, missingInactivities), new PageRequest(0, pageSize),
+				hasOlderIntervals(userAnonymized, currentWeekDate, interval, ChronoUnit.WEEKS));
+	}
 
-		Map<LocalDate, Set<WeekActivity>> weekActivityEntitiesByLocalDate = getWeekActivitiesGroupedByDate(userAnonymizedID,
-				interval);
+	private List<WeekActivityOverviewDTO> getWeekActivityOverviews(UserAnonymizedDTO userAnonymized, Interval interval,
+			Set<IntervalInactivityDTO> missingInactivities)
+	{
+		List<IntervalActivity> intervalActivityEntities = getWeekAndDayActivities(userAnonymized.getID(), interval);
+		Map<LocalDate, Set<WeekActivity>> weekActivityEntitiesByLocalDate = intervalActivityEntities.stream()
+				.filter(a -> a instanceof WeekActivity).map(a -> (WeekActivity) a)
+				.collect(Collectors.groupingBy(a -> a.getDate(), Collectors.toSet()));
+		Map<LocalDate, List<DayActivity>> dayActivityEntitiesByWeekDate = intervalActivityEntities.stream()
+				.filter(a -> a instanceof DayActivity).map(a -> (DayActivity) a)
+				.collect(Collectors.groupingBy(a -> getWeekDate(a.getDate())));
 		Map<ZonedDateTime, Set<WeekActivity>> weekActivityEntitiesByZonedDate = mapToZonedDateTime(
 				weekActivityEntitiesByLocalDate);
+		Map<UUID, Set<UUID>> goalIDsIncludingHistoryItems = getGoalIDsIncludingHistoryItems(userAnonymized,
+				weekActivityEntitiesByLocalDate);
 		Map<ZonedDateTime, Set<WeekActivityDTO>> weekActivityDTOsByZonedDate = mapWeekActivitiesToDTOs(
-				weekActivityEntitiesByZonedDate);
+				weekActivityEntitiesByZonedDate, dayActivityEntitiesByWeekDate, goalIDsIncludingHistoryItems);
 		addMissingInactivity(weekActivityDTOsByZonedDate, interval, ChronoUnit.WEEKS, userAnonymized,
-				(goal, startOfWeek) -> createAndSaveWeekInactivity(userAnonymized, goal, startOfWeek, LevelOfDetail.WeekOverview,
+				(goal, startOfWeek) -> createWeekInactivity(userAnonymized, goal, startOfWeek, LevelOfDetail.WeekOverview,
 						missingInactivities),
-				(g, wa) -> createAndSaveInactivityDays(userAnonymized,
+				(g, wa) -> createInactivityDays(userAnonymized,
 						userAnonymized.getGoalsForActivityCategory(g.getActivityCategory()), wa, missingInactivities));
-		return new PageImpl<WeekActivityOverviewDTO>(
-				weekActivityDTOsByZonedDate.entrySet().stream().sorted((e1, e2) -> e2.getKey().compareTo(e1.getKey()))
-						.map(e -> WeekActivityOverviewDTO.createInstance(e.getKey(), e.getValue())).collect(Collectors.toList()),
-				pageable, getTotalPageableItems(userAnonymized, ChronoUnit.WEEKS));
+		return weekActivityDTOsByZonedDate.entrySet().stream().sorted((e1, e2) -> e2.getKey().compareTo(e1.getKey()))
+				.map(e -> WeekActivityOverviewDTO.createInstance(e.getKey(), e.getValue())).collect(Collectors.toList());
 	}
 
 	private Map<ZonedDateTime, Set<WeekActivityDTO>> mapWeekActivitiesToDTOs(
-			Map<ZonedDateTime, Set<WeekActivity>> weekActivityEntitiesByLocalDate)
+			Map<ZonedDateTime, Set<WeekActivity>> weekActivityEntitiesByLocalDate,
+			Map<LocalDate, List<DayActivity>> dayActivityEntitiesByWeekDate, Map<UUID, Set<UUID>> goalIDsIncludingHistoryItems)
 	{
 		return weekActivityEntitiesByLocalDate.entrySet().stream()
-				.collect(Collectors.toMap(e -> e.getKey(), e -> mapWeekActivitiesToDTOs(e.getValue())));
+				.collect(Collectors.toMap(e -> e.getKey(),
+						e -> mapWeekActivitiesToDTOs(e.getValue(),
+								dayActivityEntitiesByWeekDate.getOrDefault(e.getKey().toLocalDate(), Collections.emptyList()),
+								goalIDsIncludingHistoryItems)));
 	}
 
-	private Set<WeekActivityDTO> mapWeekActivitiesToDTOs(Set<WeekActivity> weekActivityEntities)
+	private Set<WeekActivityDTO> mapWeekActivitiesToDTOs(Set<WeekActivity> weekActivityEntities,
+			List<DayActivity> dayActivityEntitiesOfWeek, Map<UUID, Set<UUID>> goalIDsIncludingHistoryItems)
 	{
-		return weekActivityEntities.stream().map(e -> WeekActivityDTO.createInstance(e, LevelOfDetail.WeekOverview))
+		return weekActivityEntities.stream()
+				.map(e -> WeekActivityDTO.createInstance(e,
+						getDayActivitiesOfWeek(e, dayActivityEntitiesOfWeek, goalIDsIncludingHistoryItems),
+						LevelOfDetail.WeekOverview))
 				.collect(Collectors.toSet());
 	}
 
-	private WeekActivityDTO createAndSaveWeekInactivity(UserAnonymizedDTO userAnonymized, Goal goal, ZonedDateTime startOfWeek,
+	/*
+	 * Loads the week activities of the interval and the day activities of those weeks, with their goals, in one range query.
+	 */
+	private List<IntervalActivity> getWeekAndDayActivities(UUID userAnonymizedID, Interval interval)
+	{
+		return intervalActivityRepository.findAllActivitiesForUserInIntervalEndIncluded(userAnonymizedID, interval.startDate,
+				interval.endDate.plusDays(6));
+	}
+
+	/*
+	 * Determines the IDs of the goals of the week activities in the page, including the IDs of their history items.
+	 */
+	private Map<UUID, Set<UUID>> getGoalIDsIncludingHistoryItems(UserAnonymizedDTO userAnonymized,
+			Map<LocalDate, Set<WeekActivity>> weekActivityEntitiesByLocalDate)
+	{
+		Map<UUID, Set<UUID>> goalIDsIncludingHistoryItems = new HashMap<>();
+		weekActivityEntitiesByLocalDate.values().stream().flatMap(Set::stream).map(WeekActivity::getGoal)
+				.forEach(g -> goalIDsIncludingHistoryItems.computeIfAbsent(g.getID(),
+						id -> getGoalIDsIncludingHistoryItems(userAnonymized, g)));
+		return goalIDsIncludingHistoryItems;
+	}
+
+	/*
+	 * The goals of the user anonymized include the history items, so the history is determined from these rather than by walking
+	 * the lazily loaded previous versions of the goal entity. A user has one goal per activity category, and every update of a
+	 * goal ends the previous version, so the history items of a goal are the goals of its category that ended no later than it.
+	 */
+	private Set<UUID> getGoalIDsIncludingHistoryItems(UserAnonymizedDTO userAnonymized, Goal goal)
+	{
+		Optional<GoalDTO> goalDTO = userAnonymized.getGoals().stream().filter(g -> g.getID().equals(goal.getID())).findAny();
+		if (!goalDTO.isPresent())
+		{
+			// The goal was added after the user anonymized was cached
+			return goal.getIDsIncludingHistoryItems();
+		}
+		Optional<LocalDateTime> endTime = goalDTO.get().getEndTime();
+		return userAnonymized.getGoals().stream()
+				.filter(g -> g.getActivityCategoryID().equals(goal.getActivityCategory().getID()))
+				.filter(g -> !endTime.isPresent() || g.getEndTime().map(e -> !e.isAfter(endTime.get())).orElse(false))
+				.map(GoalDTO::getID).collect(Collectors.toSet());
+	}
+
+	/*
+	 * Selects the day activities that belong to the given week activity from the day activities that were loaded for the entire
+	 * page. Like WeekActivity.getDayActivities(), this matches on the goal of the week activity and its history items. Matching
+	 * on the activity category is not equivalent: when a goal is updated, the history item keeps the week activity, so the week
+	 * would then also collect the day activities of the new goal.
+	 */
+	private List<DayActivity> getDayActivitiesOfWeek(WeekActivity weekActivity, List<DayActivity> dayActivityEntitiesOfWeek,
+			Map<UUID, Set<UUID>> goalIDsIncludingHistoryItems)
+	{
+		Set<UUID> goalIDs = goalIDsIncludingHistoryItems.get(weekActivity.getGoal().getID());
+		return dayActivityEntitiesOfWeek.stream().filter(a -> goalIDs.contains(a.getGoal().getID()))
+				.collect(Collectors.toList());
+	}
+
+	private WeekActivityDTO createWeekInactivity(UserAnonymizedDTO userAnonymized, Goal goal, ZonedDateTime startOfWeek,
 			LevelOfDetail levelOfDetail, Set<IntervalInactivityDTO> missingInactivities)
 	{
 		return WeekActivityDTO.createInstanceInactivity(userAnonymized, goal, startOfWeek, levelOfDetail, missingInactivities);
 	}
 
-	private void createAndSaveInactivityDays(UserAnonymizedDTO userAnonymized, Set<GoalDTO> goals, WeekActivityDTO weekActivity,
+	private void createInactivityDays(UserAnonymizedDTO userAnonymized, Set<GoalDTO> goals, WeekActivityDTO weekActivity,
 			Set<IntervalInactivityDTO> missingInactivities)
 	{
 		weekActivity.createRequiredInactivityDays(userAnonymized, goals, LevelOfDetail.WeekOverview, missingInactivities);
@@ -189,18 +296,30 @@ public class ActivityService
 		return intervalActivityEntitiesByZonedDate;
 	}
 
-	private Map<LocalDate, Set<WeekActivity>> getWeekActivitiesGroupedByDate(UUID userAnonymizedID, Interval interval)
+	@Transactional
+	public Page<DayActivityOverviewDTO<DayActivityDTO>> getUserDayActivityOverviews(UUID userID, Pageable pageable)
+	{
+		return getDayActivityOverviews(userService.getUserAnonymizedID(userID), pageable, new HashSet<>());
+	}
+
+	@Transactional
+	public Slice<DayActivityOverviewDTO<DayActivityDTO>> getUserDayActivityOverviews(UUID userID, Optional<LocalDate> before,
+			int pageSize)
 	{
-		Set<WeekActivity> weekActivityEntities = weekActivityRepository.findAll(userAnonymizedID, interval.startDate,
-				interval.endDate);
-		return weekActivityEntities.stream().collect(Collectors.groupingBy(a -> a.getDate(), Collectors.toSet()));
+		return getDayActivityOverviews(userService.getUserAnonymizedID(userID), before, pageSize, new HashSet<>());
 	}
 
 	@Transactional
-	public Page<DayActivityOverviewDTO<DayActivityDTO>> getUserDayActivityOverviews(UUID userID, Pageable pageable)
+	public Slice<DayActivityOverviewDTO<DayActivityDTO>> getBuddyDayActivityOverviews(UUID buddyID, Optional<LocalDate> before,
+			int pageSize)
 	{
-		return executeAndCreateInactivityEntries(
-				mia -> getDayActivityOverviews(userService.getUserAnonymizedID(userID), pageable, mia));
+		return getDayActivityOverviews(getBuddyUserAnonymizedID(buddyID), before, pageSize, new HashSet<>());
+	}
+
+	@Transactional
+	public long countDayActivityOverviews(UUID userAnonymizedID)
+	{
+		return getTotalPageableItems(userAnonymizedService.getUserAnonymized(userAnonymizedID), ChronoUnit.DAYS);
 	}
 
 	@Transactional
@@ -220,18 +339,26 @@ public class ActivityService
 		Set<BuddyDTO> buddies = buddyService.getBuddiesOfUserThatAcceptedSending(userID);
 		Set<UUID> userAnonymizedIDs = buddies.stream().map(b -> getBuddyUserAnonymizedID(b)).collect(Collectors.toSet());
 		userAnonymizedIDs.add(userAnonymizedID);
-		Map<ZonedDateTime, Set<DayActivityDTO>> dayActivityDTOsByZonedDate = executeAndCreateInactivityEntries(
-				mia -> getDayActivitiesForUserAnonymizedIDsInInterval(userAnonymizedIDs, interval, mia));
+		Map<ZonedDateTime, Set<DayActivityDTO>> dayActivityDTOsByZonedDate = getDayActivitiesForUserAnonymizedIDsInInterval(
+				userAnonymizedIDs, interval, new HashSet<>());
 		List<DayActivityOverviewDTO<DayActivityWithBuddiesDTO>> dayActivityOverviews = dayActivityEntitiesToOverviewsUserWithBuddies(
 				dayActivityDTOsByZonedDate);
 		return new PageImpl<DayActivityOverviewDTO<DayActivityWithBuddiesDTO>>(dayActivityOverviews, pageable,
 				getTotalPageableItems(userAnonymized, ChronoUnit.DAYS));
 	}
 
+	/*
+	 * Loads the day activities of the user and all buddies in one query, rather than one query per user.
+	 */
 	private Map<ZonedDateTime, Set<DayActivityDTO>> getDayActivitiesForUserAnonymizedIDsInInterval(Set<UUID> userAnonymizedIDs,
 			Interval interval, Set<IntervalInactivityDTO> mia)
 	{
-		return userAnonymizedIDs.stream().map(id -> getDayActivities(userAnonymizedService.getUserAnonymized(id), interval, mia))
+		Map<UUID, List<DayActivity>> dayActivityEntitiesByUserAnonymizedID = dayActivityRepository
+				.findAllActivitiesForUsersInIntervalEndIncluded(userAnonymizedIDs, interval.startDate, interval.endDate).stream()
+				.collect(Collectors.groupingBy(a -> a.getUserAnonymized().getID()));
+		return userAnonymizedIDs.stream()
+				.map(id -> getDayActivities(userAnonymizedService.getUserAnonymized(id), interval,
+						dayActivityEntitiesByUserAnonymizedID.getOrDefault(id, Collections.emptyList()), mia))
 				.map(Map::entrySet).flatMap(Collection::stream)
 				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> {
 					Set<DayActivityDTO> allActivities = new HashSet<>(a);
@@ -243,8 +370,7 @@ public class ActivityService
 	@Transactional
 	public Page<DayActivityOverviewDTO<DayActivityDTO>> getBuddyDayActivityOverviews(UUID buddyID, Pageable pageable)
 	{
-		return executeAndCreateInactivityEntries(
-				mia -> getDayActivityOverviews(getBuddyUserAnonymizedID(buddyID), pageable, mia));
+		return getDayActivityOverviews(getBuddyUserAnonymizedID(buddyID), pageable, new HashSet<>());
 	}
 
 	private UUID getBuddyUserAnonymizedID(UUID buddyID)
@@ -272,16 +398,37 @@ public class ActivityService
 				getTotalPageableItems(userAnonymized, ChronoUnit.DAYS));
 	}
 
+	private Slice<DayActivityOverviewDTO<DayActivityDTO>> getDayActivityOverviews(UUID userAnonymizedID,
+			Optional<LocalDate> before, int pageSize, Set<IntervalInactivityDTO> missingInactivities)
+	{
+		UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
+		LocalDate currentDayDate = getCurrentDayDate(userAnonymized);
+		Interval interval = getInterval(currentDayDate, before, pageSize, ChronoUnit.DAYS);
+
+		Map<ZonedDateTime, Set<DayActivityDTO>> dayActivitiesByZonedDate = getDayActivities(userAnonymized, interval,
+				missingInactivities);
+		return new SliceImpl<DayActivityOverviewDTO<DayActivityDTO>>(dayActivityDTOsToOverviews(dayActivitiesByZonedDate),
+				new PageRequest(0, pageSize), hasOlderIntervals(userAnonymized, currentDayDate, interval, ChronoUnit.DAYS));
+	}
+
 	private Map<ZonedDateTime, Set<DayActivityDTO>> getDayActivities(UserAnonymizedDTO userAnonymized, Interval interval,
 			Set<IntervalInactivityDTO> missingInactivities)
 	{
-		Map<LocalDate, Set<DayActivity>> dayActivityEntitiesByLocalDate = getDayActivitiesGroupedByDate(userAnonymized.getID(),
-				interval);
+		return getDayActivities(userAnonymized, interval, dayActivityRepository
+				.findAllActivitiesForUserInIntervalEndIncluded(userAnonymized.getID(), interval.startDate, interval.endDate),
+				missingInactivities);
+	}
+
+	private Map<ZonedDateTime, Set<DayActivityDTO>> getDayActivities(UserAnonymizedDTO userAnonymized, Interval interval,
+			List<DayActivity> dayActivityEntities, Set<IntervalInactivityDTO> missingInactivities)
+	{
+		Map<LocalDate, Set<DayActivity>> dayActivityEntitiesByLocalDate = dayActivityEntities.stream()
+				.collect(Collectors.groupingBy(a -> a.getDate(), Collectors.toSet()));
 		Map<ZonedDateTime, Set<DayActivity>> dayActivityEntitiesByZonedDate = mapToZonedDateTime(dayActivityEntitiesByLocalDate);
 		Map<ZonedDateTime, Set<DayActivityDTO>> dayActivityDTOsByZonedDate = mapDayActivitiesToDTOs(
 				dayActivityEntitiesByZonedDate);
 		addMissingInactivity(dayActivityDTOsByZonedDate, interval, ChronoUnit.DAYS, userAnonymized,
-				(goal, startOfDay) -> createAndSaveDayInactivity(userAnonymized, goal, startOfDay, LevelOfDetail.DayOverview,
+				(goal, startOfDay) -> createDayInactivity(userAnonymized, goal, startOfDay, LevelOfDetail.DayOverview,
 						missingInactivities),
 				(g, a) -> {
 				});
@@ -301,7 +448,7 @@ public class ActivityService
 				.collect(Collectors.toSet());
 	}
 
-	private DayActivityDTO createAndSaveDayInactivity(UserAnonymizedDTO userAnonymized, Goal goal, ZonedDateTime startOfDay,
+	private DayActivityDTO createDayInactivity(UserAnonymizedDTO userAnonymized, Goal goal, ZonedDateTime startOfDay,
 			LevelOfDetail levelOfDetail, Set<IntervalInactivityDTO> missingInactivities)
 	{
 		return DayActivityDTO.createInstanceInactivity(userAnonymized, GoalDTO.createInstance(goal), startOfDay, levelOfDetail,
@@ -327,13 +474,6 @@ public class ActivityService
 		return dayActivityOverviews;
 	}
 
-	private Map<LocalDate, Set<DayActivity>> getDayActivitiesGroupedByDate(UUID userAnonymizedID, Interval interval)
-	{
-		List<DayActivity> dayActivityEntities = dayActivityRepository
-				.findAllActivitiesForUserInIntervalEndIncluded(userAnonymizedID, interval.startDate, interval.endDate);
-		return dayActivityEntities.stream().collect(Collectors.groupingBy(a -> a.getDate(), Collectors.toSet()));
-	}
-
 	private Interval getInterval(LocalDate currentUnitDate, Pageable pageable, ChronoUnit timeUnit)
 	{
 		LocalDate endDate = currentUnitDate.minus(pageable.getOffset(), timeUnit);
@@ -341,17 +481,36 @@ public class ActivityService
 		return new Interval(startDate, endDate);
 	}
 
+	private Interval getInterval(LocalDate currentUnitDate, Optional<LocalDate> before, int pageSize, ChronoUnit timeUnit)
+	{
+		LocalDate endDate = before.map(d -> d.minus(1, timeUnit)).filter(d -> d.isBefore(currentUnitDate))
+				.orElse(currentUnitDate);
+		LocalDate startDate = endDate.minus(pageSize - 1, timeUnit);
+		return new Interval(startDate, endDate);
+	}
+
+	private boolean hasOlderIntervals(UserAnonymizedDTO userAnonymized, LocalDate currentUnitDate, Interval interval,
+			ChronoUnit timeUnit)
+	{
+		LocalDate oldestUnitDate = currentUnitDate.minus(getTotalPageableItems(userAnonymized, timeUnit) - 1, timeUnit);
+		return interval.startDate.isAfter(oldestUnitDate);
+	}
+
 	private LocalDate getCurrentWeekDate(UserAnonymizedDTO userAnonymized)
 	{
-		LocalDate currentDayDate = getCurrentDayDate(userAnonymized);
-		switch (currentDayDate.getDayOfWeek())
+		return getWeekDate(getCurrentDayDate(userAnonymized));
+	}
+
+	private LocalDate getWeekDate(LocalDate dayDate)
+	{
+		switch (dayDate.getDayOfWeek())
 		{
 			case SUNDAY:
 				// take as the first day of week
-				return currentDayDate;
+				return dayDate;
 			default:
 				// MONDAY=1, etc.
-				return currentDayDate.minusDays(currentDayDate.getDayOfWeek().getValue());
+				return dayDate.minusDays(dayDate.getDayOfWeek().getValue());
 		}
 	}
 
@@ -364,26 +523,31 @@ public class ActivityService
 			Interval interval, ChronoUnit timeUnit, UserAnonymizedDTO userAnonymized,
 			BiFunction<Goal, ZonedDateTime, T> inactivityEntitySupplier, BiConsumer<Goal, T> existingEntityInactivityCompletor)
 	{
+		Map<ZonedDateTime, Set<GoalDTO>> activeGoalsByDate = new HashMap<>();
 		for (LocalDate date = interval.startDate; date.isBefore(interval.endDate)
 				|| date.isEqual(interval.endDate); date = date.plus(1, timeUnit))
 		{
 			ZonedDateTime dateAtStartOfInterval = date.atStartOfDay(ZoneId.of(userAnonymized.getTimeZoneId()));
 
 			Set<GoalDTO> activeGoals = getActiveGoals(userAnonymized, dateAtStartOfInterval, timeUnit);
-			if (activeGoals.isEmpty())
+			if (!activeGoals.isEmpty())
 			{
-				continue;
+				activeGoalsByDate.put(dateAtStartOfInterval, activeGoals);
 			}
-
+		}
+		// Load the goal entities of the entire interval at once, rather than per goal and date
+		Map<UUID, Goal> activeGoalEntities = goalService.getGoalEntitiesForUserAnonymizedID(userAnonymized.getID(),
+				activeGoalsByDate.values().stream().flatMap(Set::stream).map(GoalDTO::getID).collect(Collectors.toSet()));
+		activeGoalsByDate.forEach((dateAtStartOfInterval, activeGoals) -> {
 			if (!activityEntitiesByDate.containsKey(dateAtStartOfInterval))
 			{
 				activityEntitiesByDate.put(dateAtStartOfInterval, new HashSet<T>());
 			}
 			Set<T> activityEntitiesAtDate = activityEntitiesByDate.get(dateAtStartOfInterval);
-			activeGoals.stream().map(g -> goalService.getGoalEntityForUserAnonymizedID(userAnonymized.getID(), g.getID()))
+			activeGoals.stream().map(g -> activeGoalEntities.get(g.getID()))
 					.forEach(g -> addMissingInactivity(g, dateAtStartOfInterval, activityEntitiesAtDate, userAnonymized,
 							inactivityEntitySupplier, existingEntityInactivityCompletor));
-		}
+		});
 	}
 
 	private Set<GoalDTO> getActiveGoals(UserAnonymizedDTO userAnonymized, ZonedDateTime dateAtStartOfInterval,
@@ -419,16 +583,14 @@ public class ActivityService
 	@Transactional
 	public WeekActivityDTO getUserWeekActivityDetail(UUID userID, LocalDate date, UUID goalID)
 	{
-		return executeAndCreateInactivityEntries(
-				mia -> getWeekActivityDetail(userID, userService.getUserAnonymizedID(userID), date, goalID, mia));
+		return getWeekActivityDetail(userID, userService.getUserAnonymizedID(userID), date, goalID, new HashSet<>());
 	}
 
 	@Transactional
 	public WeekActivityDTO getBuddyWeekActivityDetail(UUID buddyID, LocalDate date, UUID goalID)
 	{
 		BuddyDTO buddy = buddyService.getBuddy(buddyID);
-		return executeAndCreateInactivityEntries(
-				mia -> getWeekActivityDetail(buddy.getUser().getID(), getBuddyUserAnonymizedID(buddy), date, goalID, mia));
+		return getWeekActivityDetail(buddy.getUser().getID(), getBuddyUserAnonymizedID(buddy), date, goalID, new HashSet<>());
 	}
 
 	private WeekActivityDTO getWeekActivityDetail(UUID userID, UUID userAnonymizedID, LocalDate date, UUID goalID,
@@ -439,7 +601,7 @@ public class ActivityService
 		if (weekActivityEntity == null)
 		{
 			return getMissingInactivity(userID, date, goalID, userAnonymized, ChronoUnit.WEEKS,
-					(goal, startOfWeek) -> createAndSaveWeekInactivity(userAnonymized, goal, startOfWeek,
+					(goal, startOfWeek) -> createWeekInactivity(userAnonymized, goal, startOfWeek,
 							LevelOfDetail.WeekDetail, missingInactivities));
 		}
 		WeekActivityDTO weekActivityDTO = WeekActivityDTO.createInstance(weekActivityEntity, LevelOfDetail.WeekDetail);
@@ -470,16 +632,14 @@ public class ActivityService
 	@Transactional
 	public DayActivityDTO getUserDayActivityDetail(UUID userID, LocalDate date, UUID goalID)
 	{
-		return executeAndCreateInactivityEntries(
-				mia -> getDayActivityDetail(userID, userService.getUserAnonymizedID(userID), date, goalID, mia));
+		return getDayActivityDetail(userID, userService.getUserAnonymizedID(userID), date, goalID, new HashSet<>());
 	}
 
 	@Transactional
 	public DayActivityDTO getBuddyDayActivityDetail(UUID buddyID, LocalDate date, UUID goalID)
 	{
 		BuddyDTO buddy = buddyService.getBuddy(buddyID);
-		return executeAndCreateInactivityEntries(
-				mia -> getDayActivityDetail(buddy.getUser().getID(), getBuddyUserAnonymizedID(buddy), date, goalID, mia));
+		return getDayActivityDetail(buddy.getUser().getID(), getBuddyUserAnonymizedID(buddy), date, goalID, new HashSet<>());
 	}
 
 	private DayActivityDTO getDayActivityDetail(UUID userID, UUID userAnonymizedID, LocalDate date, UUID goalID,
@@ -490,7 +650,7 @@ public class ActivityService
 		if (dayActivityEntity == null)
 		{
 			return getMissingInactivity(userID, date, goalID, userAnonymized, ChronoUnit.DAYS,
-					(goal, startOfDay) -> createAndSaveDayInactivity(userAnonymized, goal, startOfDay, LevelOfDetail.DayDetail,
+					(goal, startOfDay) -> createDayInactivity(userAnonymized, goal, startOfDay, LevelOfDetail.DayDetail,
 							missingInactivities));
 		}
 		return DayActivityDTO.createInstance(dayActivityEntity, LevelOfDetail.DayDetail);
@@ -536,7 +696,7 @@ public class ActivityService
 			PostPutActivityCommentMessageDTO message)
 	{
 		ActivitySupplier activitySupplier = (b, d, g) -> dayActivityRepository.findOne(getBuddyUserAnonymizedID(b), d, g);
-		return addMessageToActivity(userID, buddyID, date, goalID, activitySupplier, message);
+		return addMessageToActivity(userID, buddyID, date, goalID, ChronoUnit.DAYS, activitySupplier, message);
 	}
 
 	@Transactional
@@ -544,11 +704,11 @@ public class ActivityService
 			PostPutActivityCommentMessageDTO message)
 	{
 		ActivitySupplier activitySupplier = (b, d, g) -> weekActivityRepository.findOne(getBuddyUserAnonymizedID(b), d, g);
-		return addMessageToActivity(userID, buddyID, date, goalID, activitySupplier, message);
+		return addMessageToActivity(userID, buddyID, date, goalID, ChronoUnit.WEEKS, activitySupplier, message);
 	}
 
 	@Transactional
-	public MessageDTO addMessageToActivity(UUID userID, UUID buddyID, LocalDate date, UUID goalID,
+	public MessageDTO addMessageToActivity(UUID userID, UUID buddyID, LocalDate date, UUID goalID, ChronoUnit timeUnit,
 			ActivitySupplier activitySupplier, PostPutActivityCommentMessageDTO message)
 	{
 		UserDTO sendingUser = userService.getPrivateUser(userID);
@@ -556,13 +716,37 @@ public class ActivityService
 		IntervalActivity dayActivityEntity = activitySupplier.get(buddy, date, goalID);
 		if (dayActivityEntity == null)
 		{
-			throw ActivityServiceException.buddyDayActivityNotFound(userID, buddyID, date, goalID);
+			dayActivityEntity = createInactivityEntity(userID, buddy, date, goalID, timeUnit, activitySupplier);
 		}
 
 		return sendMessagePair(sendingUser, getBuddyUserAnonymizedID(buddy), dayActivityEntity.getID(), Optional.empty(),
 				Optional.empty(), message.getMessage());
 	}
 
+	/*
+	 * Inactivities are only added to the activity DTOs on read and persisted in the background, while such a DTO does offer to
+	 * comment on it. Therefore, the inactivity entity is created here on demand. The analysis engine creates it while holding
+	 * the lock of the user, so this cannot conflict with the analysis of new activities.
+	 */
+	private IntervalActivity createInactivityEntity(UUID userID, BuddyDTO buddy, LocalDate date, UUID goalID,
+			ChronoUnit timeUnit, ActivitySupplier activitySupplier)
+	{
+		UUID userAnonymizedID = getBuddyUserAnonymizedID(buddy);
+		UserAnonymizedDTO userAnonymized = userAnonymizedService.getUserAnonymized(userAnonymizedID);
+		IntervalInactivityDTO inactivity = getMissingInactivity(userID, date, goalID, userAnonymized, timeUnit,
+				(goal, startOfInterval) -> (timeUnit == ChronoUnit.WEEKS)
+						? IntervalInactivityDTO.createWeekInstance(userAnonymizedID, goal.getID(), startOfInterval)
+						: IntervalInactivityDTO.createDayInstance(userAnonymizedID, goal.getID(), startOfInterval));
+		analysisEngineProxyService.createInactivityEntities(userAnonymizedID, Collections.singleton(inactivity));
+
+		IntervalActivity inactivityEntity = activitySupplier.get(buddy, date, goalID);
+		if (inactivityEntity == null)
+		{
+			throw ActivityServiceException.buddyDayActivityNotFound(userID, buddy.getID(), date, goalID);
+		}
+		return inactivityEntity;
+	}
+
 	private MessageDTO sendMessagePair(UserDTO sendingUser, UUID targetUserAnonymizedID, UUID activityID,
 			Optional<ActivityCommentMessage> repliedMessageOfSelf, Optional<ActivityCommentMessage> repliedMessageOfBuddy,
 			String message)
@@ -600,7 +784,7 @@ public class ActivityService
 				isSentItem, message, repliedMessageID);
 	}
 
-	private <T extends IntervalActivityDTO> T getMissingInactivity(UUID userID, LocalDate date, UUID goalID,
+	private <T> T getMissingInactivity(UUID userID, LocalDate date, UUID goalID,
 			UserAnonymizedDTO userAnonymized, ChronoUnit timeUnit, BiFunction<Goal, ZonedDateTime, T> inactivityEntitySupplier)
 	{
 		Goal goal = goalService.getGoalEntityForUserAnonymizedID(userAnonymized.getID(), goalID);
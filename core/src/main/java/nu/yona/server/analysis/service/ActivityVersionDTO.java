@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+
+import nu.yona.server.analysis.entities.ActivityVersion;
+import nu.yona.server.util.TimeUtil;
+
+public class ActivityVersionDTO
+{
+	private static final ActivityVersionDTO INITIAL_VERSION = new ActivityVersionDTO(0, Optional.empty());
+
+	private final long version;
+	private final Optional<LocalDateTime> lastModified;
+
+	private ActivityVersionDTO(long version, Optional<LocalDateTime> lastModified)
+	{
+		this.version = version;
+		this.lastModified = lastModified;
+	}
+
+	public long getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * @return The time of the last change in UTC, or empty if nothing changed since the versioning was introduced
+	 */
+	public Optional<LocalDateTime> getLastModified()
+	{
+		return lastModified;
+	}
+
+	/**
+	 * Returns the entity tag of the activity reports of this version. The reports also change when a new day starts for the user,
+	 * so the entity tag includes the current date of the user.
+	 * 
+	 * @param today The current date in the time zone of the user
+	 * @return The quoted entity tag
+	 */
+	public String getETag(LocalDate today)
+	{
+		return "\"" + version + "-" + today + "\"";
+	}
+
+	/**
+	 * Returns the time the activity reports of this version were last modified. That is the time of the last change, but not
+	 * before the start of the current day of the user, as the reports change at that moment too.
+	 * 
+	 * @param zone The time zone of the user
+	 * @param today The current date in the time zone of the user
+	 * @return The time of the last modification, in milliseconds since the epoch
+	 */
+	public long getLastModifiedEpochMillis(ZoneId zone, LocalDate today)
+	{
+		long startOfToday = today.atStartOfDay(zone).toInstant().toEpochMilli();
+		return lastModified.map(lm -> Math.max(TimeUtil.toUtcZonedDateTime(lm).toInstant().toEpochMilli(), startOfToday))
+				.orElse(startOfToday);
+	}
+
+	static ActivityVersionDTO createInstance(ActivityVersion activityVersion)
+	{
+		return new ActivityVersionDTO(activityVersion.getVersion(), Optional.of(activityVersion.getLastModified()));
+	}
+
+	static ActivityVersionDTO createInitialInstance()
+	{
+		return INITIAL_VERSION;
+	}
+}
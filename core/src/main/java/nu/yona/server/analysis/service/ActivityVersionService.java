@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import nu.yona.server.analysis.entities.ActivityVersion;
+import nu.yona.server.analysis.entities.ActivityVersionRepository;
+import nu.yona.server.util.TimeUtil;
+
+/*
+ * Keeps track of the version of the activity data of each user, so the activity reports can be served with HTTP validators. The
+ * version is stored in the database and incremented in the transaction that changes the activities or goals, so it cannot get
+ * out of sync with the data it describes. It is created along with the user anonymized entity, so concurrent increments never
+ * race to create it.
+ */
+@Service
+public class ActivityVersionService
+{
+	@Autowired(required = false)
+	private ActivityVersionRepository activityVersionRepository;
+
+	@Transactional
+	public ActivityVersionDTO getVersion(UUID userAnonymizedID)
+	{
+		ActivityVersion activityVersion = activityVersionRepository.findOne(userAnonymizedID);
+		return (activityVersion == null) ? ActivityVersionDTO.createInitialInstance()
+				: ActivityVersionDTO.createInstance(activityVersion);
+	}
+
+	@Transactional
+	public void incrementVersion(UUID userAnonymizedID)
+	{
+		if (activityVersionRepository.increment(userAnonymizedID, TimeUtil.utcNow()) == 0)
+		{
+			throw new IllegalStateException("No activity version for user anonymized " + userAnonymizedID);
+		}
+	}
+}
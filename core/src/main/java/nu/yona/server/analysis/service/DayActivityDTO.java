@@ -12,9 +12,7 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -44,7 +42,7 @@ public class DayActivityDTO extends IntervalActivityDTO
 	private final UUID activityCategoryID;
 
 	private DayActivityDTO(UUID goalID, UUID activityCategoryID, ZonedDateTime startTime, boolean shouldSerializeDate,
-			List<Integer> spread, int totalActivityDurationMinutes, boolean goalAccomplished, int totalMinutesBeyondGoal,
+			int[] spread, int totalActivityDurationMinutes, boolean goalAccomplished, int totalMinutesBeyondGoal,
 			Set<MessageDTO> messages, boolean hasPrevious, boolean hasNext)
 	{
 		super(goalID, startTime, shouldSerializeDate, spread, Optional.of(totalActivityDurationMinutes), hasPrevious, hasNext);
@@ -113,19 +111,19 @@ public class DayActivityDTO extends IntervalActivityDTO
 	{
 		missingInactivities.add(IntervalInactivityDTO.createDayInstance(userAnonymized.getID(), goal.getID(), startTime));
 		return new DayActivityDTO(goal.getID(), goal.getActivityCategoryID(), startTime, levelOfDetail == LevelOfDetail.DayDetail,
-				includeSpread(goal, levelOfDetail) ? createInactiveSpread() : Collections.emptyList(), 0, true, 0,
+				includeSpread(goal, levelOfDetail) ? createInactiveSpread() : NO_SPREAD, 0, true, 0,
 				Collections.emptySet(), IntervalActivityDTO.hasPrevious(goal, startTime, ChronoUnit.DAYS),
 				IntervalActivity.hasNext(startTime, ChronoUnit.DAYS));
 	}
 
-	static ArrayList<Integer> createInactiveSpread()
+	static int[] createInactiveSpread()
 	{
-		return new ArrayList<Integer>(Collections.nCopies(96, 0));
+		return new int[IntervalActivity.SPREAD_COUNT];
 	}
 
-	private static List<Integer> getSpread(DayActivity dayActivity, LevelOfDetail levelOfDetail)
+	private static int[] getSpread(DayActivity dayActivity, LevelOfDetail levelOfDetail)
 	{
-		return includeSpread(dayActivity.getGoal(), levelOfDetail) ? dayActivity.getSpread() : Collections.emptyList();
+		return includeSpread(dayActivity.getGoal(), levelOfDetail) ? dayActivity.getSpread() : NO_SPREAD;
 	}
 
 	private static Set<MessageDTO> getMessages(DayActivity dayActivity)
@@ -9,7 +9,6 @@ package nu.yona.server.analysis.service;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -53,11 +52,11 @@ public class DayActivityWithBuddiesDTO
 	{
 		private final boolean goalAccomplished;
 		private final int totalMinutesBeyondGoal;
-		private final List<Integer> spread;
+		private final int[] spread;
 		private final int totalActivityDurationMinutes;
 		private final UUID goalID;
 
-		private ActivityForOneUser(UUID goalID, List<Integer> spread, int totalActivityDurationMinutes, boolean goalAccomplished,
+		private ActivityForOneUser(UUID goalID, int[] spread, int totalActivityDurationMinutes, boolean goalAccomplished,
 				int totalMinutesBeyondGoal)
 		{
 			this.goalID = goalID;
@@ -90,7 +89,7 @@ public class DayActivityWithBuddiesDTO
 		}
 
 		@JsonInclude(Include.NON_EMPTY)
-		public List<Integer> getSpread()
+		public int[] getSpread()
 		{
 			return spread;
 		}
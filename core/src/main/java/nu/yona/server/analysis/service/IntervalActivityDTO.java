@@ -7,7 +7,6 @@ package nu.yona.server.analysis.service;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.time.temporal.TemporalUnit;
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,12 +29,14 @@ public abstract class IntervalActivityDTO
 	private final ZonedDateTime startTime;
 	private final boolean shouldSerializeDate;
 
-	private final List<Integer> spread;
+	static final int[] NO_SPREAD = new int[0];
+
+	private final int[] spread;
 	private final Optional<Integer> totalActivityDurationMinutes;
 
 	private final boolean hasPrevious, hasNext;
 
-	protected IntervalActivityDTO(UUID goalID, ZonedDateTime startTime, boolean shouldSerializeDate, List<Integer> spread,
+	protected IntervalActivityDTO(UUID goalID, ZonedDateTime startTime, boolean shouldSerializeDate, int[] spread,
 			Optional<Integer> totalActivityDurationMinutes, boolean hasPrevious, boolean hasNext)
 	{
 		this.goalID = goalID;
@@ -140,7 +141,7 @@ public abstract class IntervalActivityDTO
 	}
 
 	@JsonInclude(Include.NON_EMPTY)
-	public List<Integer> getSpread()
+	public int[] getSpread()
 	{
 		return spread;
 	}
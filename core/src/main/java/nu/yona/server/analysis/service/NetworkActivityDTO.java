@@ -51,6 +51,7 @@ public class NetworkActivityDTO
 		return url;
 	}
 
+	@JsonFormat(pattern = Constants.ISO_DATE_PATTERN)
 	public Optional<ZonedDateTime> getEventTime()
 	{
 		return eventTime;
@@ -18,7 +18,6 @@ import java.time.temporal.ChronoUnit;
 import java.time.temporal.IsoFields;
 import java.time.temporal.TemporalUnit;
 import java.time.temporal.WeekFields;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +30,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonRootName;
 
 import nu.yona.server.Translator;
+import nu.yona.server.analysis.entities.DayActivity;
 import nu.yona.server.analysis.entities.IntervalActivity;
 import nu.yona.server.analysis.entities.WeekActivity;
 import nu.yona.server.goals.entities.Goal;
@@ -47,7 +47,7 @@ public class WeekActivityDTO extends IntervalActivityDTO
 
 	private final Map<DayOfWeek, DayActivityDTO> dayActivities;
 
-	private WeekActivityDTO(UUID goalID, ZonedDateTime startTime, boolean shouldSerializeDate, List<Integer> spread,
+	private WeekActivityDTO(UUID goalID, ZonedDateTime startTime, boolean shouldSerializeDate, int[] spread,
 			Optional<Integer> totalActivityDurationMinutes, Map<DayOfWeek, DayActivityDTO> dayActivities, boolean hasPrevious,
 			boolean hasNext)
 	{
@@ -88,14 +88,22 @@ public class WeekActivityDTO extends IntervalActivityDTO
 	}
 
 	static WeekActivityDTO createInstance(WeekActivity weekActivity, LevelOfDetail levelOfDetail)
+	{
+		return createInstance(weekActivity, weekActivity.getDayActivities(), levelOfDetail);
+	}
+
+	/**
+	 * Creates the DTO from day activities that were loaded by the caller, e.g. in one query for multiple weeks. These must be the
+	 * day activities of the goal of the week activity and its history items, like {@link WeekActivity#getDayActivities()}.
+	 */
+	static WeekActivityDTO createInstance(WeekActivity weekActivity, List<DayActivity> dayActivities, LevelOfDetail levelOfDetail)
 	{
 		boolean includeDetail = levelOfDetail == LevelOfDetail.WeekDetail;
 		return new WeekActivityDTO(weekActivity.getGoal().getID(), weekActivity.getStartTime(), includeDetail,
-				includeDetail ? weekActivity.getSpread() : Collections.emptyList(),
+				includeDetail ? weekActivity.getSpread() : NO_SPREAD,
 				includeDetail ? Optional.of(weekActivity.getTotalActivityDurationMinutes()) : Optional.empty(),
-				weekActivity.getDayActivities().stream()
-						.collect(Collectors.toMap(dayActivity -> dayActivity.getDate().getDayOfWeek(),
-								dayActivity -> DayActivityDTO.createInstance(dayActivity, levelOfDetail))),
+				dayActivities.stream().collect(Collectors.toMap(dayActivity -> dayActivity.getDate().getDayOfWeek(),
+						dayActivity -> DayActivityDTO.createInstance(dayActivity, levelOfDetail))),
 				weekActivity.hasPrevious(), weekActivity.hasNext());
 	}
 
@@ -105,7 +113,7 @@ public class WeekActivityDTO extends IntervalActivityDTO
 		missingInactivities.add(IntervalInactivityDTO.createWeekInstance(userAnonymized.getID(), goal.getID(), startOfWeek));
 		boolean includeDetail = levelOfDetail == LevelOfDetail.WeekDetail;
 		WeekActivityDTO weekActivity = new WeekActivityDTO(goal.getID(), startOfWeek, includeDetail,
-				includeDetail ? DayActivityDTO.createInactiveSpread() : Collections.emptyList(),
+				includeDetail ? DayActivityDTO.createInactiveSpread() : NO_SPREAD,
 				includeDetail ? Optional.of(0) : Optional.empty(), new HashMap<>(),
 				IntervalActivity.hasPrevious(goal, startOfWeek, ChronoUnit.WEEKS),
 				IntervalActivity.hasNext(startOfWeek, ChronoUnit.WEEKS));
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.PublicKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Thread-confined pool of cipher instances. Looking up a cipher implementation and initializing it for a key is relatively
+ * expensive, while the same few transformations are used over and over, often with the same key, e.g. for all fields of a page of
+ * messages. A borrowed cipher is used by one thread only, and must be closed to return it to the pool. Ciphers that are borrowed
+ * while another one is still in use (e.g. in nested crypto sessions) are separate instances.
+ * <p>
+ * A cipher holds on to the key it was initialized with, and the idle ciphers live as long as the (pooled) thread. Therefore, only
+ * ciphers that were last initialized with a public key return to the pool. A cipher initialized with a secret or private key,
+ * e.g. the key of a crypto session or the private key of a user, is discarded when it is closed.
+ */
+final class CipherPool
+{
+	private static final int MAX_IDLE_CIPHERS_PER_TRANSFORMATION = 4;
+	private static final String GCM_MODE = "/GCM/";
+	private static final int GCM_TAG_LENGTH_BITS = 128;
+
+	private static final ThreadLocal<Map<String, Deque<PooledCipher>>> idleCiphers = ThreadLocal.withInitial(HashMap::new);
+
+	private CipherPool()
+	{
+	}
+
+	static PooledCipher borrow(String transformation) throws GeneralSecurityException
+	{
+		PooledCipher cipher = getIdleCiphers(transformation).pollFirst();
+		return (cipher == null) ? new PooledCipher(transformation, Cipher.getInstance(transformation)) : cipher;
+	}
+
+	private static Deque<PooledCipher> getIdleCiphers(String transformation)
+	{
+		return idleCiphers.get().computeIfAbsent(transformation, t -> new ArrayDeque<>(MAX_IDLE_CIPHERS_PER_TRANSFORMATION));
+	}
+
+	static class PooledCipher implements AutoCloseable
+	{
+		private final String transformation;
+		private final Cipher cipher;
+		private int mode;
+		private Key key;
+		private Optional<byte[]> initializationVector = Optional.empty();
+
+		private PooledCipher(String transformation, Cipher cipher)
+		{
+			this.transformation = transformation;
+			this.cipher = cipher;
+		}
+
+		/**
+		 * Returns the cipher, initialized for the given mode and key. The initialization is skipped if the cipher is already
+		 * initialized that way, as doFinal resets the cipher to its initialized state.
+		 */
+		Cipher getCipher(int mode, Key key) throws InvalidKeyException
+		{
+			if (!isInitializedFor(mode, key, Optional.empty()))
+			{
+				resetInitialization();
+				cipher.init(mode, key);
+				setInitialization(mode, key, Optional.empty());
+			}
+			return cipher;
+		}
+
+		Cipher getCipher(int mode, Key key, byte[] initializationVector)
+				throws InvalidKeyException, InvalidAlgorithmParameterException
+		{
+			if (!isInitializedFor(mode, key, Optional.of(initializationVector)))
+			{
+				resetInitialization();
+				cipher.init(mode, key, createParameterSpec(initializationVector));
+				setInitialization(mode, key, Optional.of(initializationVector.clone()));
+			}
+			return cipher;
+		}
+
+		/**
+		 * Returns the cipher, initialized for encryption with the given key and a new random initialization vector.
+		 */
+		Cipher getCipherWithNewInitializationVector(Key key) throws InvalidKeyException
+		{
+			resetInitialization();
+			cipher.init(Cipher.ENCRYPT_MODE, key);
+			setInitialization(Cipher.ENCRYPT_MODE, key, Optional.of(cipher.getIV()));
+			return cipher;
+		}
+
+		/**
+		 * Returns the cipher as it was last initialized.
+		 */
+		Cipher getCurrentCipher()
+		{
+			if (key == null)
+			{
+				throw new IllegalStateException("Cipher " + transformation + " is not initialized");
+			}
+			return cipher;
+		}
+
+		/**
+		 * Finishes an operation with the current initialization. If it fails, the cipher is initialized again, so a partially
+		 * processed input does not affect the next operation.
+		 */
+		byte[] doFinal(byte[] input) throws IllegalBlockSizeException, BadPaddingException
+		{
+			return doFinal(input, 0, input.length);
+		}
+
+		byte[] doFinal(byte[] input, int offset, int length) throws IllegalBlockSizeException, BadPaddingException
+		{
+			Cipher initializedCipher = getCurrentCipher();
+			try
+			{
+				return initializedCipher.doFinal(input, offset, length);
+			}
+			catch (IllegalBlockSizeException | BadPaddingException | RuntimeException e)
+			{
+				reinitialize();
+				throw e;
+			}
+		}
+
+		private void reinitialize()
+		{
+			int currentMode = mode;
+			Key currentKey = key;
+			Optional<byte[]> currentInitializationVector = initializationVector;
+			resetInitialization();
+			try
+			{
+				if (currentInitializationVector.isPresent())
+				{
+					cipher.init(currentMode, currentKey, createParameterSpec(currentInitializationVector.get()));
+				}
+				else
+				{
+					cipher.init(currentMode, currentKey);
+				}
+				setInitialization(currentMode, currentKey, currentInitializationVector);
+			}
+			catch (InvalidKeyException | InvalidAlgorithmParameterException e)
+			{
+				// Leave the cipher uninitialized, so it is initialized again before it is used
+			}
+		}
+
+		private boolean isInitializedFor(int mode, Key key, Optional<byte[]> initializationVector)
+		{
+			return this.key != null && this.mode == mode && this.key.equals(key)
+					&& this.initializationVector.isPresent() == initializationVector.isPresent()
+					&& (!initializationVector.isPresent()
+							|| Arrays.equals(this.initializationVector.get(), initializationVector.get()));
+		}
+
+		private AlgorithmParameterSpec createParameterSpec(byte[] initializationVector)
+		{
+			return transformation.contains(GCM_MODE) ? new GCMParameterSpec(GCM_TAG_LENGTH_BITS, initializationVector)
+					: new IvParameterSpec(initializationVector);
+		}
+
+		private void resetInitialization()
+		{
+			// Initialization might fail halfway, so do not rely on the previous one until the new one succeeded
+			key = null;
+			initializationVector = Optional.empty();
+		}
+
+		private void setInitialization(int mode, Key key, Optional<byte[]> initializationVector)
+		{
+			this.mode = mode;
+			this.key = key;
+			this.initializationVector = initializationVector;
+		}
+
+		@Override
+		public void close()
+		{
+			if (!(key instanceof PublicKey))
+			{
+				// Do not keep secret key material around in an idle cipher
+				resetInitialization();
+				return;
+			}
+			Deque<PooledCipher> idleCiphersOfTransformation = getIdleCiphers(transformation);
+			if (idleCiphersOfTransformation.size() < MAX_IDLE_CIPHERS_PER_TRANSFORMATION)
+			{
+				idleCiphersOfTransformation.addFirst(this);
+			}
+		}
+	}
+}
@@ -4,19 +4,17 @@
  *******************************************************************************/
 package nu.yona.server.crypto;
 
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.InvalidParameterSpecException;
-import java.security.spec.KeySpec;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Optional;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.IvParameterSpec;
@@ -26,6 +24,7 @@ import javax.crypto.spec.SecretKeySpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import nu.yona.server.crypto.CipherPool.PooledCipher;
 import nu.yona.server.exceptions.YonaException;
 
 public class CryptoSession implements AutoCloseable
@@ -46,15 +45,23 @@ public class CryptoSession implements AutoCloseable
 	private static final byte[] SALT = "0123456789012345".getBytes();
 	private static final int INITIALIZATION_VECTOR_LENGTH = 16;
 	private static ThreadLocal<CryptoSession> threadLocal = new ThreadLocal<>();
-	private Cipher encryptionCipher;
+	/*
+	 * The apps send the password with every request, so most sessions can reuse a recently derived key. The time to live is short,
+	 * to limit how long key material stays in memory after the app stops using it.
+	 */
+	private static final int SECRET_KEY_CACHE_SIZE = 10000;
+	private static final Duration SECRET_KEY_CACHE_TIME_TO_LIVE = Duration.ofMinutes(5);
+	private static final SecretKeyCache secretKeyCache = new SecretKeyCache(SECRET_KEY_CACHE_SIZE,
+			SECRET_KEY_CACHE_TIME_TO_LIVE);
+	private Optional<PooledCipher> encryptionCipher = Optional.empty();
 	private Optional<byte[]> initializationVector = Optional.empty();
 	private final SecretKey secretKey;
 	private CryptoSession previousCryptoSession;
-	private Cipher decryptionCipher;
+	private Optional<PooledCipher> decryptionCipher = Optional.empty();
 
 	private CryptoSession(String password, CryptoSession previousCryptoSession)
 	{
-		secretKey = getSecretKey(password.toCharArray());
+		secretKey = secretKeyCache.getSecretKey(password, CryptoSession::deriveSecretKey);
 		this.previousCryptoSession = previousCryptoSession;
 		threadLocal.set(this);
 	}
@@ -63,6 +70,8 @@ public class CryptoSession implements AutoCloseable
 	public void close()
 	{
 		logger.debug("Closing crypto session on thread {}", Thread.currentThread());
+		encryptionCipher.ifPresent(PooledCipher::close);
+		decryptionCipher.ifPresent(PooledCipher::close);
 		threadLocal.set(previousCryptoSession);
 	}
 
@@ -83,30 +92,44 @@ public class CryptoSession implements AutoCloseable
 		}
 	}
 
-	private Cipher getEncryptionCipher()
+	private PooledCipher getEncryptionCipher()
 	{
 		try
 		{
-			if (encryptionCipher == null)
+			if (!encryptionCipher.isPresent())
 			{
-				encryptionCipher = Cipher.getInstance(CIPHER_TYPE);
-				if (!isInitializationVectorSet())
-				{
-					encryptionCipher.init(Cipher.ENCRYPT_MODE, secretKey);
-				}
-				else
-				{
-					encryptionCipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(initializationVector.get()));
-				}
+				encryptionCipher = Optional.of(borrowCipher(Cipher.ENCRYPT_MODE, initializationVector));
 			}
-			return encryptionCipher;
+			return encryptionCipher.get();
 		}
-		catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException e)
+		catch (GeneralSecurityException e)
 		{
 			throw CryptoException.gettingCipher(CIPHER_TYPE);
 		}
 	}
 
+	private PooledCipher borrowCipher(int mode, Optional<byte[]> initializationVector) throws GeneralSecurityException
+	{
+		PooledCipher cipher = CipherPool.borrow(CIPHER_TYPE);
+		try
+		{
+			if (initializationVector.isPresent())
+			{
+				cipher.getCipher(mode, secretKey, initializationVector.get());
+			}
+			else
+			{
+				cipher.getCipherWithNewInitializationVector(secretKey);
+			}
+			return cipher;
+		}
+		catch (GeneralSecurityException e)
+		{
+			cipher.close();
+			throw e;
+		}
+	}
+
 	private static CryptoSession start(String password)
 	{
 		logger.debug("Starting crypto session on thread {}", Thread.currentThread());
@@ -147,13 +170,14 @@ public class CryptoSession implements AutoCloseable
 		}
 	}
 
-	private SecretKey getSecretKey(char[] password)
+	static SecretKey deriveSecretKey(String password)
 	{
 		try
 		{
 			SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-			KeySpec spec = new PBEKeySpec(password, SALT, 65536, 128);
+			PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), SALT, 65536, 128);
 			SecretKey tmp = factory.generateSecret(spec);
+			spec.clearPassword();
 			return new SecretKeySpec(tmp.getEncoded(), "AES");
 		}
 		catch (NoSuchAlgorithmException | InvalidKeySpecException e)
@@ -166,8 +190,8 @@ public class CryptoSession implements AutoCloseable
 	{
 		try
 		{
-			byte[] newInitializationVector = getEncryptionCipher().getParameters().getParameterSpec(IvParameterSpec.class)
-					.getIV();
+			byte[] newInitializationVector = getEncryptionCipher().getCurrentCipher().getParameters()
+					.getParameterSpec(IvParameterSpec.class).getIV();
 			setInitializationVector(newInitializationVector);
 			return getInitializationVector();
 		}
@@ -214,22 +238,21 @@ public class CryptoSession implements AutoCloseable
 		return initializationVector.isPresent();
 	}
 
-	private Cipher getDecryptionCipher()
+	private PooledCipher getDecryptionCipher()
 	{
 		try
 		{
-			if (decryptionCipher == null)
+			if (!decryptionCipher.isPresent())
 			{
 				if (!isInitializationVectorSet())
 				{
 					throw CryptoException.initializationVectorNotSet();
 				}
-				decryptionCipher = Cipher.getInstance(CIPHER_TYPE);
-				decryptionCipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(getInitializationVector()));
+				decryptionCipher = Optional.of(borrowCipher(Cipher.DECRYPT_MODE, Optional.of(getInitializationVector())));
 			}
-			return decryptionCipher;
+			return decryptionCipher.get();
 		}
-		catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException e)
+		catch (GeneralSecurityException e)
 		{
 			throw CryptoException.gettingCipher(CIPHER_TYPE);
 		}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Decrypts the supported types by converting them from bytes, so the implementations only need to decrypt a byte array.
+ */
+abstract class DecryptorBase implements Decryptor
+{
+	@Override
+	public String decryptString(byte[] ciphertext)
+	{
+		return (ciphertext == null) ? null : new String(decrypt(ciphertext), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public UUID decryptUUID(byte[] ciphertext)
+	{
+		return (ciphertext == null) ? null : UUID.fromString(decryptString(ciphertext));
+	}
+
+	@Override
+	public long decryptLong(byte[] ciphertext)
+	{
+		return Long.parseLong(decryptString(ciphertext));
+	}
+
+	@Override
+	public Set<UUID> decryptUUIDSet(byte[] ciphertext)
+	{
+		try
+		{
+			byte[] plaintext = decrypt(ciphertext);
+			DataInputStream stream = new DataInputStream(new ByteArrayInputStream(plaintext));
+			int length = stream.readInt();
+			Set<UUID> ids = new HashSet<>(length);
+			for (int i = 0; (i < length); i++)
+			{
+				ids.add(readUUID(stream));
+			}
+			return ids;
+		}
+		catch (IOException e)
+		{
+			throw CryptoException.decryptingData(e);
+		}
+	}
+
+	private UUID readUUID(DataInputStream stream)
+	{
+		try
+		{
+			return new UUID(stream.readLong(), stream.readLong());
+		}
+		catch (IOException e)
+		{
+			throw CryptoException.readingUUID(e);
+		}
+	}
+}
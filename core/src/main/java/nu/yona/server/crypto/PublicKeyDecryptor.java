@@ -4,22 +4,23 @@
  *******************************************************************************/
 package nu.yona.server.crypto;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.UUID;
 
 import javax.crypto.Cipher;
 
-public class PublicKeyDecryptor implements Decryptor
+import nu.yona.server.crypto.CipherPool.PooledCipher;
+
+/**
+ * Decrypts data with a private key. The decryptor borrows one cipher for its lifetime, e.g. the decryption of a page of messages,
+ * so the cipher is looked up and initialized with the private key only once. It must be closed to release that cipher.
+ */
+public class PublicKeyDecryptor extends DecryptorBase implements AutoCloseable
 {
+	private static final String CIPHER_TYPE = "RSA/ECB/PKCS1Padding";
 
 	private PrivateKey privateKey;
+	private PooledCipher decryptCipher;
 
 	private PublicKeyDecryptor(PrivateKey privateKey)
 	{
@@ -45,9 +46,11 @@ public class PublicKeyDecryptor implements Decryptor
 			{
 				return null;
 			}
-			Cipher decryptCipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
-			decryptCipher.init(Cipher.DECRYPT_MODE, privateKey);
-
+			if (decryptCipher == null)
+			{
+				decryptCipher = CipherPool.borrow(CIPHER_TYPE);
+			}
+			decryptCipher.getCipher(Cipher.DECRYPT_MODE, privateKey);
 			return decryptCipher.doFinal(ciphertext);
 		}
 		catch (GeneralSecurityException e)
@@ -57,53 +60,12 @@ public class PublicKeyDecryptor implements Decryptor
 	}
 
 	@Override
-	public String decryptString(byte[] ciphertext)
-	{
-		return (ciphertext == null) ? null : new String(decrypt(ciphertext), StandardCharsets.UTF_8);
-	}
-
-	@Override
-	public UUID decryptUUID(byte[] ciphertext)
-	{
-		return (ciphertext == null) ? null : UUID.fromString(decryptString(ciphertext));
-	}
-
-	@Override
-	public long decryptLong(byte[] ciphertext)
-	{
-		return Long.parseLong(decryptString(ciphertext));
-	}
-
-	@Override
-	public Set<UUID> decryptUUIDSet(byte[] ciphertext)
+	public void close()
 	{
-		try
-		{
-			byte[] plaintext = decrypt(ciphertext);
-			DataInputStream stream = new DataInputStream(new ByteArrayInputStream(plaintext));
-			int length = stream.readInt();
-			Set<UUID> ids = new HashSet<>(length);
-			for (int i = 0; (i < length); i++)
-			{
-				ids.add(readUUID(stream));
-			}
-			return ids;
-		}
-		catch (IOException e)
-		{
-			throw CryptoException.decryptingData(e);
-		}
-	}
-
-	private UUID readUUID(DataInputStream stream)
-	{
-		try
-		{
-			return new UUID(stream.readLong(), stream.readLong());
-		}
-		catch (IOException e)
+		if (decryptCipher != null)
 		{
-			throw CryptoException.readingUUID(e);
+			decryptCipher.close();
+			decryptCipher = null;
 		}
 	}
 }
@@ -4,19 +4,16 @@
  *******************************************************************************/
 package nu.yona.server.crypto;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.PublicKey;
-import java.util.Set;
-import java.util.UUID;
 
 import javax.crypto.Cipher;
 
-public class PublicKeyEncryptor implements Encryptor
+import nu.yona.server.crypto.CipherPool.PooledCipher;
+
+public class PublicKeyEncryptor extends EncryptorBase
 {
+	private static final String CIPHER_TYPE = "RSA/ECB/PKCS1Padding";
 
 	private PublicKey publicKey;
 
@@ -44,63 +41,15 @@ public class PublicKeyEncryptor implements Encryptor
 			{
 				return null;
 			}
-			Cipher encryptCipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
-			encryptCipher.init(Cipher.ENCRYPT_MODE, publicKey);
-
-			return encryptCipher.doFinal(plaintext);
+			try (PooledCipher encryptCipher = CipherPool.borrow(CIPHER_TYPE))
+			{
+				encryptCipher.getCipher(Cipher.ENCRYPT_MODE, publicKey);
+				return encryptCipher.doFinal(plaintext);
+			}
 		}
 		catch (GeneralSecurityException e)
 		{
 			throw CryptoException.encryptingData(e);
 		}
 	}
-
-	@Override
-	public byte[] encrypt(String plaintext)
-	{
-		return (plaintext == null) ? null : encrypt(plaintext.getBytes(StandardCharsets.UTF_8));
-	}
-
-	@Override
-	public byte[] encrypt(UUID plaintext)
-	{
-		return (plaintext == null) ? null : encrypt(plaintext.toString());
-	}
-
-	@Override
-	public byte[] encrypt(long plaintext)
-	{
-		return encrypt(Long.toString(plaintext));
-	}
-
-	@Override
-	public byte[] encrypt(Set<UUID> plaintext)
-	{
-		try
-		{
-			ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-			DataOutputStream dataStream = new DataOutputStream(byteStream);
-			dataStream.writeInt(plaintext.size());
-			plaintext.stream().forEach(id -> writeUUID(dataStream, id));
-
-			return encrypt(byteStream.toByteArray());
-		}
-		catch (IOException e)
-		{
-			throw CryptoException.encryptingData(e);
-		}
-	}
-
-	private void writeUUID(DataOutputStream dataStream, UUID id)
-	{
-		try
-		{
-			dataStream.writeLong(id.getMostSignificantBits());
-			dataStream.writeLong(id.getLeastSignificantBits());
-		}
-		catch (IOException e)
-		{
-			throw CryptoException.writingData(e);
-		}
-	}
 }
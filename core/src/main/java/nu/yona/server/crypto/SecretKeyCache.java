@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import nu.yona.server.exceptions.YonaException;
+
+/**
+ * Memory-only cache of the secret keys derived from passwords. Deriving a key is deliberately slow, while the app sends the same
+ * password with every request. The cache is keyed by an HMAC of the password, with a random HMAC key that only lives in this JVM,
+ * so the cache neither holds the passwords nor hashes that can be attacked offline. The key material of an entry is zeroed when
+ * the entry is evicted.
+ */
+class SecretKeyCache
+{
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+	private static final int HMAC_KEY_LENGTH = 32;
+
+	private final Optional<Cache<String, CachedSecretKey>> cache;
+	private final SecretKey hmacKey;
+
+	/**
+	 * @param maxSize The maximum number of keys in the cache. Zero disables the cache.
+	 * @param timeToLive The time after which a key is evicted, regardless of its use.
+	 */
+	SecretKeyCache(long maxSize, Duration timeToLive)
+	{
+		RemovalListener<String, CachedSecretKey> zeroingListener = n -> n.getValue().destroy();
+		cache = (maxSize == 0) ? Optional.empty()
+				: Optional.of(CacheBuilder.newBuilder().maximumSize(maxSize)
+						.expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS).removalListener(zeroingListener).build());
+		byte[] hmacKeyBytes = new byte[HMAC_KEY_LENGTH];
+		new SecureRandom().nextBytes(hmacKeyBytes);
+		hmacKey = new SecretKeySpec(hmacKeyBytes, HMAC_ALGORITHM);
+	}
+
+	SecretKey getSecretKey(String password, Function<String, SecretKey> keyDeriver)
+	{
+		if (!cache.isPresent())
+		{
+			return keyDeriver.apply(password);
+		}
+		try
+		{
+			CachedSecretKey cachedKey = cache.get().get(createCacheKey(password),
+					() -> new CachedSecretKey(keyDeriver.apply(password)));
+			// The entry might have been evicted and destroyed right after it was fetched
+			return cachedKey.createSecretKey().orElseGet(() -> keyDeriver.apply(password));
+		}
+		catch (ExecutionException | UncheckedExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw YonaException.unexpected(e);
+		}
+	}
+
+	void invalidateAll()
+	{
+		cache.ifPresent(Cache::invalidateAll);
+	}
+
+	private String createCacheKey(String password)
+	{
+		try
+		{
+			Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+			mac.init(hmacKey);
+			return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException | InvalidKeyException e)
+		{
+			throw CryptoException.creatingSecretKey(e);
+		}
+	}
+
+	private static class CachedSecretKey
+	{
+		private final String algorithm;
+		private final byte[] keyBytes;
+		private boolean isDestroyed;
+
+		CachedSecretKey(SecretKey secretKey)
+		{
+			algorithm = secretKey.getAlgorithm();
+			keyBytes = secretKey.getEncoded();
+		}
+
+		synchronized Optional<SecretKey> createSecretKey()
+		{
+			// The key specification takes a copy of the bytes
+			return isDestroyed ? Optional.empty() : Optional.of(new SecretKeySpec(keyBytes, algorithm));
+		}
+
+		synchronized void destroy()
+		{
+			Arrays.fill(keyBytes, (byte) 0);
+			isDestroyed = true;
+		}
+	}
+}
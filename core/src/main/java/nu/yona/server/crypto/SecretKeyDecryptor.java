@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import nu.yona.server.crypto.CipherPool.PooledCipher;
+
+/**
+ * Decrypts data that was encrypted with {@link SecretKeyEncryptor}.
+ */
+public class SecretKeyDecryptor extends DecryptorBase
+{
+	private final SecretKey secretKey;
+
+	private SecretKeyDecryptor(SecretKey secretKey)
+	{
+		if (secretKey == null)
+		{
+			throw new IllegalArgumentException("secretKey cannot be null");
+		}
+
+		this.secretKey = secretKey;
+	}
+
+	public static SecretKeyDecryptor createInstance(SecretKey secretKey)
+	{
+		return new SecretKeyDecryptor(secretKey);
+	}
+
+	public static SecretKeyDecryptor createInstance(byte[] secretKeyBytes)
+	{
+		return new SecretKeyDecryptor(new SecretKeySpec(secretKeyBytes, SecretKeyEncryptor.KEY_ALGORITHM));
+	}
+
+	@Override
+	public byte[] decrypt(byte[] ciphertext)
+	{
+		try
+		{
+			if (ciphertext == null)
+			{
+				return null;
+			}
+			if (ciphertext.length < SecretKeyEncryptor.INITIALIZATION_VECTOR_LENGTH)
+			{
+				throw CryptoException.decryptingData();
+			}
+			byte[] initializationVector = Arrays.copyOf(ciphertext, SecretKeyEncryptor.INITIALIZATION_VECTOR_LENGTH);
+			try (PooledCipher decryptCipher = CipherPool.borrow(SecretKeyEncryptor.CIPHER_TYPE))
+			{
+				decryptCipher.getCipher(Cipher.DECRYPT_MODE, secretKey, initializationVector);
+				return decryptCipher.doFinal(ciphertext, initializationVector.length,
+						ciphertext.length - initializationVector.length);
+			}
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw CryptoException.decryptingData(e);
+		}
+	}
+}
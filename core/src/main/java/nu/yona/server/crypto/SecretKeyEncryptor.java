@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import nu.yona.server.crypto.CipherPool.PooledCipher;
+
+/**
+ * Encrypts data with AES-GCM. Every ciphertext gets its own random initialization vector, which precedes the encrypted data, so
+ * many values can be encrypted with one key.
+ */
+public class SecretKeyEncryptor extends EncryptorBase
+{
+	static final String CIPHER_TYPE = "AES/GCM/NoPadding";
+	static final String KEY_ALGORITHM = "AES";
+	static final int INITIALIZATION_VECTOR_LENGTH = 12;
+	private static final int KEY_LENGTH_BITS = 128;
+
+	private final SecretKey secretKey;
+
+	private SecretKeyEncryptor(SecretKey secretKey)
+	{
+		if (secretKey == null)
+		{
+			throw new IllegalArgumentException("secretKey cannot be null");
+		}
+
+		this.secretKey = secretKey;
+	}
+
+	public static SecretKeyEncryptor createInstance(SecretKey secretKey)
+	{
+		return new SecretKeyEncryptor(secretKey);
+	}
+
+	public static SecretKey generateSecretKey()
+	{
+		try
+		{
+			KeyGenerator keyGenerator = KeyGenerator.getInstance(KEY_ALGORITHM);
+			keyGenerator.init(KEY_LENGTH_BITS, CryptoUtil.getSecureRandomInstance());
+			return keyGenerator.generateKey();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw CryptoException.creatingSecretKey(e);
+		}
+	}
+
+	@Override
+	public byte[] encrypt(byte[] plaintext)
+	{
+		try
+		{
+			if (plaintext == null)
+			{
+				return null;
+			}
+			try (PooledCipher encryptCipher = CipherPool.borrow(CIPHER_TYPE))
+			{
+				byte[] initializationVector = encryptCipher.getCipherWithNewInitializationVector(secretKey).getIV();
+				byte[] encryptedData = encryptCipher.doFinal(plaintext);
+				byte[] ciphertext = new byte[initializationVector.length + encryptedData.length];
+				System.arraycopy(initializationVector, 0, ciphertext, 0, initializationVector.length);
+				System.arraycopy(encryptedData, 0, ciphertext, initializationVector.length, encryptedData.length);
+				return ciphertext;
+			}
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw CryptoException.encryptingData(e);
+		}
+	}
+}
@@ -7,6 +7,8 @@ package nu.yona.server.exceptions;
 import java.time.ZonedDateTime;
 import java.util.UUID;
 
+import org.springframework.http.HttpStatus;
+
 /**
  * This exception is thrown for various issues that can occur during analysis of app or network activity.
  */
@@ -24,6 +26,11 @@ public class AnalysisException extends YonaException
 		super(t, messageId, parameters);
 	}
 
+	private AnalysisException(HttpStatus statusCode, String messageId, Object... parameters)
+	{
+		super(statusCode, messageId, parameters);
+	}
+
 	public static AnalysisException appActivityStartAfterEnd(UUID userAnonymizedID, String application, ZonedDateTime startTime,
 			ZonedDateTime endTime)
 	{
@@ -41,4 +48,14 @@ public class AnalysisException extends YonaException
 	{
 		return new AnalysisException("error.analysis.invalid.app.activity.data.ends.in.future", userAnonymizedID, application, endTime);
 	}
+
+	public static AnalysisException networkActivityBatchMissingUserAnonymizedID(int index)
+	{
+		return new AnalysisException("error.analysis.invalid.network.activity.batch.missing.user.anonymized.id", index);
+	}
+
+	public static AnalysisException activityQueueFull(int capacity)
+	{
+		return new AnalysisException(HttpStatus.SERVICE_UNAVAILABLE, "error.analysis.activity.queue.full", capacity);
+	}
 }
@@ -70,4 +70,9 @@ public class InvalidDataException extends YonaException
 	{
 		return new InvalidDataException("error.missing.activity.category.link");
 	}
+
+	public static InvalidDataException invalidCursor(String cursor)
+	{
+		return new InvalidDataException("error.invalid.cursor", cursor);
+	}
 }
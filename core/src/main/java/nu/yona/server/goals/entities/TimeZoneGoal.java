@@ -92,8 +92,12 @@ public class TimeZoneGoal extends Goal
 
 	private int[] determineSpreadOutsideGoal(DayActivity dayActivity)
 	{
-		int[] spread = dayActivity.getSpread().stream().mapToInt(i -> i.intValue()).toArray();
-		spreadCells.stream().forEach(i -> spread[i] = 0);
+		// getSpread returns a copy, so it can be updated in place
+		int[] spread = dayActivity.getSpread();
+		for (int spreadCell : spreadCells)
+		{
+			spread[spreadCell] = 0;
+		}
 		return spread;
 	}
 
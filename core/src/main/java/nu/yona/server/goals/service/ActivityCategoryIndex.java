@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.goals.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+ * Immutable inverted index of the activity categories, to look up the categories matching a smoothwall category or an app
+ * without scanning all categories.
+ * @see ActivityCategoryService
+ */
+class ActivityCategoryIndex
+{
+	private final Map<String, Set<ActivityCategoryDTO>> categoriesBySmoothwallCategory;
+	private final Map<String, Set<ActivityCategoryDTO>> categoriesByApplication;
+
+	private ActivityCategoryIndex(Map<String, Set<ActivityCategoryDTO>> categoriesBySmoothwallCategory,
+			Map<String, Set<ActivityCategoryDTO>> categoriesByApplication)
+	{
+		this.categoriesBySmoothwallCategory = categoriesBySmoothwallCategory;
+		this.categoriesByApplication = categoriesByApplication;
+	}
+
+	Set<ActivityCategoryDTO> getMatchingCategoriesForSmoothwallCategories(Set<String> smoothwallCategories)
+	{
+		if (smoothwallCategories.size() == 1)
+		{
+			// Most network activities have a single category, so avoid building a new set
+			return getMatchingCategoriesForSmoothwallCategory(smoothwallCategories.iterator().next());
+		}
+		Set<ActivityCategoryDTO> matchingCategories = new HashSet<>();
+		smoothwallCategories.forEach(c -> matchingCategories.addAll(getMatchingCategoriesForSmoothwallCategory(c)));
+		return matchingCategories;
+	}
+
+	Set<ActivityCategoryDTO> getMatchingCategoriesForApp(String application)
+	{
+		return categoriesByApplication.getOrDefault(application, Collections.emptySet());
+	}
+
+	private Set<ActivityCategoryDTO> getMatchingCategoriesForSmoothwallCategory(String smoothwallCategory)
+	{
+		return categoriesBySmoothwallCategory.getOrDefault(smoothwallCategory, Collections.emptySet());
+	}
+
+	static ActivityCategoryIndex createInstance(Set<ActivityCategoryDTO> activityCategories)
+	{
+		return new ActivityCategoryIndex(createIndex(activityCategories, ActivityCategoryDTO::getSmoothwallCategories),
+				createIndex(activityCategories, ActivityCategoryDTO::getApplications));
+	}
+
+	private static Map<String, Set<ActivityCategoryDTO>> createIndex(Set<ActivityCategoryDTO> activityCategories,
+			Function<ActivityCategoryDTO, Set<String>> keyExtractor)
+	{
+		Map<String, Set<ActivityCategoryDTO>> index = new HashMap<>();
+		for (ActivityCategoryDTO activityCategory : activityCategories)
+		{
+			keyExtractor.apply(activityCategory).forEach(k -> index.computeIfAbsent(k, x -> new HashSet<>()).add(activityCategory));
+		}
+		index.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+		return Collections.unmodifiableMap(index);
+	}
+}
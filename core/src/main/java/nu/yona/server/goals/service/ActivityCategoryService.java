@@ -15,9 +15,11 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
 import org.slf4j.Logger;
@@ -27,6 +29,11 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+
 import nu.yona.server.Translator;
 import nu.yona.server.goals.entities.ActivityCategory;
 import nu.yona.server.goals.entities.ActivityCategoryRepository;
@@ -37,8 +44,26 @@ public class ActivityCategoryService
 	@Autowired
 	private ActivityCategoryRepository repository;
 
+	// Not available in tests that run without a cluster
+	@Autowired(required = false)
+	private HazelcastInstance hazelcastInstance;
+
 	private static final Logger logger = LoggerFactory.getLogger(ActivityCategoryService.class);
 
+	private final AtomicLong indexVersion = new AtomicLong();
+	private volatile ActivityCategoryIndex index;
+
+	@PostConstruct
+	void registerCacheEvictionListener()
+	{
+		if (hazelcastInstance == null)
+		{
+			return;
+		}
+		// The activity category set might be updated by another service, so invalidate the index when the cache entry is evicted
+		hazelcastInstance.getMap("activityCategorySet").addEntryListener(new CacheEvictionListener(), false);
+	}
+
 	@Transactional
 	public ActivityCategoryDTO getActivityCategory(UUID id)
 	{
@@ -63,7 +88,9 @@ public class ActivityCategoryService
 		logger.info("Adding activity category '{}' with ID '{}'", activityCategoryDTO.getName(Translator.EN_US_LOCALE),
 				activityCategoryDTO.getID());
 		verifyNoDuplicateNames(Collections.emptySet(), activityCategoryDTO.getLocalizableNameByLocale());
-		return ActivityCategoryDTO.createInstance(repository.save(activityCategoryDTO.createActivityCategoryEntity()));
+		ActivityCategory activityCategoryEntity = repository.save(activityCategoryDTO.createActivityCategoryEntity());
+		invalidateIndex();
+		return ActivityCategoryDTO.createInstance(activityCategoryEntity);
 	}
 
 	@CacheEvict(value = "activityCategorySet", key = "'instance'")
@@ -73,7 +100,9 @@ public class ActivityCategoryService
 		ActivityCategory originalEntity = getEntityByID(id);
 		logger.info("Updating activity category '{}' with ID '{}'", getName(originalEntity), id);
 		verifyNoDuplicateNames(Collections.singleton(id), activityCategoryDTO.getLocalizableNameByLocale());
-		return ActivityCategoryDTO.createInstance(updateActivityCategory(originalEntity, activityCategoryDTO));
+		ActivityCategory updatedEntity = updateActivityCategory(originalEntity, activityCategoryDTO);
+		invalidateIndex();
+		return ActivityCategoryDTO.createInstance(updatedEntity);
 	}
 
 	@CacheEvict(value = "activityCategorySet", key = "'instance'")
@@ -85,6 +114,7 @@ public class ActivityCategoryService
 		deleteRemovedActivityCategories(activityCategoriesInRepository, activityCategoryDTOs);
 		explicitlyFlushUpdatesToDatabase();
 		addOrUpdateNewActivityCategories(activityCategoryDTOs, activityCategoriesInRepository);
+		invalidateIndex();
 		logger.info("Activity category set update completed");
 	}
 
@@ -93,21 +123,52 @@ public class ActivityCategoryService
 	public void deleteActivityCategory(UUID id)
 	{
 		deleteActivityCategory(getEntityByID(id));
+		invalidateIndex();
 	}
 
+	/**
+	 * Returns the activity categories that have at least one of the given smoothwall categories. The returned set is immutable.
+	 */
 	public Set<ActivityCategoryDTO> getMatchingCategoriesForSmoothwallCategories(Set<String> smoothwallCategories)
 	{
-		return getAllActivityCategories().stream().filter(ac -> {
-			Set<String> acSmoothwallCategories = new HashSet<>(ac.getSmoothwallCategories());
-			acSmoothwallCategories.retainAll(smoothwallCategories);
-			return !acSmoothwallCategories.isEmpty();
-		}).collect(Collectors.toSet());
+		return getIndex().getMatchingCategoriesForSmoothwallCategories(smoothwallCategories);
 	}
 
+	/**
+	 * Returns the activity categories that contain the given application. The returned set is immutable.
+	 */
 	public Set<ActivityCategoryDTO> getMatchingCategoriesForApp(String application)
 	{
-		return getAllActivityCategories().stream().filter(ac -> ac.getApplications().contains(application))
-				.collect(Collectors.toSet());
+		return getIndex().getMatchingCategoriesForApp(application);
+	}
+
+	private ActivityCategoryIndex getIndex()
+	{
+		ActivityCategoryIndex currentIndex = index;
+		if (currentIndex != null)
+		{
+			return currentIndex;
+		}
+		long version = indexVersion.get();
+		ActivityCategoryIndex newIndex = ActivityCategoryIndex.createInstance(getAllActivityCategories());
+		synchronized (indexVersion)
+		{
+			// Do not publish the new index if it was invalidated while building it, as it might be built from outdated data
+			if (indexVersion.get() == version)
+			{
+				index = newIndex;
+			}
+		}
+		return newIndex;
+	}
+
+	private void invalidateIndex()
+	{
+		synchronized (indexVersion)
+		{
+			indexVersion.incrementAndGet();
+			index = null;
+		}
 	}
 
 	private void deleteActivityCategory(ActivityCategory entity)
@@ -221,4 +282,20 @@ public class ActivityCategoryService
 	{
 		repository.flush();
 	}
+
+	private class CacheEvictionListener
+			implements EntryRemovedListener<Object, Object>, EntryEvictedListener<Object, Object>
+	{
+		@Override
+		public void entryRemoved(EntryEvent<Object, Object> event)
+		{
+			invalidateIndex();
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<Object, Object> event)
+		{
+			invalidateIndex();
+		}
+	}
 }
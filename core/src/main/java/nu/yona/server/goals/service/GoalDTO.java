@@ -83,6 +83,12 @@ public abstract class GoalDTO extends PolymorphicDTO implements Serializable
 		return Optional.ofNullable(creationTime);
 	}
 
+	@JsonIgnore
+	public Optional<LocalDateTime> getEndTime()
+	{
+		return Optional.ofNullable(endTime);
+	}
+
 	public boolean isHistoryItem()
 	{
 		return endTime != null;
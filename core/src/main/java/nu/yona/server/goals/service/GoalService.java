@@ -6,9 +6,14 @@ package nu.yona.server.goals.service;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
 
@@ -19,6 +24,7 @@ import org.springframework.stereotype.Service;
 import nu.yona.server.analysis.entities.DayActivity;
 import nu.yona.server.analysis.entities.IntervalActivity;
 import nu.yona.server.analysis.entities.WeekActivity;
+import nu.yona.server.analysis.service.ActivityVersionService;
 import nu.yona.server.goals.entities.ActivityCategory;
 import nu.yona.server.goals.entities.Goal;
 import nu.yona.server.goals.entities.GoalChangeMessage;
@@ -43,6 +49,9 @@ public class GoalService
 	@Autowired
 	private MessageService messageService;
 
+	@Autowired
+	private ActivityVersionService activityVersionService;
+
 	public Set<GoalDTO> getGoalsOfUser(UUID forUserID)
 	{
 		UserDTO user = userService.getPrivateUser(forUserID);
@@ -71,6 +80,23 @@ public class GoalService
 		return goal;
 	}
 
+	/*
+	 * Loads multiple goals in one query, e.g. the goals on a page of activity overviews.
+	 */
+	public Map<UUID, Goal> getGoalEntitiesForUserAnonymizedID(UUID userAnonymizedID, Set<UUID> goalIDs)
+	{
+		if (goalIDs.isEmpty())
+		{
+			return Collections.emptyMap();
+		}
+		Map<UUID, Goal> goals = new HashMap<>();
+		Goal.getRepository().findAll(goalIDs).forEach(g -> goals.put(g.getID(), g));
+		goalIDs.stream().filter(id -> !goals.containsKey(id)).findAny().ifPresent(id -> {
+			throw GoalServiceException.goalNotFoundByIdForUserAnonymized(userAnonymizedID, id);
+		});
+		return goals;
+	}
+
 	private Goal getGoalEntity(User userEntity, UUID goalID)
 	{
 		return getGoalEntity(userEntity.getAnonymized(), goalID);
@@ -104,6 +130,7 @@ public class GoalService
 		Goal goalEntity = goal.createGoalEntity();
 		userAnonymizedEntity.addGoal(goalEntity);
 		userAnonymizedService.updateUserAnonymized(userAnonymizedEntity.getID(), userAnonymizedEntity);
+		activityVersionService.incrementVersion(userAnonymizedEntity.getID());
 
 		broadcastGoalChangeMessage(userEntity, goalEntity.getActivityCategory(), GoalChangeMessage.Change.GOAL_ADDED, message);
 
@@ -136,6 +163,7 @@ public class GoalService
 		UserAnonymized userAnonymizedEntity = userEntity.getAnonymized();
 		existingGoal.setCreationTime(newGoalDTO.getCreationTime().get());
 		userAnonymizedService.updateUserAnonymized(userAnonymizedEntity.getID(), userAnonymizedEntity);
+		activityVersionService.incrementVersion(userAnonymizedEntity.getID());
 	}
 
 	private void verifyGoalUpdate(Goal existingGoal, GoalDTO newGoalDTO)
@@ -149,26 +177,37 @@ public class GoalService
 	private void updateGoal(User userEntity, Goal existingGoal, GoalDTO newGoalDTO, Optional<String> message)
 	{
 		UserAnonymized userAnonymizedEntity = userEntity.getAnonymized();
-		cloneExistingGoalAsHistoryItem(userAnonymizedEntity, existingGoal,
+		List<DayActivity> dayActivitiesOfExistingGoal = cloneExistingGoalAsHistoryItem(userAnonymizedEntity, existingGoal,
 				newGoalDTO.getCreationTime().orElse(TimeUtil.utcNow()));
 		newGoalDTO.getCreationTime().ifPresent(ct -> existingGoal.setCreationTime(ct));
 		newGoalDTO.updateGoalEntity(existingGoal);
+		// The day activities that remain on the goal (typically today) stored their goal results for the old goal settings
+		dayActivitiesOfExistingGoal.forEach(a -> {
+			a.recomputeGoalAggregates();
+			DayActivity.getRepository().save(a);
+		});
 		userAnonymizedService.updateUserAnonymized(userAnonymizedEntity.getID(), userAnonymizedEntity);
+		activityVersionService.incrementVersion(userAnonymizedEntity.getID());
 
 		broadcastGoalChangeMessage(userEntity, existingGoal.getActivityCategory(), GoalChangeMessage.Change.GOAL_CHANGED,
 				message);
 	}
 
-	private void cloneExistingGoalAsHistoryItem(UserAnonymized userAnonymizedEntity, Goal existingGoal, LocalDateTime endTime)
+	/*
+	 * Moves the activities of the past to the history item, and returns the day activities that remain on the existing goal.
+	 */
+	private List<DayActivity> cloneExistingGoalAsHistoryItem(UserAnonymized userAnonymizedEntity, Goal existingGoal,
+			LocalDateTime endTime)
 	{
 		Goal historyGoal = existingGoal.cloneAsHistoryItem(endTime);
 		existingGoal.setPreviousVersionOfThisGoal(historyGoal);
 		WeekActivity.getRepository().findByGoal(existingGoal).stream()
 				.filter(a -> historyGoal.wasActiveAtInterval(a.getStartTime(), ChronoUnit.WEEKS))
 				.forEach(a -> setGoalAndSave(a, historyGoal));
-		DayActivity.getRepository().findByGoal(existingGoal).stream()
-				.filter(a -> historyGoal.wasActiveAtInterval(a.getStartTime(), ChronoUnit.DAYS))
-				.forEach(a -> setGoalAndSave(a, historyGoal));
+		Map<Boolean, List<DayActivity>> dayActivitiesByHistory = DayActivity.getRepository().findByGoal(existingGoal).stream()
+				.collect(Collectors.partitioningBy(a -> historyGoal.wasActiveAtInterval(a.getStartTime(), ChronoUnit.DAYS)));
+		dayActivitiesByHistory.get(true).forEach(a -> setGoalAndSave(a, historyGoal));
+		return dayActivitiesByHistory.get(false);
 	}
 
 	private void setGoalAndSave(IntervalActivity activity, Goal goal)
@@ -221,6 +260,7 @@ public class GoalService
 		deleteGoalAndRelatedEntities(userAnonymizedEntity, goalEntity);
 		userAnonymizedEntity.removeGoal(goalEntity);
 		userAnonymizedService.updateUserAnonymized(userAnonymizedEntity.getID(), userAnonymizedEntity);
+		activityVersionService.incrementVersion(userAnonymizedEntity.getID());
 
 		broadcastGoalChangeMessage(userEntity, activityCategoryOfChangedGoal, GoalChangeMessage.Change.GOAL_DELETED, message);
 	}
@@ -8,13 +8,18 @@ import java.time.ZonedDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
+import javax.crypto.SecretKey;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
 import org.hibernate.annotations.Type;
 
 import nu.yona.server.crypto.Decryptor;
 import nu.yona.server.crypto.Encryptor;
+import nu.yona.server.crypto.SecretKeyDecryptor;
+import nu.yona.server.crypto.SecretKeyEncryptor;
 import nu.yona.server.entities.EntityWithID;
 import nu.yona.server.entities.RepositoryProvider;
 
@@ -35,6 +40,15 @@ public abstract class Message extends EntityWithID
 
 	private boolean isRead;
 
+	@ManyToOne(fetch = FetchType.LAZY)
+	private MessageDestination messageDestination;
+
+	/**
+	 * The key with which the fields of this message are encrypted, encrypted with the public key of the message destination. It
+	 * is null for messages of which every field is encrypted with the public key, as they were before.
+	 */
+	private byte[] messageKeyCiphertext;
+
 	public static MessageRepository getRepository()
 	{
 		return (MessageRepository) RepositoryProvider.getRepository(Message.class, UUID.class);
@@ -61,14 +75,40 @@ public abstract class Message extends EntityWithID
 		this.isSentItem = isSentItem;
 	}
 
-	public void encryptMessage(Encryptor encryptor)
+	/**
+	 * Encrypts the fields of this message with a new message key, and the message key with the given public key encryptor. This
+	 * way, reading the message takes only one public key operation, regardless of the number of fields.
+	 */
+	public void encryptMessage(Encryptor publicKeyEncryptor)
+	{
+		SecretKey messageKey = SecretKeyEncryptor.generateSecretKey();
+		messageKeyCiphertext = publicKeyEncryptor.encrypt(messageKey.getEncoded());
+		encrypt(SecretKeyEncryptor.createInstance(messageKey));
+	}
+
+	public void decryptMessage(Decryptor publicKeyDecryptor)
+	{
+		if (!isEncryptedWithMessageKey())
+		{
+			decrypt(publicKeyDecryptor);
+			return;
+		}
+		decrypt(SecretKeyDecryptor.createInstance(publicKeyDecryptor.decrypt(messageKeyCiphertext)));
+	}
+
+	MessageDestination getMessageDestination()
+	{
+		return messageDestination;
+	}
+
+	void setMessageDestination(MessageDestination messageDestination)
 	{
-		encrypt(encryptor);
+		this.messageDestination = messageDestination;
 	}
 
-	public void decryptMessage(Decryptor decryptor)
+	public boolean isEncryptedWithMessageKey()
 	{
-		decrypt(decryptor);
+		return messageKeyCiphertext != null;
 	}
 
 	protected void setRepliedMessageID(Optional<UUID> repliedMessageID)
@@ -108,6 +148,10 @@ public abstract class Message extends EntityWithID
 
 	public void setRead(boolean isRead)
 	{
+		if (this.isRead != isRead && !isSentItem && messageDestination != null)
+		{
+			messageDestination.adjustUnreadMessageCount(isRead ? -1 : 1);
+		}
 		this.isRead = isRead;
 	}
 
@@ -5,10 +5,16 @@
 package nu.yona.server.messaging.entities;
 
 import java.security.PublicKey;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -19,13 +25,14 @@ import javax.persistence.Transient;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
-import nu.yona.server.analysis.entities.GoalConflictMessage;
 import nu.yona.server.crypto.PublicKeyEncryptor;
 import nu.yona.server.crypto.PublicKeyUtil;
 import nu.yona.server.entities.EntityWithID;
 import nu.yona.server.entities.RepositoryProvider;
 import nu.yona.server.goals.entities.Goal;
+import nu.yona.server.messaging.service.MessageCursor;
 
 @Entity
 @Table(name = "MESSAGE_DESTINATIONS")
@@ -42,9 +49,26 @@ public class MessageDestination extends EntityWithID
 	@Transient
 	private PublicKey publicKey;
 
-	@OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
+	@OneToMany(mappedBy = "messageDestination", cascade = CascadeType.ALL, orphanRemoval = true)
 	private List<Message> messages;
 
+	/**
+	 * The number of unread received messages, maintained when messages are sent, read or deleted, so the inbox summary does not
+	 * need to count the messages. It is null until it is first counted, for destinations that existed before it was maintained.
+	 */
+	private Integer unreadMessageCount;
+
+	/**
+	 * The creation time of the last message received by this destination, or null if it did not receive any message yet.
+	 */
+	private ZonedDateTime lastMessageCreationTime;
+
+	/**
+	 * Whether all messages of this destination are encrypted with a message key. It is null for destinations that existed before
+	 * messages got a message key, until their messages are migrated by {@link MessageSource}.
+	 */
+	private Boolean messagesEncryptedWithMessageKey;
+
 	// Default constructor is required for JPA
 	public MessageDestination()
 	{
@@ -56,6 +80,8 @@ public class MessageDestination extends EntityWithID
 		super(id);
 		this.publicKeyBytes = PublicKeyUtil.publicKeyToBytes(publicKey);
 		this.messages = new ArrayList<>();
+		this.unreadMessageCount = 0;
+		this.messagesEncryptedWithMessageKey = true;
 	}
 
 	public static MessageDestination createInstance(PublicKey publicKey)
@@ -63,15 +89,128 @@ public class MessageDestination extends EntityWithID
 		return new MessageDestination(UUID.randomUUID(), publicKey);
 	}
 
+	/**
+	 * Encrypts the message and links it to this destination. The caller saves the message itself, so the messages of this
+	 * destination are never loaded to add one.
+	 */
 	public void send(Message message)
 	{
 		message.encryptMessage(PublicKeyEncryptor.createInstance(loadPublicKey()));
-		messages.add(message);
+		message.setMessageDestination(this);
+		if (isUnreadReceivedMessage(message))
+		{
+			getRepository().registerReceivedMessage(Collections.singleton(getID()), message.getCreationTime());
+		}
+	}
+
+	/**
+	 * Sends a message to each of the given destinations, like {@link #send(Message)}. The public key operations dominate the cost
+	 * of sending to many destinations, so the messages are encrypted in parallel.
+	 */
+	public static void send(Map<MessageDestination, Message> messagesByDestination)
+	{
+		// The destinations are managed entities, so they are only used on this thread
+		Map<Message, PublicKeyEncryptor> encryptorsByMessage = new HashMap<>();
+		messagesByDestination.forEach((destination, message) -> {
+			message.setMessageDestination(destination);
+			encryptorsByMessage.put(message, PublicKeyEncryptor.createInstance(destination.loadPublicKey()));
+		});
+		encryptorsByMessage.entrySet().parallelStream().forEach(e -> e.getKey().encryptMessage(e.getValue()));
+
+		// The messages are created at about the same time, so the last creation time is registered for all destinations at once
+		List<Map.Entry<MessageDestination, Message>> receivedMessages = messagesByDestination.entrySet().stream()
+				.filter(e -> isUnreadReceivedMessage(e.getValue())).collect(Collectors.toList());
+		if (receivedMessages.isEmpty())
+		{
+			return;
+		}
+		Set<UUID> destinationIDs = receivedMessages.stream().map(e -> e.getKey().getID()).collect(Collectors.toSet());
+		ZonedDateTime lastCreationTime = receivedMessages.stream().map(e -> e.getValue().getCreationTime())
+				.max(ZonedDateTime::compareTo).get();
+		getRepository().registerReceivedMessage(destinationIDs, lastCreationTime);
+	}
+
+	/**
+	 * Moves a message that was sent to another destination to this one, e.g. a direct message to the anonymous destination of the
+	 * same user. The message keeps its creation time, so the last message creation time of this destination is not updated. The
+	 * message is encrypted again for this destination, which costs a public key operation and an update of the message.
+	 */
+	public void transfer(Message message)
+	{
+		MessageDestination previousDestination = message.getMessageDestination();
+		reencrypt(message);
+		message.setMessageDestination(this);
+		if (isUnreadReceivedMessage(message))
+		{
+			getRepository().adjustUnreadMessageCount(previousDestination.getID(), -1);
+			getRepository().adjustUnreadMessageCount(getID(), 1);
+		}
 	}
 
+	/**
+	 * Deletes a message of this destination.
+	 */
 	public void remove(Message message)
 	{
-		messages.remove(message);
+		if (isUnreadReceivedMessage(message))
+		{
+			adjustUnreadMessageCount(-1);
+		}
+		Message.getRepository().delete(message);
+	}
+
+	void adjustUnreadMessageCount(int delta)
+	{
+		getRepository().adjustUnreadMessageCount(getID(), delta);
+	}
+
+	private static boolean isUnreadReceivedMessage(Message message)
+	{
+		return !message.isSentItem() && !message.isRead();
+	}
+
+	/**
+	 * Returns the number of unread received messages. For a destination that existed before it was maintained, the messages are
+	 * counted once. The fields of this entity are not refreshed by the update queries that maintain them, so this should only be
+	 * called on a destination that was loaded after the last change.
+	 */
+	public long getUnreadMessageCount()
+	{
+		return (unreadMessageCount == null) ? recountUnreadMessages() : unreadMessageCount;
+	}
+
+	public Optional<ZonedDateTime> getLastMessageCreationTime()
+	{
+		return Optional.ofNullable(lastMessageCreationTime);
+	}
+
+	/**
+	 * Counts the unread messages and stores the count. The destination is locked first, so a message that is sent or marked read
+	 * concurrently either is counted or updates the stored count after it, rather than being overwritten by it.
+	 */
+	private int recountUnreadMessages()
+	{
+		lockUnreadMessageCount();
+		// The field is left as is, as changing it would make Hibernate update the other summary field as well
+		int count = (int) countReceivedMessages(true);
+		getRepository().setUnreadMessageCount(getID(), count);
+		return count;
+	}
+
+	void reencrypt(Message message)
+	{
+		message.encryptMessage(PublicKeyEncryptor.createInstance(loadPublicKey()));
+	}
+
+	boolean hasMessagesWithoutMessageKey()
+	{
+		return messagesEncryptedWithMessageKey == null;
+	}
+
+	void setMessagesEncryptedWithMessageKey()
+	{
+		// The field is left as is, as changing it would make Hibernate update the summary fields as well
+		getRepository().setMessagesEncryptedWithMessageKey(getID());
 	}
 
 	public Page<Message> getMessages(Pageable pageable)
@@ -89,6 +228,25 @@ public class MessageDestination extends EntityWithID
 		return Message.getRepository().findReceivedMessagesFromDestination(this.getID(), pageable);
 	}
 
+	public Slice<Message> getReceivedMessages(Optional<MessageCursor> cursor, Pageable pageable, boolean onlyUnreadMessages)
+	{
+		MessageRepository repository = Message.getRepository();
+		if (onlyUnreadMessages)
+		{
+			return cursor.map(c -> repository.findUnreadReceivedMessageSliceFromDestination(getID(), c.getCreationTime(),
+					c.getMessageID(), pageable))
+					.orElseGet(() -> repository.findUnreadReceivedMessageSliceFromDestination(getID(), pageable));
+		}
+		return cursor.map(c -> repository.findReceivedMessageSliceFromDestination(getID(), c.getCreationTime(),
+				c.getMessageID(), pageable)).orElseGet(() -> repository.findReceivedMessageSliceFromDestination(getID(), pageable));
+	}
+
+	public long countReceivedMessages(boolean onlyUnreadMessages)
+	{
+		return onlyUnreadMessages ? Message.getRepository().countUnreadReceivedMessagesFromDestination(getID())
+				: Message.getRepository().countReceivedMessagesFromDestination(getID());
+	}
+
 	private PublicKey loadPublicKey()
 	{
 		if (publicKey == null)
@@ -98,16 +256,24 @@ public class MessageDestination extends EntityWithID
 		return publicKey;
 	}
 
+	private void lockUnreadMessageCount()
+	{
+		getRepository().findOneForUpdate(getID());
+	}
+
 	public void removeMessagesFromUser(UUID sentByUserAnonymizedID)
 	{
-		Optional<UUID> sentByUserAnonymizedIDInOptional = Optional.of(sentByUserAnonymizedID);
-		messages.removeIf(message -> sentByUserAnonymizedIDInOptional.equals(message.getRelatedUserAnonymizedID()));
+		// Lock the destination before the messages, in the same order as sending and reading messages do
+		lockUnreadMessageCount();
+		Message.getRepository().deleteMessagesFromUser(getID(), sentByUserAnonymizedID);
+		recountUnreadMessages();
 	}
 
 	public void removeGoalConflictMessages(Goal goal)
 	{
-		messages.removeIf(
-				message -> message instanceof GoalConflictMessage && ((GoalConflictMessage) message).getGoal().equals(goal));
+		lockUnreadMessageCount();
+		Message.getRepository().deleteGoalConflictMessages(getID(), goal);
+		recountUnreadMessages();
 	}
 
 	public Page<Message> getActivityRelatedMessages(UUID activityID, Pageable pageable)
@@ -4,13 +4,47 @@
  *******************************************************************************/
 package nu.yona.server.messaging.entities;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.UUID;
 
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface MessageDestinationRepository extends CrudRepository<MessageDestination, UUID>
 {
+	/*
+	 * The inbox summary is maintained with update queries rather than through the entities, so concurrent senders and readers do
+	 * not overwrite each other's changes. A count that is not initialized yet remains null.
+	 */
+	@Modifying
+	@Query("update MessageDestination d set d.unreadMessageCount = d.unreadMessageCount + 1, d.lastMessageCreationTime = :creationTime where d.id in :destinationIDs")
+	void registerReceivedMessage(@Param("destinationIDs") Collection<UUID> destinationIDs,
+			@Param("creationTime") ZonedDateTime creationTime);
+
+	@Modifying
+	@Query("update MessageDestination d set d.unreadMessageCount = d.unreadMessageCount + :delta where d.id = :destinationID")
+	void adjustUnreadMessageCount(@Param("destinationID") UUID destinationID, @Param("delta") int delta);
+
+	/*
+	 * Locks the destination, so its messages can be counted without missing concurrent changes to the count.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select d from MessageDestination d where d.id = :destinationID")
+	MessageDestination findOneForUpdate(@Param("destinationID") UUID destinationID);
+
+	@Modifying
+	@Query("update MessageDestination d set d.unreadMessageCount = :unreadMessageCount where d.id = :destinationID")
+	void setUnreadMessageCount(@Param("destinationID") UUID destinationID, @Param("unreadMessageCount") int unreadMessageCount);
 
+	@Modifying
+	@Query("update MessageDestination d set d.messagesEncryptedWithMessageKey = true where d.id = :destinationID")
+	void setMessagesEncryptedWithMessageKey(@Param("destinationID") UUID destinationID);
 }
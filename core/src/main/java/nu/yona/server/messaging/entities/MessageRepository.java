@@ -4,30 +4,80 @@
  *******************************************************************************/
 package nu.yona.server.messaging.entities;
 
+import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.UUID;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import nu.yona.server.goals.entities.Goal;
+
 @Repository
 public interface MessageRepository extends CrudRepository<Message, UUID>
 {
-	@Query("select m from Message m, MessageDestination d where d.id = :destinationID and m member of d.messages order by m.creationTime desc")
+	@Query("select m from Message m where m.messageDestination.id = :destinationID order by m.creationTime desc")
 	Page<Message> findFromDestination(@Param("destinationID") UUID destinationID, Pageable pageable);
 
-	@Query("select m from Message m, MessageDestination d where d.id = :destinationID and m.isSentItem = false and m member of d.messages order by m.creationTime desc")
+	@Query("select m from Message m where m.messageDestination.id = :destinationID and m.isSentItem = false order by m.creationTime desc")
 	Page<Message> findReceivedMessagesFromDestination(@Param("destinationID") UUID destinationID, Pageable pageable);
 
-	@Query("select m from Message m, MessageDestination d where d.id = :destinationID and m.isRead = false and m.isSentItem = false and m member of d.messages order by m.creationTime desc")
+	@Query("select m from Message m where m.messageDestination.id = :destinationID and m.isRead = false and m.isSentItem = false order by m.creationTime desc")
 	Page<Message> findUnreadReceivedMessagesFromDestination(@Param("destinationID") UUID destinationID, Pageable pageable);
 
-	@Query("select m from Message m, MessageDestination d, Message threadHeadMessage"
-			+ " where d.id = :destinationID and m member of d.messages and m.activityID = :activityID and threadHeadMessage.id = m.threadHeadMessageID"
+	/*
+	 * The slice queries below page by key (creation time and ID) instead of by offset, so deep pages are as cheap as the first one,
+	 * and no count query is executed.
+	 */
+	@Query("select m from Message m where m.messageDestination.id = :destinationID and m.isSentItem = false order by m.creationTime desc, m.id desc")
+	Slice<Message> findReceivedMessageSliceFromDestination(@Param("destinationID") UUID destinationID, Pageable pageable);
+
+	@Query("select m from Message m where m.messageDestination.id = :destinationID and m.isSentItem = false"
+			+ " and (m.creationTime < :creationTime or (m.creationTime = :creationTime and m.id < :messageID))"
+			+ " order by m.creationTime desc, m.id desc")
+	Slice<Message> findReceivedMessageSliceFromDestination(@Param("destinationID") UUID destinationID,
+			@Param("creationTime") ZonedDateTime creationTime, @Param("messageID") UUID messageID, Pageable pageable);
+
+	@Query("select m from Message m where m.messageDestination.id = :destinationID and m.isRead = false and m.isSentItem = false order by m.creationTime desc, m.id desc")
+	Slice<Message> findUnreadReceivedMessageSliceFromDestination(@Param("destinationID") UUID destinationID,
+			Pageable pageable);
+
+	@Query("select m from Message m where m.messageDestination.id = :destinationID and m.isRead = false and m.isSentItem = false"
+			+ " and (m.creationTime < :creationTime or (m.creationTime = :creationTime and m.id < :messageID))"
+			+ " order by m.creationTime desc, m.id desc")
+	Slice<Message> findUnreadReceivedMessageSliceFromDestination(@Param("destinationID") UUID destinationID,
+			@Param("creationTime") ZonedDateTime creationTime, @Param("messageID") UUID messageID, Pageable pageable);
+
+	@Query("select count(m) from Message m where m.messageDestination.id = :destinationID and m.isSentItem = false")
+	long countReceivedMessagesFromDestination(@Param("destinationID") UUID destinationID);
+
+	@Query("select case when count(m) > 0 then true else false end from Message m where m.messageDestination.id = :destinationID")
+	boolean existsInDestination(@Param("destinationID") UUID destinationID);
+
+	@Query("select count(m) from Message m where m.messageDestination.id = :destinationID and m.isRead = false and m.isSentItem = false")
+	long countUnreadReceivedMessagesFromDestination(@Param("destinationID") UUID destinationID);
+
+	@Query("select m from Message m where m.messageDestination.id = :destinationID and m.messageKeyCiphertext is null")
+	List<Message> findWithoutMessageKeyFromDestination(@Param("destinationID") UUID destinationID);
+
+	@Query("select m from Message m, Message threadHeadMessage"
+			+ " where m.messageDestination.id = :destinationID and m.activityID = :activityID and threadHeadMessage.id = m.threadHeadMessageID"
 			+ " order by threadHeadMessage.creationTime asc, m.creationTime asc")
 	Page<Message> findByActivityID(@Param("destinationID") UUID destinationID, @Param("activityID") UUID activityID,
 			Pageable pageable);
+
+	@Modifying
+	@Query("delete from Message m where m.messageDestination.id = :destinationID and m.relatedUserAnonymizedID = :relatedUserAnonymizedID")
+	void deleteMessagesFromUser(@Param("destinationID") UUID destinationID,
+			@Param("relatedUserAnonymizedID") UUID relatedUserAnonymizedID);
+
+	@Modifying
+	@Query("delete from GoalConflictMessage m where m.messageDestination.id = :destinationID and m.goal = :goal")
+	void deleteGoalConflictMessages(@Param("destinationID") UUID destinationID, @Param("goal") Goal goal);
 }
@@ -7,6 +7,8 @@ package nu.yona.server.messaging.entities;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import javax.persistence.CascadeType;
@@ -19,12 +21,14 @@ import javax.persistence.Transient;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import nu.yona.server.crypto.ByteFieldEncrypter;
 import nu.yona.server.crypto.PublicKeyDecryptor;
 import nu.yona.server.crypto.PublicKeyUtil;
 import nu.yona.server.entities.EntityWithID;
 import nu.yona.server.entities.RepositoryProvider;
+import nu.yona.server.messaging.service.MessageCursor;
 import nu.yona.server.messaging.service.MessageNotFoundException;
 
 @Entity
@@ -81,15 +85,50 @@ public class MessageSource extends EntityWithID
 
 	public Page<Message> getReceivedMessages(Pageable pageable, boolean onlyUnreadMessages)
 	{
+		migrateToMessageKeys();
 		Page<Message> messages = messageDestination.getReceivedMessages(pageable, onlyUnreadMessages);
 		decryptMessagePage(messages);
 		return messages;
 	}
 
-	private void decryptMessagePage(Page<Message> messages)
+	public Slice<Message> getReceivedMessages(Optional<MessageCursor> cursor, Pageable pageable, boolean onlyUnreadMessages)
 	{
-		PublicKeyDecryptor decryptor = PublicKeyDecryptor.createInstance(loadPrivateKey());
-		messages.forEach(m -> m.decryptMessage(decryptor));
+		migrateToMessageKeys();
+		Slice<Message> messages = messageDestination.getReceivedMessages(cursor, pageable, onlyUnreadMessages);
+		decryptMessagePage(messages);
+		return messages;
+	}
+
+	private void decryptMessagePage(Slice<Message> messages)
+	{
+		try (PublicKeyDecryptor decryptor = PublicKeyDecryptor.createInstance(loadPrivateKey()))
+		{
+			messages.forEach(m -> m.decryptMessage(decryptor));
+		}
+	}
+
+	/**
+	 * Encrypts the messages that were sent before messages got a message key with a message key, once per destination. Only the
+	 * owner of the message source can decrypt these messages, so this is done when the owner first reads them. That read costs a
+	 * private key operation per encrypted field, a public key operation per message and an update of each of these messages;
+	 * later reads do not write. The messages read to transfer them to another destination are not migrated, as the transfer
+	 * encrypts them again anyway.
+	 */
+	private void migrateToMessageKeys()
+	{
+		if (!messageDestination.hasMessagesWithoutMessageKey())
+		{
+			return;
+		}
+		List<Message> messages = Message.getRepository().findWithoutMessageKeyFromDestination(messageDestination.getID());
+		try (PublicKeyDecryptor decryptor = PublicKeyDecryptor.createInstance(loadPrivateKey()))
+		{
+			messages.forEach(m -> {
+				m.decryptMessage(decryptor);
+				messageDestination.reencrypt(m);
+			});
+		}
+		messageDestination.setMessagesEncryptedWithMessageKey();
 	}
 
 	private PrivateKey loadPrivateKey()
@@ -109,7 +148,11 @@ public class MessageSource extends EntityWithID
 			throw MessageNotFoundException.messageNotFound(idToFetch);
 		}
 
-		message.decryptMessage(PublicKeyDecryptor.createInstance(loadPrivateKey()));
+		migrateToMessageKeys();
+		try (PublicKeyDecryptor decryptor = PublicKeyDecryptor.createInstance(loadPrivateKey()))
+		{
+			message.decryptMessage(decryptor);
+		}
 		return message;
 	}
 
@@ -121,6 +164,7 @@ public class MessageSource extends EntityWithID
 
 	public Page<? extends Message> getActivityRelatedMessages(UUID activityID, Pageable pageable)
 	{
+		migrateToMessageKeys();
 		Page<Message> messages = messageDestination.getActivityRelatedMessages(activityID, pageable);
 		decryptMessagePage(messages);
 		return messages;
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.messaging.service;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonRootName;
+
+import nu.yona.server.Constants;
+import nu.yona.server.messaging.entities.MessageDestination;
+
+@JsonRootName("inboxSummary")
+public class InboxSummaryDTO
+{
+	private final long unreadMessageCount;
+	private final Optional<ZonedDateTime> lastMessageCreationTime;
+
+	private InboxSummaryDTO(long unreadMessageCount, Optional<ZonedDateTime> lastMessageCreationTime)
+	{
+		this.unreadMessageCount = unreadMessageCount;
+		this.lastMessageCreationTime = lastMessageCreationTime;
+	}
+
+	public long getUnreadMessageCount()
+	{
+		return unreadMessageCount;
+	}
+
+	@JsonInclude(Include.NON_NULL)
+	@JsonFormat(pattern = Constants.ISO_DATE_PATTERN)
+	public ZonedDateTime getLastMessageCreationTime()
+	{
+		return lastMessageCreationTime.orElse(null);
+	}
+
+	static InboxSummaryDTO createInstance(MessageDestination... destinations)
+	{
+		long unreadMessageCount = Stream.of(destinations).mapToLong(MessageDestination::getUnreadMessageCount).sum();
+		Optional<ZonedDateTime> lastMessageCreationTime = Stream.of(destinations)
+				.map(MessageDestination::getLastMessageCreationTime).filter(Optional::isPresent).map(Optional::get)
+				.max(ZonedDateTime::compareTo);
+		return new InboxSummaryDTO(unreadMessageCount, lastMessageCreationTime);
+	}
+}
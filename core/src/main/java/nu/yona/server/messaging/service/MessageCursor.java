@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.messaging.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+import nu.yona.server.exceptions.InvalidDataException;
+
+/**
+ * Position in a list of messages, ordered from new to old. It refers to the last message of a page, so the next page starts with
+ * the message after it. The client gets the cursor as an opaque string.
+ */
+public class MessageCursor
+{
+	private static final String SEPARATOR = "|";
+
+	private final ZonedDateTime creationTime;
+	private final UUID messageID;
+
+	private MessageCursor(ZonedDateTime creationTime, UUID messageID)
+	{
+		this.creationTime = creationTime;
+		this.messageID = messageID;
+	}
+
+	public ZonedDateTime getCreationTime()
+	{
+		return creationTime;
+	}
+
+	public UUID getMessageID()
+	{
+		return messageID;
+	}
+
+	public String format()
+	{
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((creationTime.toString() + SEPARATOR + messageID).getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static MessageCursor createInstance(MessageDTO message)
+	{
+		return new MessageCursor(message.getCreationTime(), message.getID());
+	}
+
+	public static MessageCursor parse(String cursor)
+	{
+		try
+		{
+			String decodedCursor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separatorIndex = decodedCursor.lastIndexOf(SEPARATOR);
+			if (separatorIndex < 0)
+			{
+				throw InvalidDataException.invalidCursor(cursor);
+			}
+			return new MessageCursor(ZonedDateTime.parse(decodedCursor.substring(0, separatorIndex)),
+					UUID.fromString(decodedCursor.substring(separatorIndex + 1)));
+		}
+		catch (IllegalArgumentException | DateTimeParseException e)
+		{
+			throw InvalidDataException.invalidCursor(cursor);
+		}
+	}
+}
@@ -7,16 +7,23 @@ package nu.yona.server.messaging.service;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
@@ -37,6 +44,9 @@ public class MessageService
 	@Autowired
 	private TheDTOManager dtoManager;
 
+	@PersistenceContext
+	private EntityManager entityManager;
+
 	@Transactional
 	public Page<MessageDTO> getReceivedMessages(UUID userID, boolean onlyUnreadMessages, Pageable pageable)
 	{
@@ -44,6 +54,48 @@ public class MessageService
 		return wrapMessagesAsDTOs(user, getReceivedMessageEntities(user, onlyUnreadMessages, pageable), pageable);
 	}
 
+	/*
+	 * Alternative to the paged variant above, for clients that page through the messages by cursor. Deep pages are as cheap as the
+	 * first one, and the messages are not counted.
+	 */
+	@Transactional
+	public Slice<MessageDTO> getReceivedMessages(UUID userID, boolean onlyUnreadMessages, Optional<MessageCursor> cursor,
+			int pageSize)
+	{
+		UserDTO user = userService.getPrivateValidatedUser(userID);
+		transferDirectMessagesToAnonymousDestination(user);
+
+		Pageable pageable = new PageRequest(0, pageSize);
+		Slice<Message> messageEntities = getAnonymousMessageSource(user).getReceivedMessages(cursor, pageable,
+				onlyUnreadMessages);
+		return new SliceImpl<>(wrapMessagesAsDTOs(user, messageEntities.getContent()), pageable, messageEntities.hasNext());
+	}
+
+	@Transactional
+	public long countReceivedMessages(UUID userID, boolean onlyUnreadMessages)
+	{
+		UserDTO user = userService.getPrivateValidatedUser(userID);
+		transferDirectMessagesToAnonymousDestination(user);
+
+		return getAnonymousMessageSource(user).getDestination().countReceivedMessages(onlyUnreadMessages);
+	}
+
+	/*
+	 * Returns the maintained unread message count and last message creation time, so apps can poll this instead of the messages.
+	 * Direct messages are not transferred to the anonymous destination here, so both destinations are included.
+	 */
+	@Transactional
+	public InboxSummaryDTO getInboxSummary(UUID userID)
+	{
+		UserDTO user = userService.getPrivateValidatedUser(userID);
+
+		MessageDestination namedDestination = MessageDestination.getRepository()
+				.findOne(user.getPrivateData().getNamedMessageDestinationID());
+		MessageDestination anonymousDestination = MessageDestination.getRepository()
+				.findOne(user.getPrivateData().getAnonymousMessageDestinationID());
+		return InboxSummaryDTO.createInstance(namedDestination, anonymousDestination);
+	}
+
 	@Transactional
 	public Page<Message> getReceivedMessageEntities(UUID userID, Pageable pageable)
 	{
@@ -86,29 +138,32 @@ public class MessageService
 		MessageSource messageSource = getAnonymousMessageSource(user);
 		Message message = messageSource.getMessage(id);
 
-		deleteMessage(user, message, messageSource.getDestination());
+		deleteMessage(user, messageSource.getDestination(), message);
 
 		return MessageActionDTO.createInstanceActionDone();
 	}
 
 	private void transferDirectMessagesToAnonymousDestination(UserDTO user)
 	{
+		// Check for pending direct messages first, so a read without them does not load the named message source
+		if (!Message.getRepository().existsInDestination(user.getPrivateData().getNamedMessageDestinationID()))
+		{
+			return;
+		}
+
 		MessageSource directMessageSource = getNamedMessageSource(user);
-		MessageDestination directMessageDestination = directMessageSource.getDestination();
 		Page<Message> directMessages = directMessageSource.getMessages(null);
 
 		MessageSource anonymousMessageSource = getAnonymousMessageSource(user);
 		MessageDestination anonymousMessageDestination = anonymousMessageSource.getDestination();
 		for (Message directMessage : directMessages)
 		{
-			directMessageDestination.remove(directMessage);
-			anonymousMessageDestination.send(directMessage);
+			anonymousMessageDestination.transfer(directMessage);
+			Message.getRepository().save(directMessage);
 		}
-		MessageDestination.getRepository().save(directMessageDestination);
-		MessageDestination.getRepository().save(anonymousMessageDestination);
 	}
 
-	private void deleteMessage(UserDTO user, Message message, MessageDestination destination)
+	private void deleteMessage(UserDTO user, MessageDestination destination, Message message)
 	{
 		MessageDTO messageDTO = dtoManager.createInstance(user, message);
 		if (!messageDTO.canBeDeleted())
@@ -117,7 +172,6 @@ public class MessageService
 		}
 
 		destination.remove(message);
-		MessageDestination.getRepository().save(destination);
 	}
 
 	private MessageSource getNamedMessageSource(UserDTO user)
@@ -197,7 +251,7 @@ public class MessageService
 	{
 		MessageDestination destinationEntity = MessageDestination.getRepository().findOne(destination.getID());
 		destinationEntity.send(message);
-		MessageDestination.getRepository().save(destinationEntity);
+		Message.getRepository().save(message);
 	}
 
 	@Transactional
@@ -210,13 +264,24 @@ public class MessageService
 
 		MessageDestination destinationEntity = MessageDestination.getRepository().findOne(destination.getID());
 		destinationEntity.removeMessagesFromUser(sentByUserAnonymizedID);
-		MessageDestination.getRepository().save(destinationEntity);
 	}
 
 	@Transactional
 	public void broadcastMessageToBuddies(UserAnonymizedDTO userAnonymized, Supplier<Message> messageSupplier)
 	{
-		userAnonymized.getBuddyDestinations().stream().forEach(destination -> sendMessage(messageSupplier.get(), destination));
+		Set<UUID> destinationIDs = userAnonymized.getBuddyDestinations().stream().map(MessageDestinationDTO::getID)
+				.collect(Collectors.toSet());
+		if (destinationIDs.isEmpty())
+		{
+			return;
+		}
+		Map<MessageDestination, Message> messagesByDestination = new HashMap<>();
+		// Load all destinations in one query
+		MessageDestination.getRepository().findAll(destinationIDs)
+				.forEach(d -> messagesByDestination.put(d, messageSupplier.get()));
+		MessageDestination.send(messagesByDestination);
+		// Persist rather than save, as saving a message with an ID first selects it. The inserts are batched on flush
+		messagesByDestination.values().forEach(entityManager::persist);
 	}
 
 	@Transactional
@@ -12,6 +12,19 @@ public class AnalysisServiceProperties
 	private Duration updateSkipWindow = Duration.ofSeconds(5);
 	private Duration activityMemory = Duration.ofDays(490);
 	private String serviceUrl = "http://localhost:8081";
+	private boolean isQueueEnabled = false;
+	private String queueJournalDirectory = "activityQueue";
+	private int queueCapacity = 100000;
+	private int queueJournalSegmentSize = 10000;
+	private int queueWorkerCount = 8;
+	private Duration userAnonymizedLockTimeout = Duration.ofMinutes(1);
+	private boolean isDistributedLockingEnabled = false;
+	private int lastActivityNearCacheSize = 100000;
+	private Duration lastActivityNearCacheTimeToLive = Duration.ofMinutes(15);
+	private Duration lastActivityClusterCacheTimeToLive = Duration.ofDays(1);
+	private Duration activityEndTimeFlushInterval = Duration.ZERO;
+	private Duration closedIntervalMaxAge = Duration.ofHours(1);
+	private long activityResponseCacheSize = 64L * 1024 * 1024;
 
 	public Duration getActivityMemory()
 	{
@@ -52,4 +65,167 @@ public class AnalysisServiceProperties
 	{
 		this.serviceUrl = serviceUrl;
 	}
+
+	/**
+	 * If true, the analysis engine queues the network and app activities it receives and acknowledges them immediately. The
+	 * activities are analyzed asynchronously.
+	 */
+	public boolean isQueueEnabled()
+	{
+		return isQueueEnabled;
+	}
+
+	public void setQueueEnabled(boolean isQueueEnabled)
+	{
+		this.isQueueEnabled = isQueueEnabled;
+	}
+
+	public String getQueueJournalDirectory()
+	{
+		return queueJournalDirectory;
+	}
+
+	public void setQueueJournalDirectory(String queueJournalDirectory)
+	{
+		this.queueJournalDirectory = queueJournalDirectory;
+	}
+
+	/**
+	 * The maximum number of activities in a segment of the activity journal. A segment is deleted when all its activities are
+	 * processed.
+	 */
+	public int getQueueJournalSegmentSize()
+	{
+		return queueJournalSegmentSize;
+	}
+
+	public void setQueueJournalSegmentSize(int queueJournalSegmentSize)
+	{
+		this.queueJournalSegmentSize = queueJournalSegmentSize;
+	}
+
+	public int getQueueCapacity()
+	{
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity)
+	{
+		this.queueCapacity = queueCapacity;
+	}
+
+	public int getQueueWorkerCount()
+	{
+		return queueWorkerCount;
+	}
+
+	public void setQueueWorkerCount(int queueWorkerCount)
+	{
+		this.queueWorkerCount = queueWorkerCount;
+	}
+
+	/**
+	 * The maximum time to wait for the lock on a user anonymized entity. When it expires, the analysis of the activity fails, so a
+	 * single slow user cannot tie up all request threads.
+	 */
+	public Duration getUserAnonymizedLockTimeout()
+	{
+		return userAnonymizedLockTimeout;
+	}
+
+	public void setUserAnonymizedLockTimeout(String userAnonymizedLockTimeout)
+	{
+		this.userAnonymizedLockTimeout = Duration.parse(userAnonymizedLockTimeout);
+	}
+
+	/**
+	 * If true, the user anonymized locks are shared by all analysis engine service instances in the Hazelcast cluster. This is
+	 * required when running more than one instance.
+	 */
+	public boolean isDistributedLockingEnabled()
+	{
+		return isDistributedLockingEnabled;
+	}
+
+	public void setDistributedLockingEnabled(boolean isDistributedLockingEnabled)
+	{
+		this.isDistributedLockingEnabled = isDistributedLockingEnabled;
+	}
+
+	/**
+	 * The maximum number of last activities (one per user and goal) kept in the memory of this instance. When exceeded, the least
+	 * recently used ones are evicted.
+	 */
+	public int getLastActivityNearCacheSize()
+	{
+		return lastActivityNearCacheSize;
+	}
+
+	public void setLastActivityNearCacheSize(int lastActivityNearCacheSize)
+	{
+		this.lastActivityNearCacheSize = lastActivityNearCacheSize;
+	}
+
+	public Duration getLastActivityNearCacheTimeToLive()
+	{
+		return lastActivityNearCacheTimeToLive;
+	}
+
+	public void setLastActivityNearCacheTimeToLive(String lastActivityNearCacheTimeToLive)
+	{
+		this.lastActivityNearCacheTimeToLive = Duration.parse(lastActivityNearCacheTimeToLive);
+	}
+
+	public Duration getLastActivityClusterCacheTimeToLive()
+	{
+		return lastActivityClusterCacheTimeToLive;
+	}
+
+	public void setLastActivityClusterCacheTimeToLive(String lastActivityClusterCacheTimeToLive)
+	{
+		this.lastActivityClusterCacheTimeToLive = Duration.parse(lastActivityClusterCacheTimeToLive);
+	}
+
+	/**
+	 * The interval at which buffered activity end times are written to the database. Zero (the default) disables buffering, so
+	 * every update is written right away. The buffer is in memory, so a crash loses up to one interval of end times. It can only
+	 * be enabled for a single analysis engine service instance, i.e. without distributed locking.
+	 */
+	public Duration getActivityEndTimeFlushInterval()
+	{
+		return activityEndTimeFlushInterval;
+	}
+
+	public void setActivityEndTimeFlushInterval(String activityEndTimeFlushInterval)
+	{
+		this.activityEndTimeFlushInterval = Duration.parse(activityEndTimeFlushInterval);
+	}
+
+	/**
+	 * How long clients may cache the activity details of a day or week that has passed, without revalidating them. Activities can
+	 * still be reported for such an interval, e.g. by an app that was offline, so this should not be too long.
+	 */
+	public Duration getClosedIntervalMaxAge()
+	{
+		return closedIntervalMaxAge;
+	}
+
+	public void setClosedIntervalMaxAge(String closedIntervalMaxAge)
+	{
+		this.closedIntervalMaxAge = Duration.parse(closedIntervalMaxAge);
+	}
+
+	/**
+	 * The maximum number of bytes of rendered activity reports the app service keeps in memory. When exceeded, the least recently
+	 * used ones are evicted. Zero disables the cache.
+	 */
+	public long getActivityResponseCacheSize()
+	{
+		return activityResponseCacheSize;
+	}
+
+	public void setActivityResponseCacheSize(long activityResponseCacheSize)
+	{
+		this.activityResponseCacheSize = activityResponseCacheSize;
+	}
 }
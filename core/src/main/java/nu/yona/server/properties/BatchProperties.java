@@ -9,6 +9,7 @@ import java.time.Duration;
 public class BatchProperties
 {
 	private Duration pinResetRequestConfirmationCodeInterval = Duration.parse("PT10S");
+	private String inactivityEntityCreationCron = "0 0 3 * * *";
 
 	public Duration getPinResetRequestConfirmationCodeInterval()
 	{
@@ -20,4 +21,17 @@ public class BatchProperties
 		this.pinResetRequestConfirmationCodeInterval = Duration.parse(pinResetRequestConfirmationCodeInterval);
 	}
 
+	/**
+	 * @return The cron expression that determines when the missing inactivity entities are created
+	 */
+	public String getInactivityEntityCreationCron()
+	{
+		return inactivityEntityCreationCron;
+	}
+
+	public void setInactivityEntityCreationCron(String inactivityEntityCreationCron)
+	{
+		this.inactivityEntityCreationCron = inactivityEntityCreationCron;
+	}
+
 }
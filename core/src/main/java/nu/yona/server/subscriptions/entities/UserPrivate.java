@@ -17,12 +17,14 @@ import javax.persistence.Entity;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
+import nu.yona.server.analysis.entities.ActivityVersion;
 import nu.yona.server.crypto.CryptoUtil;
 import nu.yona.server.crypto.StringFieldEncrypter;
 import nu.yona.server.crypto.UUIDFieldEncrypter;
 import nu.yona.server.entities.EntityWithID;
 import nu.yona.server.goals.entities.Goal;
 import nu.yona.server.messaging.entities.MessageSource;
+import nu.yona.server.util.TimeUtil;
 
 @Entity
 @Table(name = "USERS_PRIVATE")
@@ -84,6 +86,7 @@ public class UserPrivate extends EntityWithID
 	{
 		UserAnonymized userAnonymized = UserAnonymized.createInstance(anonymousMessageSource.getDestination(), goals);
 		UserAnonymized.getRepository().save(userAnonymized);
+		ActivityVersion.getRepository().save(ActivityVersion.createInstance(userAnonymized.getID(), TimeUtil.utcNow()));
 		return new UserPrivate(UUID.randomUUID(), nickname, userAnonymized.getID(), vpnPassword, anonymousMessageSource.getID(),
 				namedMessageSource.getID());
 	}
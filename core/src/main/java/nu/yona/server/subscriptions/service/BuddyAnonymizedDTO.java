@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.subscriptions.service;
+
+import java.io.Serializable;
+import java.util.Optional;
+import java.util.UUID;
+
+import nu.yona.server.messaging.service.MessageDestinationDTO;
+import nu.yona.server.subscriptions.entities.BuddyAnonymized;
+import nu.yona.server.subscriptions.entities.BuddyAnonymized.Status;
+
+/**
+ * Immutable snapshot of a buddy relationship from the anonymized side, as part of the cached {@link UserAnonymizedDTO}. It holds
+ * what is needed to send messages to the buddy, so that does not require loading the buddy entities.
+ */
+public class BuddyAnonymizedDTO implements Serializable
+{
+	private static final long serialVersionUID = -5016271582417930934L;
+
+	private final UUID id;
+	private final UUID userAnonymizedID;
+	private final Status sendingStatus;
+	private final UUID anonymousDestinationID;
+
+	private BuddyAnonymizedDTO(UUID id, UUID userAnonymizedID, Status sendingStatus, UUID anonymousDestinationID)
+	{
+		this.id = id;
+		this.userAnonymizedID = userAnonymizedID;
+		this.sendingStatus = sendingStatus;
+		this.anonymousDestinationID = anonymousDestinationID;
+	}
+
+	static BuddyAnonymizedDTO createInstance(BuddyAnonymized entity)
+	{
+		UUID anonymousDestinationID = entity.getUserAnonymizedID().isPresent()
+				? entity.getUserAnonymized().getAnonymousDestination().getID() : null;
+		return new BuddyAnonymizedDTO(entity.getID(), entity.getUserAnonymizedID().orElse(null), entity.getSendingStatus(),
+				anonymousDestinationID);
+	}
+
+	public UUID getID()
+	{
+		return id;
+	}
+
+	/**
+	 * Returns the ID of the anonymized buddy user.
+	 * 
+	 * @return The ID of the anonymized buddy user. Empty if the buddy did not accept the relationship yet, or disconnected.
+	 */
+	public Optional<UUID> getUserAnonymizedID()
+	{
+		return Optional.ofNullable(userAnonymizedID);
+	}
+
+	public Status getSendingStatus()
+	{
+		return sendingStatus;
+	}
+
+	public Optional<MessageDestinationDTO> getAnonymousDestination()
+	{
+		return Optional.ofNullable(anonymousDestinationID).map(MessageDestinationDTO::new);
+	}
+}
@@ -134,7 +134,7 @@ public class BuddyConnectResponseMessageDTO extends BuddyMessageLinkedUserDTO
 			}
 			else
 			{
-				buddyService.setBuddyAcceptedWithSecretUserInfo(connectResponseMessageEntity.getBuddyID(),
+				buddyService.setBuddyAcceptedWithSecretUserInfo(actingUser, connectResponseMessageEntity.getBuddyID(),
 						connectResponseMessageEntity.getRelatedUserAnonymizedID().get(),
 						connectResponseMessageEntity.getSenderNickname());
 			}
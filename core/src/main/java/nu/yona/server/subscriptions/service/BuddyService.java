@@ -319,7 +319,7 @@ public class BuddyService
 		User.getRepository().save(user);
 	}
 
-	public void setBuddyAcceptedWithSecretUserInfo(UUID buddyID, UUID userAnonymizedID, String nickname)
+	public void setBuddyAcceptedWithSecretUserInfo(UserDTO actingUser, UUID buddyID, UUID userAnonymizedID, String nickname)
 	{
 		Buddy buddy = Buddy.getRepository().findOne(buddyID);
 		if (buddy == null)
@@ -337,6 +337,7 @@ public class BuddyService
 		}
 		buddy.setUserAnonymizedID(userAnonymizedID);
 		buddy.setNickName(nickname);
+		userAnonymizedService.evictUserAnonymized(actingUser.getPrivateData().getUserAnonymizedID());
 	}
 
 	public Set<BuddyDTO> getBuddies(Set<UUID> buddyIDs)
@@ -408,6 +409,7 @@ public class BuddyService
 		buddyAnonymized.ifPresent(ba -> {
 			ba.setDisconnected();
 			BuddyAnonymized.getRepository().save(ba);
+			userAnonymizedService.evictUserAnonymized(buddyUserAnonymized.getID());
 		});
 		// Else: user who requested buddy relationship didn't process the accept message yet
 	}
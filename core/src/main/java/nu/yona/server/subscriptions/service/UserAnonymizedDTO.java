@@ -5,8 +5,15 @@
 package nu.yona.server.subscriptions.service;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -14,6 +21,7 @@ import java.util.stream.Collectors;
 
 import nu.yona.server.goals.entities.ActivityCategory;
 import nu.yona.server.goals.entities.Goal;
+import nu.yona.server.goals.service.ActivityCategoryDTO;
 import nu.yona.server.goals.service.GoalDTO;
 import nu.yona.server.messaging.service.MessageDestinationDTO;
 import nu.yona.server.subscriptions.entities.BuddyAnonymized;
@@ -27,22 +35,25 @@ public class UserAnonymizedDTO implements Serializable
 	private final UUID id;
 	private final Set<GoalDTO> goals;
 	private final MessageDestinationDTO anonymousMessageDestination;
-	private final Set<UUID> buddyAnonymizedIDs;
+	private final Set<BuddyAnonymizedDTO> buddiesAnonymized;
+	// Precomputed for the analysis engine, which needs to find the matching goals for every activity
+	private final Map<UUID, List<ActiveGoal>> activeGoalsByActivityCategoryID;
 
 	public UserAnonymizedDTO(UUID id, Set<GoalDTO> goals, MessageDestinationDTO anonymousMessageDestination,
-			Set<UUID> buddyAnonymizedIDs)
+			Set<BuddyAnonymizedDTO> buddiesAnonymized)
 	{
 		this.id = id;
 		this.goals = new HashSet<>(goals);
 		this.anonymousMessageDestination = anonymousMessageDestination;
-		this.buddyAnonymizedIDs = buddyAnonymizedIDs;
+		this.buddiesAnonymized = buddiesAnonymized;
+		this.activeGoalsByActivityCategoryID = indexActiveGoals(goals);
 	}
 
 	public static UserAnonymizedDTO createInstance(UserAnonymized entity)
 	{
 		return new UserAnonymizedDTO(entity.getID(), getGoalsIncludingHistoryItems(entity),
 				MessageDestinationDTO.createInstance(entity.getAnonymousDestination()), entity.getBuddiesAnonymized().stream()
-						.map(buddyAnonymized -> buddyAnonymized.getID()).collect(Collectors.toSet()));
+						.map(BuddyAnonymizedDTO::createInstance).collect(Collectors.toSet()));
 	}
 
 	public UUID getID()
@@ -61,6 +72,27 @@ public class UserAnonymizedDTO implements Serializable
 				.collect(Collectors.toSet());
 	}
 
+	/**
+	 * Returns the active goals (so no history items) of this user for the given activity categories, that were created before
+	 * the given time.
+	 */
+	public Set<GoalDTO> getActiveGoalsForActivityCategories(Set<ActivityCategoryDTO> activityCategories, Instant createdBefore)
+	{
+		Set<GoalDTO> matchingGoals = new HashSet<>();
+		for (ActivityCategoryDTO activityCategory : activityCategories)
+		{
+			for (ActiveGoal activeGoal : activeGoalsByActivityCategoryID.getOrDefault(activityCategory.getID(),
+					Collections.emptyList()))
+			{
+				if (activeGoal.creationTime.isBefore(createdBefore))
+				{
+					matchingGoals.add(activeGoal.goal);
+				}
+			}
+		}
+		return matchingGoals;
+	}
+
 	public String getTimeZoneId()
 	{
 		return "Europe/Amsterdam";
@@ -73,16 +105,22 @@ public class UserAnonymizedDTO implements Serializable
 
 	public Set<MessageDestinationDTO> getBuddyDestinations()
 	{
-		return buddyAnonymizedIDs.stream().map(id -> BuddyAnonymized.getRepository().findOne(id))
-				.filter(ba -> ba.getSendingStatus() == Status.ACCEPTED)
-				.map(ba -> MessageDestinationDTO.createInstance(ba.getUserAnonymized().getAnonymousDestination()))
+		return buddiesAnonymized.stream().filter(ba -> ba.getSendingStatus() == Status.ACCEPTED)
+				.map(BuddyAnonymizedDTO::getAnonymousDestination).filter(Optional::isPresent).map(Optional::get)
 				.collect(Collectors.toSet());
 	}
 
+	public Set<BuddyAnonymizedDTO> getBuddiesAnonymized()
+	{
+		return Collections.unmodifiableSet(buddiesAnonymized);
+	}
+
 	public Optional<BuddyAnonymized> getBuddyAnonymized(UUID fromUserAnonymizedID)
 	{
-		return buddyAnonymizedIDs.stream().map(id -> BuddyAnonymized.getRepository().findOne(id))
-				.filter(ba -> ba.getUserAnonymizedID().filter(id -> id.equals(fromUserAnonymizedID)).isPresent()).findAny();
+		// Only the matching buddy is loaded, as the caller needs the entity to update it
+		return buddiesAnonymized.stream()
+				.filter(ba -> ba.getUserAnonymizedID().filter(id -> id.equals(fromUserAnonymizedID)).isPresent()).findAny()
+				.map(ba -> BuddyAnonymized.getRepository().findOne(ba.getID()));
 	}
 
 	public Optional<LocalDateTime> getOldestGoalCreationTime()
@@ -96,6 +134,14 @@ public class UserAnonymizedDTO implements Serializable
 		return goal;
 	}
 
+	private static Map<UUID, List<ActiveGoal>> indexActiveGoals(Set<GoalDTO> goals)
+	{
+		Map<UUID, List<ActiveGoal>> activeGoalsByActivityCategoryID = new HashMap<>();
+		goals.stream().filter(g -> !g.isHistoryItem()).forEach(g -> activeGoalsByActivityCategoryID
+				.computeIfAbsent(g.getActivityCategoryID(), id -> new ArrayList<>()).add(new ActiveGoal(g)));
+		return activeGoalsByActivityCategoryID;
+	}
+
 	static Set<GoalDTO> getGoalsIncludingHistoryItems(UserAnonymized userAnonymizedEntity)
 	{
 		Set<Goal> activeGoals = userAnonymizedEntity.getGoals();
@@ -121,6 +167,21 @@ public class UserAnonymizedDTO implements Serializable
 
 	public boolean hasAnyBuddies()
 	{
-		return !buddyAnonymizedIDs.isEmpty();
+		return !buddiesAnonymized.isEmpty();
+	}
+
+	private static class ActiveGoal implements Serializable
+	{
+		private static final long serialVersionUID = -1590282327409915113L;
+
+		final GoalDTO goal;
+		final Instant creationTime;
+
+		ActiveGoal(GoalDTO goal)
+		{
+			this.goal = goal;
+			// Goals without a creation time are considered to have existed forever
+			this.creationTime = goal.getCreationTime().map(t -> t.toInstant(ZoneOffset.UTC)).orElse(Instant.MIN);
+		}
 	}
 }
@@ -45,6 +45,15 @@ public class UserAnonymizedService
 		return UserAnonymizedDTO.createInstance(savedEntity);
 	}
 
+	/*
+	 * The cached DTO includes the status of the buddies, so call this when that changes without saving the user anonymized
+	 * entity.
+	 */
+	@CacheEvict(key = "#userAnonymizedID")
+	public void evictUserAnonymized(UUID userAnonymizedID)
+	{
+	}
+
 	@CacheEvict(key = "#userAnonymizedID")
 	public void deleteUserAnonymized(UUID userAnonymizedID)
 	{
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import nu.yona.server.analysis.entities.ActivityVersion;
 import nu.yona.server.analysis.entities.DayActivity;
 import nu.yona.server.analysis.entities.WeekActivity;
 import nu.yona.server.crypto.CryptoSession;
@@ -393,6 +394,7 @@ public class UserService
 
 		WeekActivity.getRepository().deleteAllForUser(userEntity.getUserAnonymizedID());
 		DayActivity.getRepository().deleteAllForUser(userEntity.getUserAnonymizedID());
+		ActivityVersion.getRepository().deleteForUser(userEntity.getUserAnonymizedID());
 
 		UUID vpnLoginID = userEntity.getVPNLoginID();
 		UUID userAnonymizedID = userEntity.getUserAnonymizedID();
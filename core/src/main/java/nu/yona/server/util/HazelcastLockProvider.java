@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.util;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+
+/**
+ * Provides locks that are shared by all members of a Hazelcast cluster, so multiple service instances can serialize their work on
+ * the same ID. The locks are the key locks of a distributed map. Unlike named Hazelcast locks, these do not leave a distributed
+ * object behind for every ID ever locked. Locks held by a member that leaves the cluster are released automatically.
+ */
+public class HazelcastLockProvider<T> implements LockProvider<T>
+{
+	private final IMap<T, Object> lockMap;
+
+	/**
+	 * @param hazelcastInstance The Hazelcast instance through which to access the cluster
+	 * @param name The name of the distributed map used for the locks. Each lock pool should have its own name.
+	 */
+	public HazelcastLockProvider(HazelcastInstance hazelcastInstance, String name)
+	{
+		lockMap = hazelcastInstance.getMap(name);
+	}
+
+	@Override
+	public boolean tryLock(T id)
+	{
+		return lockMap.tryLock(id);
+	}
+
+	@Override
+	public boolean lock(T id, Optional<Duration> timeout) throws InterruptedException
+	{
+		if (timeout.isPresent())
+		{
+			return lockMap.tryLock(id, timeout.get().toNanos(), TimeUnit.NANOSECONDS);
+		}
+		lockMap.lock(id);
+		return true;
+	}
+
+	@Override
+	public void unlock(T id)
+	{
+		lockMap.unlock(id);
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.util;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Provides locks that are local to this JVM. Every ID has its own lock object, which is created when the ID gets locked and removed
+ * again when no thread holds or waits for it anymore.
+ */
+public class LocalLockProvider<T> implements LockProvider<T>
+{
+	private static class KeyLock
+	{
+		final ReentrantLock lock = new ReentrantLock();
+		// Only accessed within the atomic compute functions of the map
+		int referenceCount;
+	}
+
+	private final ConcurrentMap<T, KeyLock> pool = new ConcurrentHashMap<>();
+
+	@Override
+	public boolean tryLock(T id)
+	{
+		if (reference(id).lock.tryLock())
+		{
+			return true;
+		}
+		dereference(id);
+		return false;
+	}
+
+	@Override
+	public boolean lock(T id, Optional<Duration> timeout) throws InterruptedException
+	{
+		KeyLock keyLock = reference(id);
+		boolean isLocked = false;
+		try
+		{
+			if (timeout.isPresent())
+			{
+				isLocked = keyLock.lock.tryLock(timeout.get().toNanos(), TimeUnit.NANOSECONDS);
+			}
+			else
+			{
+				keyLock.lock.lockInterruptibly();
+				isLocked = true;
+			}
+			return isLocked;
+		}
+		finally
+		{
+			if (!isLocked)
+			{
+				dereference(id);
+			}
+		}
+	}
+
+	@Override
+	public void unlock(T id)
+	{
+		KeyLock keyLock = pool.get(id);
+		if (keyLock == null)
+		{
+			throw new IllegalMonitorStateException("ID " + id + " is not locked");
+		}
+		keyLock.lock.unlock();
+		dereference(id);
+	}
+
+	/**
+	 * @return The number of IDs that are currently locked or waited for.
+	 */
+	public int getActiveLockCount()
+	{
+		return pool.size();
+	}
+
+	private KeyLock reference(T id)
+	{
+		return pool.compute(id, (k, keyLock) -> {
+			KeyLock referencedKeyLock = (keyLock == null) ? new KeyLock() : keyLock;
+			referencedKeyLock.referenceCount++;
+			return referencedKeyLock;
+		});
+	}
+
+	private void dereference(T id)
+	{
+		pool.computeIfPresent(id, (k, keyLock) -> (--keyLock.referenceCount == 0) ? null : keyLock);
+	}
+}
@@ -4,93 +4,127 @@
  *******************************************************************************/
 package nu.yona.server.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 import nu.yona.server.exceptions.YonaException;
 
+/**
+ * Pool of reentrant locks, one per ID. Threads locking different IDs do not contend with each other. The locks themselves are
+ * provided by a {@link LockProvider}, so they can be local to this JVM or shared across a cluster. Optionally, waiting for a lock
+ * is limited to a timeout. The pool keeps statistics on how long threads wait for their locks.
+ */
 public class LockPool<T>
 {
-	private enum LockStatus
+	private final LockProvider<T> lockProvider;
+	private final Optional<Duration> timeout;
+	private final LongAdder acquisitionCount = new LongAdder();
+	private final LongAdder contendedAcquisitionCount = new LongAdder();
+	private final LongAdder timeoutCount = new LongAdder();
+	private final LongAdder totalWaitTimeNanos = new LongAdder();
+	private final LongAccumulator maxWaitTimeNanos = new LongAccumulator(Long::max, 0);
+
+	public LockPool()
 	{
-		FREE, LOCKED, LOCKED_BY_ME
+		this(new LocalLockProvider<>(), Optional.empty());
 	}
 
-	private final Map<T, Thread> pool = new HashMap<>();
+	/**
+	 * @param lockProvider Provides the actual locks
+	 * @param timeout The maximum time to wait for a lock. If it expires, {@link #lock(Object)} throws a
+	 *            {@link LockPoolException}.
+	 */
+	public LockPool(LockProvider<T> lockProvider, Optional<Duration> timeout)
+	{
+		this.lockProvider = lockProvider;
+		this.timeout = timeout;
+	}
 
 	public Lock lock(T id)
 	{
-		try
-		{
-			synchronized (pool)
-			{
-				LockStatus lockStatus;
-				while ((lockStatus = getLockStatus(id)) == LockStatus.LOCKED)
-				{
-					pool.wait();
-				}
-				if (lockStatus == LockStatus.FREE)
-				{
-					storeLock(id);
-				}
-				return new Lock(id, lockStatus == LockStatus.FREE);
-			}
-		}
-		catch (InterruptedException e)
-		{
-			throw YonaException.unexpected(e);
-		}
+		acquire(id);
+		return new Lock(id);
 	}
 
-	private LockStatus getLockStatus(T id)
+	public long getAcquisitionCount()
 	{
-		Thread thread = pool.get(id);
-		if (thread == null)
-		{
-			return LockStatus.FREE;
-		}
-		if (thread == Thread.currentThread())
-		{
-			return LockStatus.LOCKED_BY_ME;
-		}
-		return LockStatus.LOCKED;
+		return acquisitionCount.sum();
 	}
 
-	private void storeLock(T id)
+	/**
+	 * @return The number of acquisitions for which the thread had to wait, as the lock was held by another thread.
+	 */
+	public long getContendedAcquisitionCount()
 	{
-		if (pool.put(id, Thread.currentThread()) != null)
-		{
-			throw new IllegalStateException("Map already contains a locking thread for ID " + id);
-		}
+		return contendedAcquisitionCount.sum();
+	}
+
+	public long getTimeoutCount()
+	{
+		return timeoutCount.sum();
+	}
+
+	public Duration getTotalWaitTime()
+	{
+		return Duration.ofNanos(totalWaitTimeNanos.sum());
 	}
 
-	private void unlock(T id)
+	public Duration getMaxWaitTime()
 	{
-		synchronized (pool)
+		return Duration.ofNanos(maxWaitTimeNanos.get());
+	}
+
+	private void acquire(T id)
+	{
+		acquisitionCount.increment();
+		if (lockProvider.tryLock(id))
+		{
+			// Uncontended or reentrant
+			return;
+		}
+		contendedAcquisitionCount.increment();
+		long startTime = System.nanoTime();
+		try
+		{
+			if (!lockProvider.lock(id, timeout))
+			{
+				timeoutCount.increment();
+				throw LockPoolException.timeout(id, timeout.get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			throw YonaException.unexpected(e);
+		}
+		finally
 		{
-			pool.remove(id);
-			pool.notifyAll();
+			long waitTime = System.nanoTime() - startTime;
+			totalWaitTimeNanos.add(waitTime);
+			maxWaitTimeNanos.accumulate(waitTime);
 		}
 	}
 
 	public class Lock implements AutoCloseable
 	{
 		private final T id;
-		private final boolean mustUnlock;
+		private boolean isClosed;
 
-		private Lock(T id, boolean mustUnlock)
+		private Lock(T id)
 		{
 			this.id = id;
-			this.mustUnlock = mustUnlock;
 		}
 
 		@Override
 		public void close()
 		{
-			if (mustUnlock)
+			if (isClosed)
 			{
-				unlock(id);
+				return;
 			}
+			isClosed = true;
+			lockProvider.unlock(id);
 		}
 	}
 }
@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.util;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpStatus;
+
+import nu.yona.server.exceptions.YonaException;
+
+public class LockPoolException extends YonaException
+{
+	private static final long serialVersionUID = -4618302573913384615L;
+
+	private LockPoolException(HttpStatus statusCode, String messageId, Object... parameters)
+	{
+		super(statusCode, messageId, parameters);
+	}
+
+	public static LockPoolException timeout(Object id, Duration timeout)
+	{
+		return new LockPoolException(HttpStatus.SERVICE_UNAVAILABLE, "error.lock.timeout", id, timeout);
+	}
+}
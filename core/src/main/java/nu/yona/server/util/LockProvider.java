@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.util;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Provides the actual locks behind a {@link LockPool}. The locks are reentrant and owned by the thread that locked them.
+ */
+public interface LockProvider<T>
+{
+	/**
+	 * Locks the given ID if it is available immediately.
+	 * 
+	 * @return true if the lock was acquired
+	 */
+	boolean tryLock(T id);
+
+	/**
+	 * Locks the given ID, waiting for it to become available.
+	 * 
+	 * @param timeout The maximum time to wait. When absent, waits indefinitely.
+	 * @return true if the lock was acquired, false if the timeout expired
+	 */
+	boolean lock(T id, Optional<Duration> timeout) throws InterruptedException;
+
+	void unlock(T id);
+}
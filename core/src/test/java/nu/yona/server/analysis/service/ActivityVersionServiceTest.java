@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.analysis.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import nu.yona.server.analysis.entities.ActivityVersion;
+import nu.yona.server.analysis.entities.ActivityVersionRepository;
+import nu.yona.server.util.TimeUtil;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ActivityVersionServiceTest
+{
+	private static final ZoneId ZONE = ZoneId.of("Europe/Amsterdam");
+
+	@Mock
+	private ActivityVersionRepository mockActivityVersionRepository;
+	@InjectMocks
+	private final ActivityVersionService service = new ActivityVersionService();
+
+	private final UUID userAnonymizedID = UUID.randomUUID();
+
+	@Test
+	public void getVersionInitiallyZero()
+	{
+		ActivityVersionDTO version = service.getVersion(userAnonymizedID);
+
+		assertThat(version.getVersion(), equalTo(0L));
+		assertThat(version.getLastModified().isPresent(), equalTo(false));
+	}
+
+	@Test
+	public void getVersionReturnsStoredVersion()
+	{
+		LocalDateTime lastModified = TimeUtil.utcNow();
+		when(mockActivityVersionRepository.findOne(userAnonymizedID)).thenReturn(createActivityVersion(5, lastModified));
+
+		ActivityVersionDTO version = service.getVersion(userAnonymizedID);
+
+		assertThat(version.getVersion(), equalTo(5L));
+		assertThat(version.getLastModified().get(), equalTo(lastModified));
+	}
+
+	@Test
+	public void incrementVersionUpdatesExistingVersion()
+	{
+		when(mockActivityVersionRepository.increment(eq(userAnonymizedID), any())).thenReturn(1);
+
+		service.incrementVersion(userAnonymizedID);
+
+		verify(mockActivityVersionRepository, times(1)).increment(eq(userAnonymizedID), any());
+		verify(mockActivityVersionRepository, never()).save(any(ActivityVersion.class));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void incrementVersionDoesNotCreateMissingVersion()
+	{
+		// The version is created along with the user, so concurrent increments cannot race to create it
+		when(mockActivityVersionRepository.increment(eq(userAnonymizedID), any())).thenReturn(0);
+
+		try
+		{
+			service.incrementVersion(userAnonymizedID);
+		}
+		finally
+		{
+			verify(mockActivityVersionRepository, never()).save(any(ActivityVersion.class));
+		}
+	}
+
+	@Test
+	public void createdVersionIsFirstVersionOfUser()
+	{
+		ActivityVersion activityVersion = ActivityVersion.createInstance(userAnonymizedID, TimeUtil.utcNow());
+
+		assertThat(activityVersion.getID(), equalTo(userAnonymizedID));
+		assertThat(activityVersion.getVersion(), equalTo(1L));
+	}
+
+	@Test
+	public void eTagChangesWhenVersionIncremented()
+	{
+		LocalDate today = LocalDate.now(ZONE);
+		ActivityVersionDTO version1 = ActivityVersionDTO.createInstance(createActivityVersion(1, TimeUtil.utcNow()));
+		ActivityVersionDTO version2 = ActivityVersionDTO.createInstance(createActivityVersion(2, TimeUtil.utcNow()));
+
+		assertThat(version1.getETag(today), equalTo("\"1-" + today + "\""));
+		assertThat(version2.getETag(today), not(equalTo(version1.getETag(today))));
+		assertThat(ActivityVersionDTO.createInitialInstance().getETag(today), not(equalTo(version1.getETag(today))));
+	}
+
+	@Test
+	public void eTagChangesOnNewDay()
+	{
+		LocalDate today = LocalDate.now(ZONE);
+		ActivityVersionDTO version = ActivityVersionDTO.createInstance(createActivityVersion(1, TimeUtil.utcNow()));
+
+		assertThat(version.getETag(today.plusDays(1)), not(equalTo(version.getETag(today))));
+	}
+
+	@Test
+	public void lastModifiedIsTimeOfLastChange()
+	{
+		LocalDate today = LocalDate.now(ZONE);
+		LocalDateTime lastChange = TimeUtil.utcNow();
+		ActivityVersionDTO version = ActivityVersionDTO.createInstance(createActivityVersion(1, lastChange));
+
+		assertThat(version.getLastModifiedEpochMillis(ZONE, today),
+				equalTo(TimeUtil.toUtcZonedDateTime(lastChange).toInstant().toEpochMilli()));
+	}
+
+	@Test
+	public void lastModifiedNotBeforeStartOfToday()
+	{
+		LocalDate today = LocalDate.now(ZONE);
+		long startOfToday = today.atStartOfDay(ZONE).toInstant().toEpochMilli();
+		ActivityVersionDTO version = ActivityVersionDTO
+				.createInstance(createActivityVersion(1, TimeUtil.utcNow().minusDays(2)));
+
+		assertThat(version.getLastModifiedEpochMillis(ZONE, today), equalTo(startOfToday));
+		assertThat(ActivityVersionDTO.createInitialInstance().getLastModifiedEpochMillis(ZONE, today), equalTo(startOfToday));
+	}
+
+	private ActivityVersion createActivityVersion(long version, LocalDateTime lastModified)
+	{
+		ActivityVersion activityVersion = mock(ActivityVersion.class);
+		when(activityVersion.getVersion()).thenReturn(version);
+		when(activityVersion.getLastModified()).thenReturn(lastModified);
+		return activityVersion;
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.junit.Test;
+
+import nu.yona.server.crypto.CipherPool.PooledCipher;
+
+public class CipherPoolTest
+{
+	private static final String RSA_CIPHER_TYPE = "RSA/ECB/PKCS1Padding";
+	private static final String AES_CIPHER_TYPE = "AES/GCM/NoPadding";
+
+	private final KeyPair keyPair = PublicKeyUtil.generateKeyPair();
+
+	@Test
+	public void testPublicKeyCipherReused() throws GeneralSecurityException
+	{
+		PooledCipher cipher = CipherPool.borrow(RSA_CIPHER_TYPE);
+		cipher.getCipher(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+		cipher.close();
+
+		PooledCipher reusedCipher = CipherPool.borrow(RSA_CIPHER_TYPE);
+		reusedCipher.close();
+
+		assertThat(reusedCipher, sameInstance(cipher));
+	}
+
+	@Test
+	public void testPrivateKeyCipherDiscarded() throws GeneralSecurityException
+	{
+		PooledCipher cipher = CipherPool.borrow(RSA_CIPHER_TYPE);
+		cipher.getCipher(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+		cipher.close();
+
+		PooledCipher nextCipher = CipherPool.borrow(RSA_CIPHER_TYPE);
+		nextCipher.close();
+
+		assertThat(nextCipher, not(sameInstance(cipher)));
+	}
+
+	@Test
+	public void testPublicKeyCipherDiscardedAfterPrivateKeyUse() throws GeneralSecurityException
+	{
+		PooledCipher cipher = CipherPool.borrow(RSA_CIPHER_TYPE);
+		cipher.getCipher(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+		cipher.getCipher(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+		cipher.close();
+
+		PooledCipher nextCipher = CipherPool.borrow(RSA_CIPHER_TYPE);
+		nextCipher.close();
+
+		assertThat(nextCipher, not(sameInstance(cipher)));
+	}
+
+	@Test
+	public void testSecretKeyCipherDiscarded() throws GeneralSecurityException
+	{
+		SecretKey secretKey = SecretKeyEncryptor.generateSecretKey();
+		PooledCipher cipher = CipherPool.borrow(AES_CIPHER_TYPE);
+		cipher.getCipherWithNewInitializationVector(secretKey);
+		cipher.close();
+
+		PooledCipher nextCipher = CipherPool.borrow(AES_CIPHER_TYPE);
+		nextCipher.close();
+
+		assertThat(nextCipher, not(sameInstance(cipher)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClosedSecretKeyCipherForgetsKey() throws GeneralSecurityException
+	{
+		PooledCipher cipher = CipherPool.borrow(AES_CIPHER_TYPE);
+		cipher.getCipherWithNewInitializationVector(SecretKeyEncryptor.generateSecretKey());
+		cipher.close();
+
+		cipher.getCurrentCipher();
+	}
+}
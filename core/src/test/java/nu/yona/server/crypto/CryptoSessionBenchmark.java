@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of starting a crypto session, which is done for every authenticated request. The uncached variant derives the
+ * secret key from the password, as every session did before the secret key cache was introduced. Run with
+ * <code>gradlew :core:benchmark -Pbenchmarks=CryptoSessionBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CryptoSessionBenchmark
+{
+	private static final String PASSWORD = "U4oYrfXYYHxWbYcBsP9b4nNNvUhn0ANkbAqcQPDeERMQ";
+
+	@Benchmark
+	public SecretKey deriveSecretKey()
+	{
+		return CryptoSession.deriveSecretKey(PASSWORD);
+	}
+
+	@Benchmark
+	public String executeCryptoSession()
+	{
+		return CryptoSession.execute(Optional.of(PASSWORD), () -> PASSWORD);
+	}
+}
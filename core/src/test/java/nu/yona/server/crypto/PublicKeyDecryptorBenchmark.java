@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the decryption of a page of messages, each with a few fields encrypted with the public key of the message destination.
+ * The variant with new ciphers looks up and initializes a cipher for every field, as the decryptor did before the cipher pool was
+ * introduced. Run with <code>gradlew :core:benchmark -Pbenchmarks=PublicKeyDecryptorBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PublicKeyDecryptorBenchmark
+{
+	private static final String CIPHER_TYPE = "RSA/ECB/PKCS1Padding";
+	private static final int MESSAGES_PER_PAGE = 20;
+	private static final int FIELDS_PER_MESSAGE = 3;
+
+	private KeyPair keyPair;
+	private byte[][] encryptedFields;
+
+	@Setup
+	public void setUp()
+	{
+		keyPair = PublicKeyUtil.generateKeyPair();
+		PublicKeyEncryptor encryptor = PublicKeyEncryptor.createInstance(keyPair.getPublic());
+		encryptedFields = new byte[MESSAGES_PER_PAGE * FIELDS_PER_MESSAGE][];
+		for (int i = 0; i < encryptedFields.length; i++)
+		{
+			encryptedFields[i] = encryptor.encrypt(UUID.randomUUID());
+		}
+	}
+
+	@Benchmark
+	public void decryptPageWithNewCiphers(Blackhole blackhole) throws GeneralSecurityException
+	{
+		for (byte[] encryptedField : encryptedFields)
+		{
+			Cipher decryptCipher = Cipher.getInstance(CIPHER_TYPE);
+			decryptCipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+			blackhole.consume(decryptCipher.doFinal(encryptedField));
+		}
+	}
+
+	@Benchmark
+	public void decryptPageWithPooledCiphers(Blackhole blackhole)
+	{
+		try (PublicKeyDecryptor decryptor = PublicKeyDecryptor.createInstance(keyPair.getPrivate()))
+		{
+			for (byte[] encryptedField : encryptedFields)
+			{
+				blackhole.consume(decryptor.decrypt(encryptedField));
+			}
+		}
+	}
+}
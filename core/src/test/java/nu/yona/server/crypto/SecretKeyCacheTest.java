@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKey;
+
+import org.junit.Test;
+
+public class SecretKeyCacheTest
+{
+	private static final String PASSWORD1 = "secret";
+	private static final String PASSWORD2 = "easy";
+
+	private final AtomicInteger derivationCount = new AtomicInteger();
+
+	@Test
+	public void testRepeatedPasswordDerivedOnce()
+	{
+		SecretKeyCache cache = new SecretKeyCache(10, Duration.ofMinutes(1));
+		SecretKey key1 = cache.getSecretKey(PASSWORD1, this::countingDeriveSecretKey);
+		SecretKey key2 = cache.getSecretKey(PASSWORD1, this::countingDeriveSecretKey);
+
+		assertThat(key2.getEncoded(), equalTo(key1.getEncoded()));
+		assertThat(derivationCount.get(), equalTo(1));
+	}
+
+	@Test
+	public void testDifferentPasswordsDerivedSeparately()
+	{
+		SecretKeyCache cache = new SecretKeyCache(10, Duration.ofMinutes(1));
+		SecretKey key1 = cache.getSecretKey(PASSWORD1, this::countingDeriveSecretKey);
+		SecretKey key2 = cache.getSecretKey(PASSWORD2, this::countingDeriveSecretKey);
+
+		assertThat(key2.getEncoded(), not(equalTo(key1.getEncoded())));
+		assertThat(derivationCount.get(), equalTo(2));
+	}
+
+	@Test
+	public void testKeyReturnedBeforeEvictionStaysValid()
+	{
+		SecretKeyCache cache = new SecretKeyCache(10, Duration.ofMinutes(1));
+		SecretKey key = cache.getSecretKey(PASSWORD1, this::countingDeriveSecretKey);
+		cache.invalidateAll();
+
+		assertThat(key.getEncoded(), equalTo(CryptoSession.deriveSecretKey(PASSWORD1).getEncoded()));
+		cache.getSecretKey(PASSWORD1, this::countingDeriveSecretKey);
+		assertThat(derivationCount.get(), equalTo(2));
+	}
+
+	@Test
+	public void testDisabledCacheAlwaysDerives()
+	{
+		SecretKeyCache cache = new SecretKeyCache(0, Duration.ofMinutes(1));
+		cache.getSecretKey(PASSWORD1, this::countingDeriveSecretKey);
+		cache.getSecretKey(PASSWORD1, this::countingDeriveSecretKey);
+
+		assertThat(derivationCount.get(), equalTo(2));
+	}
+
+	private SecretKey countingDeriveSecretKey(String password)
+	{
+		derivationCount.incrementAndGet();
+		return CryptoSession.deriveSecretKey(password);
+	}
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.crypto;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.crypto.SecretKey;
+
+import org.junit.Test;
+
+public class SecretKeyEncryptorTest
+{
+	private static final String PLAINTEXT = "Hello buddy";
+
+	private final SecretKey secretKey = SecretKeyEncryptor.generateSecretKey();
+
+	@Test
+	public void testRoundTrip()
+	{
+		SecretKeyEncryptor encryptor = SecretKeyEncryptor.createInstance(secretKey);
+		SecretKeyDecryptor decryptor = SecretKeyDecryptor.createInstance(secretKey.getEncoded());
+		UUID id = UUID.randomUUID();
+		Set<UUID> ids = Collections.singleton(UUID.randomUUID());
+
+		assertThat(decryptor.decryptString(encryptor.encrypt(PLAINTEXT)), equalTo(PLAINTEXT));
+		assertThat(decryptor.decryptUUID(encryptor.encrypt(id)), equalTo(id));
+		assertThat(decryptor.decryptLong(encryptor.encrypt(42L)), equalTo(42L));
+		assertThat(decryptor.decryptUUIDSet(encryptor.encrypt(ids)), equalTo(ids));
+		assertThat(decryptor.decryptString(encryptor.encrypt((String) null)), equalTo(null));
+	}
+
+	@Test
+	public void testInitializationVectorNotReused()
+	{
+		SecretKeyEncryptor encryptor = SecretKeyEncryptor.createInstance(secretKey);
+
+		assertThat(encryptor.encrypt(PLAINTEXT), not(equalTo(encryptor.encrypt(PLAINTEXT))));
+	}
+
+	@Test(expected = CryptoException.class)
+	public void testTamperedCiphertext()
+	{
+		byte[] ciphertext = SecretKeyEncryptor.createInstance(secretKey).encrypt(PLAINTEXT);
+		ciphertext[ciphertext.length - 1] ^= 1;
+
+		SecretKeyDecryptor.createInstance(secretKey).decryptString(ciphertext);
+	}
+
+	@Test(expected = CryptoException.class)
+	public void testOtherKey()
+	{
+		byte[] ciphertext = SecretKeyEncryptor.createInstance(secretKey).encrypt(PLAINTEXT);
+
+		SecretKeyDecryptor.createInstance(SecretKeyEncryptor.generateSecretKey()).decryptString(ciphertext);
+	}
+}
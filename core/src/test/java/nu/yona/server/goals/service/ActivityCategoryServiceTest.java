@@ -68,6 +68,37 @@ public class ActivityCategoryServiceTest extends ActivityCategoryServiceTestBase
 		assertThat(service.getActivityCategory(news.getID()).getName(), equalTo("news"));
 	}
 
+	/*
+	 * Tests the lookup of the categories matching smoothwall categories and apps.
+	 */
+	@Test
+	public void getMatchingCategories()
+	{
+		assertMatchingCategoriesForSmoothwallCategories("Single", new String[] { "poker" }, "gambling");
+		assertMatchingCategoriesForSmoothwallCategories("Multiple", new String[] { "lotto", "bbc", "unknown" }, "gambling",
+				"news");
+		assertMatchingCategoriesForSmoothwallCategories("None", new String[] { "unknown" });
+		assertThat(service.getMatchingCategoriesForApp("Poker App").size(), equalTo(0));
+
+		ActivityCategoryDTO gaming = new ActivityCategoryDTO(UUID.randomUUID(), usString("gaming"), false,
+				new HashSet<String>(Arrays.asList("games", "poker")), new HashSet<String>(Arrays.asList("Poker App")),
+				usString("Descr"));
+		service.addActivityCategory(gaming);
+		activityCategories.add(gaming.createActivityCategoryEntity());
+
+		assertMatchingCategoriesForSmoothwallCategories("After add", new String[] { "poker" }, "gambling", "gaming");
+		assertThat(service.getMatchingCategoriesForApp("Poker App").stream().map(a -> a.getName()).collect(Collectors.toSet()),
+				containsInAnyOrder("gaming"));
+	}
+
+	private void assertMatchingCategoriesForSmoothwallCategories(String reason, String[] smoothwallCategories, String... names)
+	{
+		assertThat(reason,
+				service.getMatchingCategoriesForSmoothwallCategories(new HashSet<String>(Arrays.asList(smoothwallCategories)))
+						.stream().map(a -> a.getName()).collect(Collectors.toSet()),
+				containsInAnyOrder(names));
+	}
+
 	/*
 	 * Tests import.
 	 */
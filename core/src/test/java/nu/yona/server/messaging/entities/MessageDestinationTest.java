@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.messaging.entities;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.data.repository.support.Repositories;
+
+import nu.yona.server.crypto.PublicKeyUtil;
+import nu.yona.server.entities.RepositoryProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MessageDestinationTest
+{
+	@Mock
+	private Repositories mockRepositories;
+	@Mock
+	private MessageDestinationRepository mockMessageDestinationRepository;
+	@Mock
+	private MessageRepository mockMessageRepository;
+
+	@Before
+	public void setUp()
+	{
+		RepositoryProvider.setRepositories(mockRepositories);
+		when(mockRepositories.getRepositoryFor(MessageDestination.class)).thenReturn(mockMessageDestinationRepository);
+		when(mockRepositories.getRepositoryFor(Message.class)).thenReturn(mockMessageRepository);
+	}
+
+	@Test
+	public void unreadMessageCountOfNewDestinationIsMaintained()
+	{
+		MessageDestination destination = MessageDestination.createInstance(PublicKeyUtil.generateKeyPair().getPublic());
+
+		assertThat(destination.getUnreadMessageCount(), equalTo(0L));
+		verifyZeroInteractions(mockMessageDestinationRepository, mockMessageRepository);
+	}
+
+	@Test
+	public void unreadMessageCountOfDestinationCreatedBeforeItWasMaintainedIsCountedUnderLock()
+	{
+		// Destinations that existed before the count was maintained have a null count
+		MessageDestination destination = new MessageDestination();
+		when(mockMessageRepository.countUnreadReceivedMessagesFromDestination(destination.getID())).thenReturn(3L);
+
+		assertThat(destination.getUnreadMessageCount(), equalTo(3L));
+
+		InOrder inOrder = inOrder(mockMessageDestinationRepository, mockMessageRepository);
+		inOrder.verify(mockMessageDestinationRepository).findOneForUpdate(destination.getID());
+		inOrder.verify(mockMessageRepository).countUnreadReceivedMessagesFromDestination(destination.getID());
+		inOrder.verify(mockMessageDestinationRepository).setUnreadMessageCount(destination.getID(), 3);
+	}
+
+	@Test
+	public void newDestinationDoesNotNeedMessageKeyMigration()
+	{
+		MessageDestination destination = MessageDestination.createInstance(PublicKeyUtil.generateKeyPair().getPublic());
+
+		assertThat(destination.hasMessagesWithoutMessageKey(), equalTo(false));
+	}
+
+	@Test
+	public void destinationCreatedBeforeMessageKeysIsMarkedMigratedThroughQuery()
+	{
+		// Destinations that existed before messages got a message key have a null flag
+		MessageDestination destination = new MessageDestination();
+		assertThat(destination.hasMessagesWithoutMessageKey(), equalTo(true));
+
+		destination.setMessagesEncryptedWithMessageKey();
+
+		verify(mockMessageDestinationRepository).setMessagesEncryptedWithMessageKey(destination.getID());
+	}
+
+	@Test
+	public void removeMessagesFromUserLocksBeforeDeletingAndRecounts()
+	{
+		MessageDestination destination = MessageDestination.createInstance(PublicKeyUtil.generateKeyPair().getPublic());
+		UUID sentByUserAnonymizedID = UUID.randomUUID();
+		when(mockMessageRepository.countUnreadReceivedMessagesFromDestination(destination.getID())).thenReturn(2L);
+
+		destination.removeMessagesFromUser(sentByUserAnonymizedID);
+
+		InOrder inOrder = inOrder(mockMessageDestinationRepository, mockMessageRepository);
+		inOrder.verify(mockMessageDestinationRepository).findOneForUpdate(destination.getID());
+		inOrder.verify(mockMessageRepository).deleteMessagesFromUser(destination.getID(), sentByUserAnonymizedID);
+		inOrder.verify(mockMessageRepository).countUnreadReceivedMessagesFromDestination(destination.getID());
+		inOrder.verify(mockMessageDestinationRepository).setUnreadMessageCount(destination.getID(), 2);
+	}
+}
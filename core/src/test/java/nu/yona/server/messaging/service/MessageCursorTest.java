@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.messaging.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import nu.yona.server.exceptions.InvalidDataException;
+
+public class MessageCursorTest
+{
+	private static final ZonedDateTime CREATION_TIME = ZonedDateTime.of(2016, 3, 17, 20, 58, 12, 345000000,
+			ZoneId.of("Europe/Amsterdam"));
+
+	@Test
+	public void testFormatParseRoundTrip()
+	{
+		UUID messageID = UUID.randomUUID();
+
+		MessageCursor cursor = MessageCursor.parse(createCursor(CREATION_TIME, messageID).format());
+
+		assertThat(cursor.getCreationTime(), equalTo(CREATION_TIME));
+		assertThat(cursor.getMessageID(), equalTo(messageID));
+	}
+
+	@Test
+	public void testFormatIsUrlSafe()
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			String formattedCursor = createCursor(CREATION_TIME.plusSeconds(i), UUID.randomUUID()).format();
+
+			assertThat(formattedCursor.matches("[A-Za-z0-9_-]+"), equalTo(true));
+		}
+	}
+
+	@Test(expected = InvalidDataException.class)
+	public void testParseNotBase64()
+	{
+		MessageCursor.parse("not a cursor!");
+	}
+
+	@Test(expected = InvalidDataException.class)
+	public void testParseWithoutSeparator()
+	{
+		MessageCursor.parse(encode(CREATION_TIME.toString()));
+	}
+
+	@Test(expected = InvalidDataException.class)
+	public void testParseInvalidCreationTime()
+	{
+		MessageCursor.parse(encode("yesterday|" + UUID.randomUUID()));
+	}
+
+	@Test(expected = InvalidDataException.class)
+	public void testParseInvalidMessageID()
+	{
+		MessageCursor.parse(encode(CREATION_TIME + "|12345"));
+	}
+
+	private static MessageCursor createCursor(ZonedDateTime creationTime, UUID messageID)
+	{
+		MessageDTO message = mock(MessageDTO.class);
+		when(message.getCreationTime()).thenReturn(creationTime);
+		when(message.getID()).thenReturn(messageID);
+		return MessageCursor.createInstance(message);
+	}
+
+	private static String encode(String decodedCursor)
+	{
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(decodedCursor.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.messaging.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.security.PublicKey;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.data.repository.support.Repositories;
+
+import nu.yona.server.crypto.PublicKeyUtil;
+import nu.yona.server.entities.RepositoryProvider;
+import nu.yona.server.messaging.entities.Message;
+import nu.yona.server.messaging.entities.MessageDestination;
+import nu.yona.server.messaging.entities.MessageDestinationRepository;
+import nu.yona.server.subscriptions.entities.BuddyAnonymized.Status;
+import nu.yona.server.subscriptions.service.BuddyAnonymizedDTO;
+import nu.yona.server.subscriptions.service.UserAnonymizedDTO;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MessageServiceTest
+{
+	private static final PublicKey PUBLIC_KEY = PublicKeyUtil.generateKeyPair().getPublic();
+
+	@Mock
+	private Repositories mockRepositories;
+	@Mock
+	private MessageDestinationRepository mockMessageDestinationRepository;
+	@Mock
+	private EntityManager mockEntityManager;
+	@InjectMocks
+	private final MessageService service = new MessageService();
+
+	private final ZonedDateTime creationTime = ZonedDateTime.now();
+	private final List<Message> createdMessages = new ArrayList<>();
+	private final Supplier<Message> messageSupplier = this::createMessage;
+
+	@Before
+	public void setUp()
+	{
+		RepositoryProvider.setRepositories(mockRepositories);
+		when(mockRepositories.getRepositoryFor(MessageDestination.class)).thenReturn(mockMessageDestinationRepository);
+	}
+
+	@Test
+	public void broadcastMessageToBuddiesSendsToAcceptedBuddiesOnly()
+	{
+		MessageDestination acceptedBuddyDestination = MessageDestination.createInstance(PUBLIC_KEY);
+		MessageDestination requestedBuddyDestination = MessageDestination.createInstance(PUBLIC_KEY);
+		Set<UUID> acceptedBuddyDestinationIDs = Collections.singleton(acceptedBuddyDestination.getID());
+		when(mockMessageDestinationRepository.findAll(acceptedBuddyDestinationIDs))
+				.thenReturn(Arrays.asList(acceptedBuddyDestination));
+
+		service.broadcastMessageToBuddies(createUserAnonymized(createBuddy(Status.ACCEPTED, acceptedBuddyDestination),
+				createBuddy(Status.REQUESTED, requestedBuddyDestination)), messageSupplier);
+
+		verify(mockMessageDestinationRepository, times(1)).findAll(acceptedBuddyDestinationIDs);
+		assertThat(createdMessages.size(), equalTo(1));
+		verify(mockEntityManager, times(1)).persist(createdMessages.get(0));
+		verify(mockMessageDestinationRepository, times(1)).registerReceivedMessage(acceptedBuddyDestinationIDs, creationTime);
+	}
+
+	@Test
+	public void broadcastMessageToBuddiesSendsOneMessagePerBuddy()
+	{
+		MessageDestination buddyDestination1 = MessageDestination.createInstance(PUBLIC_KEY);
+		MessageDestination buddyDestination2 = MessageDestination.createInstance(PUBLIC_KEY);
+		Set<UUID> buddyDestinationIDs = new HashSet<>(Arrays.asList(buddyDestination1.getID(), buddyDestination2.getID()));
+		when(mockMessageDestinationRepository.findAll(buddyDestinationIDs))
+				.thenReturn(Arrays.asList(buddyDestination1, buddyDestination2));
+
+		service.broadcastMessageToBuddies(createUserAnonymized(createBuddy(Status.ACCEPTED, buddyDestination1),
+				createBuddy(Status.ACCEPTED, buddyDestination2)), messageSupplier);
+
+		assertThat(createdMessages.size(), equalTo(2));
+		assertThat(createdMessages.get(0), not(sameInstance(createdMessages.get(1))));
+		createdMessages.forEach(m -> verify(mockEntityManager, times(1)).persist(m));
+		verify(mockMessageDestinationRepository, times(1)).registerReceivedMessage(buddyDestinationIDs, creationTime);
+	}
+
+	@Test
+	public void broadcastMessageToBuddiesWithoutAcceptedBuddiesSendsNothing()
+	{
+		service.broadcastMessageToBuddies(
+				createUserAnonymized(createBuddy(Status.REQUESTED, MessageDestination.createInstance(PUBLIC_KEY))),
+				messageSupplier);
+
+		assertThat(createdMessages.isEmpty(), equalTo(true));
+		verify(mockMessageDestinationRepository, never()).findAll(anyCollectionOf(UUID.class));
+		verify(mockEntityManager, never()).persist(any());
+	}
+
+	@Test
+	public void broadcastMessageToBuddiesWithoutBuddiesSendsNothing()
+	{
+		service.broadcastMessageToBuddies(createUserAnonymized(), messageSupplier);
+
+		assertThat(createdMessages.isEmpty(), equalTo(true));
+		verifyZeroInteractions(mockMessageDestinationRepository, mockEntityManager);
+	}
+
+	private Message createMessage()
+	{
+		Message message = mock(Message.class);
+		when(message.getCreationTime()).thenReturn(creationTime);
+		createdMessages.add(message);
+		return message;
+	}
+
+	private BuddyAnonymizedDTO createBuddy(Status sendingStatus, MessageDestination buddyDestination)
+	{
+		BuddyAnonymizedDTO buddy = mock(BuddyAnonymizedDTO.class);
+		when(buddy.getSendingStatus()).thenReturn(sendingStatus);
+		when(buddy.getAnonymousDestination()).thenReturn(Optional.of(MessageDestinationDTO.createInstance(buddyDestination)));
+		return buddy;
+	}
+
+	private UserAnonymizedDTO createUserAnonymized(BuddyAnonymizedDTO... buddies)
+	{
+		return new UserAnonymizedDTO(UUID.randomUUID(), Collections.emptySet(),
+				MessageDestinationDTO.createInstance(MessageDestination.createInstance(PUBLIC_KEY)),
+				new HashSet<>(Arrays.asList(buddies)));
+	}
+}
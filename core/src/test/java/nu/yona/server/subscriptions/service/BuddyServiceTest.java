@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.subscriptions.service;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.data.repository.support.Repositories;
+
+import nu.yona.server.entities.RepositoryProvider;
+import nu.yona.server.messaging.entities.MessageDestination;
+import nu.yona.server.messaging.service.MessageDestinationDTO;
+import nu.yona.server.messaging.service.MessageService;
+import nu.yona.server.subscriptions.entities.Buddy;
+import nu.yona.server.subscriptions.entities.BuddyAnonymized;
+import nu.yona.server.subscriptions.entities.BuddyAnonymized.Status;
+import nu.yona.server.subscriptions.entities.BuddyAnonymizedRepository;
+import nu.yona.server.subscriptions.entities.BuddyRepository;
+import nu.yona.server.subscriptions.entities.User;
+import nu.yona.server.subscriptions.service.BuddyService.DropBuddyReason;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BuddyServiceTest
+{
+	@Mock
+	private Repositories mockRepositories;
+	@Mock
+	private BuddyRepository mockBuddyRepository;
+	@Mock
+	private BuddyAnonymizedRepository mockBuddyAnonymizedRepository;
+	@Mock
+	private UserAnonymizedService mockUserAnonymizedService;
+	@Mock
+	private MessageService mockMessageService;
+	@InjectMocks
+	private final BuddyService service = new BuddyService();
+
+	private final UUID userAnonymizedID = UUID.randomUUID();
+	private final UUID buddyUserAnonymizedID = UUID.randomUUID();
+
+	@Before
+	public void setUp()
+	{
+		RepositoryProvider.setRepositories(mockRepositories);
+		when(mockRepositories.getRepositoryFor(Buddy.class)).thenReturn(mockBuddyRepository);
+		when(mockRepositories.getRepositoryFor(BuddyAnonymized.class)).thenReturn(mockBuddyAnonymizedRepository);
+	}
+
+	@Test
+	public void setBuddyAcceptedWithSecretUserInfoEvictsUserAnonymized()
+	{
+		UUID buddyID = UUID.randomUUID();
+		Buddy buddy = mock(Buddy.class);
+		when(buddy.getSendingStatus()).thenReturn(Status.REQUESTED);
+		when(buddy.getReceivingStatus()).thenReturn(Status.REQUESTED);
+		when(mockBuddyRepository.findOne(buddyID)).thenReturn(buddy);
+
+		service.setBuddyAcceptedWithSecretUserInfo(createUser(userAnonymizedID), buddyID, buddyUserAnonymizedID, "Bob");
+
+		verify(buddy, times(1)).setSendingStatus(Status.ACCEPTED);
+		verify(buddy, times(1)).setReceivingStatus(Status.ACCEPTED);
+		verify(buddy, times(1)).setUserAnonymizedID(buddyUserAnonymizedID);
+		verify(mockUserAnonymizedService, times(1)).evictUserAnonymized(userAnonymizedID);
+	}
+
+	@Test(expected = BuddyNotFoundException.class)
+	public void setBuddyAcceptedWithSecretUserInfoUnknownBuddy()
+	{
+		try
+		{
+			service.setBuddyAcceptedWithSecretUserInfo(createUser(userAnonymizedID), UUID.randomUUID(), buddyUserAnonymizedID,
+					"Bob");
+		}
+		finally
+		{
+			verify(mockUserAnonymizedService, never()).evictUserAnonymized(any(UUID.class));
+		}
+	}
+
+	@Test
+	public void removeConnectedBuddyEvictsBuddyUserAnonymized()
+	{
+		BuddyAnonymized buddyAnonymized = mock(BuddyAnonymized.class);
+		UserAnonymizedDTO buddyUserAnonymized = createBuddyUserAnonymized(Optional.of(buddyAnonymized));
+
+		service.removeBuddyInfoForBuddy(createUserEntity(), createAcceptedBuddy(), Optional.of("Bye"),
+				DropBuddyReason.USER_REMOVED_BUDDY);
+
+		verify(buddyAnonymized, times(1)).setDisconnected();
+		verify(mockBuddyAnonymizedRepository, times(1)).save(buddyAnonymized);
+		verify(mockUserAnonymizedService, times(1)).evictUserAnonymized(buddyUserAnonymized.getID());
+	}
+
+	@Test
+	public void removeBuddyThatDidNotProcessAcceptanceDoesNotEvictBuddyUserAnonymized()
+	{
+		createBuddyUserAnonymized(Optional.empty());
+
+		service.removeBuddyInfoForBuddy(createUserEntity(), createAcceptedBuddy(), Optional.of("Bye"),
+				DropBuddyReason.USER_REMOVED_BUDDY);
+
+		verify(mockBuddyAnonymizedRepository, never()).save(any(BuddyAnonymized.class));
+		verify(mockUserAnonymizedService, never()).evictUserAnonymized(any(UUID.class));
+	}
+
+	private UserDTO createUser(UUID userAnonymizedID)
+	{
+		UserPrivateDTO privateData = mock(UserPrivateDTO.class);
+		when(privateData.getUserAnonymizedID()).thenReturn(userAnonymizedID);
+		UserDTO user = mock(UserDTO.class);
+		when(user.getPrivateData()).thenReturn(privateData);
+		return user;
+	}
+
+	private User createUserEntity()
+	{
+		User user = mock(User.class);
+		when(user.getID()).thenReturn(UUID.randomUUID());
+		when(user.getUserAnonymizedID()).thenReturn(userAnonymizedID);
+		when(user.getNickname()).thenReturn("Richard");
+		return user;
+	}
+
+	private Buddy createAcceptedBuddy()
+	{
+		User buddyUser = mock(User.class);
+		when(buddyUser.getNamedMessageDestination()).thenReturn(mock(MessageDestination.class));
+		Buddy buddy = mock(Buddy.class);
+		when(buddy.getUser()).thenReturn(buddyUser);
+		when(buddy.getSendingStatus()).thenReturn(Status.ACCEPTED);
+		when(buddy.getReceivingStatus()).thenReturn(Status.ACCEPTED);
+		when(buddy.getUserAnonymizedID()).thenReturn(Optional.of(buddyUserAnonymizedID));
+		return buddy;
+	}
+
+	private UserAnonymizedDTO createBuddyUserAnonymized(Optional<BuddyAnonymized> buddyAnonymized)
+	{
+		UserAnonymizedDTO buddyUserAnonymized = mock(UserAnonymizedDTO.class);
+		when(buddyUserAnonymized.getID()).thenReturn(buddyUserAnonymizedID);
+		when(buddyUserAnonymized.getAnonymousDestination()).thenReturn(new MessageDestinationDTO(UUID.randomUUID()));
+		when(buddyUserAnonymized.getBuddyAnonymized(userAnonymizedID)).thenReturn(buddyAnonymized);
+		when(mockUserAnonymizedService.getUserAnonymized(buddyUserAnonymizedID)).thenReturn(buddyUserAnonymized);
+		return buddyUserAnonymized;
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Runs two Hazelcast members in this JVM, each with its own lock pool, as two analysis engine service instances would.
+ */
+public class HazelcastLockProviderTest
+{
+	private static final String LOCK_MAP_NAME = "testLocks";
+
+	private HazelcastInstance member1;
+	private HazelcastInstance member2;
+	private LockPool<UUID> lockPool1;
+	private LockPool<UUID> lockPool2;
+
+	@Before
+	public void setUp()
+	{
+		member1 = Hazelcast.newHazelcastInstance(createConfig());
+		member2 = Hazelcast.newHazelcastInstance(createConfig());
+		assertThat(member1.getCluster().getMembers().size(), equalTo(2));
+		lockPool1 = new LockPool<>(new HazelcastLockProvider<>(member1, LOCK_MAP_NAME), Optional.of(Duration.ofMillis(200)));
+		lockPool2 = new LockPool<>(new HazelcastLockProvider<>(member2, LOCK_MAP_NAME), Optional.of(Duration.ofMillis(200)));
+	}
+
+	@After
+	public void tearDown()
+	{
+		member1.shutdown();
+		member2.shutdown();
+	}
+
+	@Test
+	public void testLockHeldOnOtherMember() throws InterruptedException
+	{
+		UUID id = UUID.randomUUID();
+		AtomicBoolean timedOut = new AtomicBoolean(false);
+		try (LockPool<UUID>.Lock lock = lockPool1.lock(id))
+		{
+			Thread thread = new Thread(() -> {
+				try (LockPool<UUID>.Lock lock2 = lockPool2.lock(id))
+				{
+					// Not expected to get here
+				}
+				catch (LockPoolException e)
+				{
+					timedOut.set(true);
+				}
+			});
+			thread.start();
+			thread.join();
+		}
+		assertThat(timedOut.get(), equalTo(true));
+		assertThat(lockPool2.getTimeoutCount(), equalTo(1L));
+
+		// Now that member 1 released it, member 2 gets the lock
+		try (LockPool<UUID>.Lock lock = lockPool2.lock(id))
+		{
+			assertThat(lockPool2.getTimeoutCount(), equalTo(1L));
+		}
+	}
+
+	@Test
+	public void testReentrant()
+	{
+		UUID id = UUID.randomUUID();
+		try (LockPool<UUID>.Lock lock1 = lockPool1.lock(id))
+		{
+			try (LockPool<UUID>.Lock lock2 = lockPool1.lock(id))
+			{
+				assertThat(lockPool1.getContendedAcquisitionCount(), equalTo(0L));
+			}
+		}
+	}
+
+	@Test
+	public void testNonConcurrentAcrossMembers() throws InterruptedException
+	{
+		UUID id = UUID.randomUUID();
+		LockPool<UUID> waitingLockPool1 = new LockPool<>(new HazelcastLockProvider<>(member1, LOCK_MAP_NAME), Optional.empty());
+		LockPool<UUID> waitingLockPool2 = new LockPool<>(new HazelcastLockProvider<>(member2, LOCK_MAP_NAME), Optional.empty());
+		int numThreads = 4;
+		int iterations = 10;
+		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+		CountDownLatch doneSignal = new CountDownLatch(numThreads);
+		AtomicBoolean concurrencyIndicator = new AtomicBoolean(false);
+		AtomicBoolean failureIndicator = new AtomicBoolean(false);
+		for (int i = 0; i < numThreads; i++)
+		{
+			LockPool<UUID> lockPool = (i % 2 == 0) ? waitingLockPool1 : waitingLockPool2;
+			threadPool.execute(() -> {
+				for (int j = 0; j < iterations; j++)
+				{
+					try (LockPool<UUID>.Lock lock = lockPool.lock(id))
+					{
+						if (!concurrencyIndicator.compareAndSet(false, true))
+						{
+							failureIndicator.set(true);
+						}
+						concurrencyIndicator.set(false);
+					}
+				}
+				doneSignal.countDown();
+			});
+		}
+		assertThat(doneSignal.await(30, TimeUnit.SECONDS), equalTo(true));
+		threadPool.shutdown();
+		assertThat(failureIndicator.get(), equalTo(false));
+	}
+
+	private static Config createConfig()
+	{
+		Config config = new Config();
+		JoinConfig join = config.getNetworkConfig().getJoin();
+		join.getMulticastConfig().setEnabled(false);
+		join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+		config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+		return config;
+	}
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the throughput of {@link LockPool} with the former {@link MonitorLockPool}. With a single key, all threads contend for
+ * the same lock. With many keys, contention is rare, which is the normal situation for the user anonymized locks. Run with
+ * <code>gradlew :core:benchmark -Pbenchmarks=LockPoolBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(8)
+public class LockPoolBenchmark
+{
+	/**
+	 * Amount of CPU work done while holding the lock, in JMH tokens.
+	 */
+	private static final long WORK_TOKENS = 100;
+
+	@Param({ "1", "1000" })
+	private int keyCount;
+
+	private final LockPool<Integer> lockPool = new LockPool<>();
+	private final MonitorLockPool<Integer> monitorLockPool = new MonitorLockPool<>();
+
+	@Benchmark
+	public void lockPool()
+	{
+		try (LockPool<Integer>.Lock lock = lockPool.lock(nextKey()))
+		{
+			Blackhole.consumeCPU(WORK_TOKENS);
+		}
+	}
+
+	@Benchmark
+	public void monitorLockPool()
+	{
+		try (MonitorLockPool<Integer>.Lock lock = monitorLockPool.lock(nextKey()))
+		{
+			Blackhole.consumeCPU(WORK_TOKENS);
+		}
+	}
+
+	private int nextKey()
+	{
+		return ThreadLocalRandom.current().nextInt(keyCount);
+	}
+}
@@ -3,6 +3,8 @@ package nu.yona.server.util;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
+import java.time.Duration;
+import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -41,6 +43,50 @@ public class LockPoolTest
 		assertThat(testConcurrently(numThreads, iterations, this::attempImmediateAccessRandomID), equalTo(false));
 	}
 
+	@Test
+	public void testTimeout() throws InterruptedException
+	{
+		LocalLockProvider<Integer> lockProvider = new LocalLockProvider<>();
+		LockPool<Integer> lockPool = new LockPool<>(lockProvider, Optional.of(Duration.ofMillis(100)));
+		AtomicBoolean timedOut = new AtomicBoolean(false);
+		try (LockPool<Integer>.Lock lock = lockPool.lock(0))
+		{
+			Thread thread = new Thread(() -> {
+				try (LockPool<Integer>.Lock lock2 = lockPool.lock(0))
+				{
+					// Not expected to get here
+				}
+				catch (LockPoolException e)
+				{
+					timedOut.set(true);
+				}
+			});
+			thread.start();
+			thread.join();
+		}
+		assertThat(timedOut.get(), equalTo(true));
+		assertThat(lockPool.getTimeoutCount(), equalTo(1L));
+		assertThat(lockPool.getContendedAcquisitionCount(), equalTo(1L));
+		assertThat(lockProvider.getActiveLockCount(), equalTo(0));
+	}
+
+	@Test
+	public void testLocksRemovedWhenReleased()
+	{
+		LocalLockProvider<Integer> lockProvider = new LocalLockProvider<>();
+		LockPool<Integer> lockPool = new LockPool<>(lockProvider, Optional.empty());
+		try (LockPool<Integer>.Lock lock1 = lockPool.lock(0))
+		{
+			try (LockPool<Integer>.Lock lock2 = lockPool.lock(0); LockPool<Integer>.Lock lock3 = lockPool.lock(1))
+			{
+				assertThat(lockProvider.getActiveLockCount(), equalTo(2));
+			}
+			assertThat(lockProvider.getActiveLockCount(), equalTo(1));
+		}
+		assertThat(lockProvider.getActiveLockCount(), equalTo(0));
+		assertThat(lockPool.getAcquisitionCount(), equalTo(3L));
+	}
+
 	private boolean testConcurrently(int numThreads, int iterations, AccessAttempt accessAttempt)
 	{
 		LockPool<Integer> lockPool = new LockPool<>();
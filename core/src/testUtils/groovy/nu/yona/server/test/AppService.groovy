@@ -395,6 +395,11 @@ class AppService extends Service
 		yonaServer.getResourceWithPassword(user.messagesUrl, user.password, parameters)
 	}
 
+	def getInboxSummary(User user)
+	{
+		yonaServer.getResourceWithPassword(user.url + "/messages/summary", user.password)
+	}
+
 	def getWeekActivityOverviews(User user, parameters = [:])
 	{
 		yonaServer.getResourceWithPassword(user.weeklyActivityReportsUrl, user.password, parameters)
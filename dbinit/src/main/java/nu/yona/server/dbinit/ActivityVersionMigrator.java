@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.dbinit;
+
+import java.sql.Timestamp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import nu.yona.server.util.TimeUtil;
+
+/**
+ * The activity version of a user is created along with the user anonymized entity, so the app services only need to increment it
+ * and never race to create it. This creates the activity version of the users that existed before, with version 0, so the entity
+ * tags of their activity reports remain the same. Users that already have an activity version are left alone.
+ */
+@Component
+public class ActivityVersionMigrator implements CommandLineRunner
+{
+	private static final Logger logger = LoggerFactory.getLogger(ActivityVersionMigrator.class);
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Override
+	@Transactional
+	public void run(String... args) throws Exception
+	{
+		int userCount = jdbcTemplate.update(
+				"INSERT INTO activity_versions (id, version, last_modified) SELECT u.id, 0, ? FROM users_anonymized u"
+						+ " WHERE NOT EXISTS (SELECT 1 FROM activity_versions v WHERE v.id = u.id)",
+				Timestamp.valueOf(TimeUtil.utcNow()));
+		if (userCount > 0)
+		{
+			logger.info("Activity versions created for {} users", userCount);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Stichting Yona Foundation This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0. If a copy of the MPL was not distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ *******************************************************************************/
+package nu.yona.server.dbinit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Messages used to be linked to their destination through a join table. They now refer to their destination through the
+ * MESSAGES.message_destination_id column, which is added by the schema update. This copies the destination of the existing
+ * messages from the join table into that column and drops the join table, so the app services find every message on their
+ * destination and can delete messages without violating the foreign keys of the join table. Databases without the join table
+ * (new or already migrated ones) are left alone.
+ */
+@Component
+public class MessageDestinationMigrator implements CommandLineRunner
+{
+	private static final Logger logger = LoggerFactory.getLogger(MessageDestinationMigrator.class);
+
+	private static final String JOIN_TABLE_NAME = "MESSAGE_DESTINATIONS_MESSAGES";
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Override
+	@Transactional
+	public void run(String... args) throws Exception
+	{
+		if (!isJoinTablePresent())
+		{
+			return;
+		}
+		logger.info("Moving the message destinations from table '{}' to the messages", JOIN_TABLE_NAME);
+		int messageCount = jdbcTemplate.update("UPDATE messages SET message_destination_id = (SELECT j.message_destinations_id FROM "
+				+ JOIN_TABLE_NAME + " j WHERE j.messages_id = messages.id) WHERE message_destination_id IS NULL");
+		jdbcTemplate.execute("DROP TABLE " + JOIN_TABLE_NAME);
+		logger.info("Message destinations of {} messages moved", messageCount);
+	}
+
+	private boolean isJoinTablePresent()
+	{
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?", Integer.class,
+				JOIN_TABLE_NAME) > 0;
+	}
+}